@@ -0,0 +1,39 @@
+package com.example.telegrambot.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Поиск оффера по алиасу: все алиасы enum плюс неизвестное слово за одну операцию.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OfferTypeBenchmark {
+
+    private final String[] aliases = Stream.concat(
+            Arrays.stream(OfferType.values()).flatMap(o -> o.getAliases().stream()),
+            Stream.of("неизвестно")).toArray(String[]::new);
+
+    @Benchmark
+    public void findByAlias(Blackhole bh) {
+        for (String alias : aliases) {
+            bh.consume(OfferType.findByAlias(alias));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.telegrambot.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Классификация причины переноса: словарь основ против прежнего перебора
+ * String.contains по каждому ключевому слову каждой причины.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RescheduleReasonBenchmark {
+
+    @Param({
+            "недозвон клиент не ответил",
+            "клиент попросил перенести встречу на следующую неделю, сейчас за городом",
+            "клиент заболел, договорились созвониться позже"
+    })
+    public String text;
+
+    @Benchmark
+    public RescheduleReason stemMatcher() {
+        return RescheduleReason.findByKeywords(text);
+    }
+
+    @Benchmark
+    public RescheduleReason legacyContains() {
+        String lowerText = text.toLowerCase();
+        return Arrays.stream(RescheduleReason.values())
+                .filter(reason -> reason != RescheduleReason.ДРУГОЕ)
+                .filter(reason -> reason.getKeywords().stream().anyMatch(lowerText::contains))
+                .findFirst()
+                .orElse(RescheduleReason.ДРУГОЕ);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.model.Meeting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный разбор шаблона встречи: поиск маркера, ID активности и офферов/причины переноса.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageParserBenchmark {
+
+    private static final String HEADER = "Клиент: Иванов Иван Иванович\nТелефон: +7 900 000-00-00\n"
+            + "Id активности - aOBv7DDXE4AqEPC8jHAqcA\nАдрес: г. Москва, ул. Ленина, д. 1\n";
+
+    @Param({"offers", "reschedule", "comment"})
+    public String kind;
+
+    private final MessageParserService parser = new MessageParserService(Clock.systemDefaultZone());
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = HEADER + switch (kind) {
+            case "offers" -> "Мой вопрос: кк кредитная карта\nсим мнп инвест утиль нс";
+            case "reschedule" -> "Мой вопрос: перенос недозвон, клиент не ответил на звонки";
+            default -> "Мой вопрос: комментарий клиент просит перезвонить в пятницу";
+        };
+    }
+
+    @Benchmark
+    public Meeting parseMeetingMessage() {
+        return parser.parseMeetingMessage(text, 42L);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.model.OfferType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор офферов: однопроходный {@link OfferAliasMatcher} против прежнего пути
+ * (split по строкам и словам + поиск алиаса перебором enum для каждого слова).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OfferMatcherBenchmark {
+
+    private final OfferAliasMatcher matcher = new OfferAliasMatcher();
+    private final String offersText = "КК кредитная карта\nСим мнп од\nинвест утиль нс дебетовка\nпремиум что-то бк";
+
+    @Benchmark
+    public List<String> aliasMatcher() {
+        return matcher.findOffers(offersText, 0, offersText.length());
+    }
+
+    @Benchmark
+    public List<String> legacySplitAndStream() {
+        List<String> offers = new ArrayList<>();
+        for (String line : offersText.split("\n")) {
+            String trimmedLine = line.trim();
+            if (trimmedLine.isEmpty()) continue;
+            for (String word : trimmedLine.split("\\s+")) {
+                String trimmedWord = word.trim();
+                if (trimmedWord.isEmpty()) continue;
+                String key = trimmedWord.toLowerCase();
+                OfferType offer = Arrays.stream(OfferType.values())
+                        .filter(o -> o.getAliases().stream().anyMatch(key::equals))
+                        .findFirst()
+                        .orElse(null);
+                offers.add(offer != null ? offer.getDisplayName() : trimmedWord.toUpperCase());
+            }
+        }
+        return offers;
+    }
+}
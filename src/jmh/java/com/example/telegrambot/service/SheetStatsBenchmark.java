@@ -0,0 +1,59 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.model.OfferType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Суммирование недельного листа офферов ({@link GoogleSheetsService#sumOfferColumns})
+ * на синтетических данных в том виде, в каком их отдаёт ValueRange.getValues().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SheetStatsBenchmark {
+
+    @Param({"50", "1000"})
+    public int rows;
+
+    private List<List<Object>> values;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        List<Object> header = new ArrayList<>(List.of("Дата", "Время", "ID активности"));
+        header.addAll(OfferType.getAllDisplayNames());
+        values = new ArrayList<>();
+        values.add(header);
+        for (int r = 0; r < rows; r++) {
+            List<Object> row = new ArrayList<>(List.of("10.09", "12:00", "id" + r));
+            for (int c = 3; c < header.size(); c++) {
+                // как в листе: отмеченный оффер — "1", остальные ячейки пустые
+                row.add(random.nextInt(4) == 0 ? "1" : "");
+            }
+            values.add(row);
+        }
+    }
+
+    @Benchmark
+    public int[] sumOfferColumns() {
+        return GoogleSheetsService.sumOfferColumns(values);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.BotMetrics;
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.OfferType;
+import com.example.telegrambot.model.RescheduleReason;
+import com.example.telegrambot.storage.MeetingStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Форматирование ответов /offers, /rescheduling и /meetings; cached* — повторный запрос через кэш ответов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatsFormatBenchmark {
+
+    private StatsService statsService;
+    private final int[] offerStats = new int[OfferType.count()];
+    private final int[] rescheduleStats = new int[RescheduleReason.values().length];
+    private final List<Meeting> meetings = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        // форматирование не обращается к зависимостям
+        StatsRollup rollup = mock(StatsRollup.class);
+        GoogleSheetsService sheets = mock(GoogleSheetsService.class);
+        WeeklyStatsAggregator aggregator = mock(WeeklyStatsAggregator.class);
+        statsService = new StatsService(mock(MeetingStore.class), sheets, aggregator, rollup,
+                mock(UserDirectory.class), new StatsResponseCache(10_000, BotMetrics.noop()), Clock.systemDefaultZone());
+        int n = 1;
+        for (OfferType offer : OfferType.values()) {
+            offerStats[offer.ordinal()] = n++ % 7 + 1;
+        }
+        for (RescheduleReason reason : RescheduleReason.values()) {
+            rescheduleStats[reason.ordinal()] = n++ % 5 + 1;
+        }
+        LocalDateTime time = LocalDateTime.of(2025, 9, 10, 9, 0);
+        for (int i = 0; i < 20; i++) {
+            meetings.add(new Meeting(time.plusHours(i), "Мой вопрос: комментарий", 42L,
+                    "клиент просит перезвонить после обеда, " + i));
+        }
+        when(aggregator.importCurrentWeek(42L)).thenReturn(true);
+        when(rollup.offerCounts(eq(42L), any(), any())).thenReturn(offerStats);
+        when(rollup.rescheduleCounts(eq(42L), any(), any())).thenReturn(rescheduleStats);
+        when(sheets.getWeeklyCommentsFromSheets(42L)).thenReturn(meetings);
+    }
+
+    @Benchmark
+    public String formatOfferStats() {
+        return statsService.formatOfferStats(offerStats);
+    }
+
+    @Benchmark
+    public String formatRescheduleStats() {
+        return statsService.formatRescheduleStats(rescheduleStats);
+    }
+
+    @Benchmark
+    public String formatMeetingsWithComments() {
+        return statsService.formatMeetingsWithComments(meetings);
+    }
+
+    @Benchmark
+    public String cachedOfferReport() {
+        return statsService.weeklyOfferReport(42L);
+    }
+
+    @Benchmark
+    public String cachedRescheduleReport() {
+        return statsService.weeklyRescheduleReport(42L);
+    }
+
+    @Benchmark
+    public String cachedMeetingsReport() {
+        return statsService.weeklyMeetingsReport(42L);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.BotMetrics;
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.storage.BinaryMeetingStore;
+import com.example.telegrambot.storage.JournalMeetingStore;
+import com.example.telegrambot.storage.MeetingJournal;
+import com.example.telegrambot.storage.MeetingStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Сохранение и чтение встреч через StatsService при 1k/100k/1M встреч в хранилище.
+ *
+ * Снапшот с N встречами пишется во временный каталог, Google Sheets заменён моком,
+ * журнал и хранилище — настоящие (fsync пачками, как в приложении).
+ * format=binary — двоичное хранилище, импортированное из того же снапшота.
+ * saveMeeting дописывает встречи, поэтому к концу прогона их немного больше N.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StatsServiceBenchmark {
+
+    private static final int USERS = 1000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int meetings;
+
+    @Param({"json", "binary"})
+    public String format;
+
+    private Path dir;
+    private MeetingJournal meetingJournal;
+    private MeetingStore meetingStore;
+    private StatsService statsService;
+    private long counter;
+    private final StatsPeriod quarter = StatsPeriod.parse("2025-Q3", LocalDate.of(2025, 10, 1));
+    private final StatsPeriod range = StatsPeriod.parse("03.07-26.09", LocalDate.of(2025, 10, 1));
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("stats-bench");
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        List<Meeting> snapshot = new ArrayList<>(meetings);
+        LocalDateTime start = LocalDateTime.now().minusWeeks(4);
+        for (int i = 0; i < meetings; i++) {
+            snapshot.add(meeting(i, start.plusMinutes(i % 40_000)));
+        }
+        objectMapper.writeValue(dir.resolve("meetings.json").toFile(), snapshot);
+
+        meetingJournal = new MeetingJournal(dir.resolve("meetings.json").toString(),
+                dir.resolve("meetings.journal").toString(), 32, Integer.MAX_VALUE, BotMetrics.noop());
+        meetingStore = openStore();
+        GoogleSheetsService sheets = mock(GoogleSheetsService.class);
+        StatsRollup rollup = new StatsRollup(meetingStore);
+        StatsResponseCache cache = new StatsResponseCache(10_000, BotMetrics.noop());
+        statsService = new StatsService(meetingStore, sheets,
+                new WeeklyStatsAggregator(sheets, meetingStore, rollup, cache, dir.resolve("stats-resets.json").toString(), Clock.systemDefaultZone()), rollup,
+                new UserDirectory(dir.resolve("users.json").toString()), cache, Clock.systemDefaultZone());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (meetingStore instanceof BinaryMeetingStore binary) {
+            binary.close();
+        }
+        meetingJournal.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public void saveMeeting() {
+        statsService.saveMeeting(meeting(meetings + counter++, LocalDateTime.now()));
+    }
+
+    @Benchmark
+    public List<Meeting> loadAllMeetings() {
+        return statsService.loadAllMeetings();
+    }
+
+    /** /offers за квартал и за произвольный диапазон — из сводок по периодам */
+    @Benchmark
+    public int[] offerStatsForQuarter() {
+        return statsService.getOfferStats(counter++ % USERS, quarter);
+    }
+
+    @Benchmark
+    public int[] offerStatsForRange() {
+        return statsService.getOfferStats(counter++ % USERS, range);
+    }
+
+    /** /team за квартал: все пользователи (USERS) */
+    @Benchmark
+    public TeamStats teamStatsForQuarter() {
+        return statsService.getTeamStats(quarter);
+    }
+
+    /** Холодный старт: снапшот + журнал с диска и построение индексов */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public List<Meeting> recoverStore() {
+        MeetingStore store = openStore();
+        List<Meeting> all = store.findAll();
+        if (store instanceof BinaryMeetingStore binary) {
+            binary.close();
+        }
+        return all;
+    }
+
+    /** Восстановление недельных счётчиков одного пользователя из локального хранилища */
+    @Benchmark
+    public long scanUser() {
+        long[] offers = new long[1];
+        meetingStore.scanUser(counter++ % USERS, (epochDay, type, offersMask, reason) -> offers[0] += Long.bitCount(offersMask));
+        return offers[0];
+    }
+
+    private MeetingStore openStore() {
+        if (format.equals("binary")) {
+            return new BinaryMeetingStore(dir.resolve("meetings.bin").toString(),
+                    dir.resolve("meetings.heap").toString(), true, meetingJournal, BotMetrics.noop());
+        }
+        return new JournalMeetingStore(meetingJournal);
+    }
+
+    private static Meeting meeting(long i, LocalDateTime timestamp) {
+        String text = "Id активности - act" + i + "\nМой вопрос: кк нс инвест";
+        return new Meeting(timestamp, List.of("КК", "НС", "ИНВЕСТИЦИИ"), text, i % USERS);
+    }
+}
@@ -0,0 +1,64 @@
+#!/usr/bin/env bash
+# Время старта и память бота: обычный jar, распакованный jar + AppCDS, AppCDS + Spring AOT.
+# Сначала: mvn -Pcds -DskipTests package
+# Запуск: src/jmh/startup-benchmark.sh [повторов, по умолчанию 5]
+#
+# Каждый запуск — в пустом каталоге, bot.mode=webhook без адреса (регистрации в Telegram нет),
+# порт случайный. Время — из строки "Started ... in X seconds (process running for Y)",
+# память — VmRSS процесса в этот момент.
+set -euo pipefail
+
+RUNS=${1:-5}
+ROOT=$(cd "$(dirname "$0")/../.." && pwd)
+JAR=$(ls "$ROOT"/target/telegram-bot-*.jar | grep -v '\.original$' | head -1)
+CDS_DIR="$ROOT/target/cds"
+CDS_JAR="$CDS_DIR/$(basename "$JAR")"
+
+if [[ ! -f "$CDS_DIR/application.jsa" ]]; then
+    echo "Нет $CDS_DIR/application.jsa — сначала mvn -Pcds -DskipTests package" >&2
+    exit 1
+fi
+
+COMMON=(-Dbot.mode=webhook -Dserver.port=0 -Dspring.main.banner-mode=off)
+
+# один запуск: печатает "секунды_процесса RSS_МБ"
+measure() {
+    local work log pid started
+    work=$(mktemp -d)
+    log="$work/out.log"
+    (cd "$work" && exec java "$@" >"$log" 2>&1) &
+    pid=$!
+    for _ in $(seq 1 600); do
+        if started=$(grep -o 'process running for [0-9.]*' "$log" 2>/dev/null); then
+            local rss
+            rss=$(awk '/VmRSS/ {print int($2 / 1024)}' "/proc/$pid/status" 2>/dev/null || echo 0)
+            kill "$pid" 2>/dev/null; wait "$pid" 2>/dev/null || true
+            rm -rf "$work"
+            echo "${started##* } $rss"
+            return
+        fi
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo "Процесс завершился до старта:" >&2; tail -20 "$log" >&2
+            exit 1
+        fi
+        sleep 0.1
+    done
+    kill "$pid" 2>/dev/null || true
+    echo "Нет строки Started за 60 с" >&2
+    exit 1
+}
+
+run_variant() {
+    local name=$1; shift
+    local results=""
+    for _ in $(seq 1 "$RUNS"); do
+        results+="$(measure "$@")"$'\n'
+    done
+    echo -n "$results" | awk -v name="$name" '{ s += $1; rss += $2 }
+        END { printf "%-12s старт %6.2f с   RSS %5d МБ\n", name, s / NR, rss / NR }'
+}
+
+echo "Повторов: $RUNS"
+run_variant "jar" "${COMMON[@]}" -jar "$JAR"
+run_variant "cds" "${COMMON[@]}" -XX:SharedArchiveFile="$CDS_DIR/application.jsa" -Xlog:cds=off -jar "$CDS_JAR"
+run_variant "cds + aot" "${COMMON[@]}" -XX:SharedArchiveFile="$CDS_DIR/application.jsa" -Xlog:cds=off -Dspring.aot.enabled=true -jar "$CDS_JAR"
@@ -1,22 +1,88 @@
 package com.example.telegrambot;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+/**
+ * Регистрация бота.
+ *
+ * bot.mode=polling (по умолчанию) — long polling через DefaultBotSession.
+ * bot.mode=webhook — апдейты принимает {@link TelegramWebhookController}; если задан bot.webhook.url,
+ * адрес регистрируется в Telegram через setWebhook вместе с bot.webhook.secret (он обязателен).
+ * Регистрация идёт в фоне после старта и повторяется раз в bot.register-retry-ms, пока не удастся:
+ * недоступность api.telegram.org не мешает запуску (очереди, health, рассылки уже работают).
+ */
 @Configuration
 public class BotConfig {
 
-    private TelegramBotsApi telegramBotsApi;
+    private static final Logger log = LoggerFactory.getLogger(BotConfig.class);
+
+    private final TelegramBotService telegramBotService;
+
+    @Value("${bot.mode:polling}")
+    private String botMode;
+
+    @Value("${bot.webhook.url:}")
+    private String webhookUrl;
+
+    @Value("${bot.webhook.secret:}")
+    private String webhookSecret;
+
+    @Value("${bot.register-retry-ms:30000}")
+    private long registerRetryMs;
+
+    public BotConfig(TelegramBotService telegramBotService) {
+        this.telegramBotService = telegramBotService;
+    }
 
     @Bean
-    public TelegramBotsApi telegramBotsApi(TelegramBotService telegramBotService) throws TelegramApiException {
-        if (telegramBotsApi == null) {
-            telegramBotsApi = new TelegramBotsApi(DefaultBotSession.class);
-            telegramBotsApi.registerBot(telegramBotService);
+    public TelegramBotsApi telegramBotsApi() throws TelegramApiException {
+        return new TelegramBotsApi(DefaultBotSession.class);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerOnStartup(ApplicationReadyEvent event) {
+        TelegramBotsApi api = event.getApplicationContext().getBean(TelegramBotsApi.class);
+        Thread thread = new Thread(() -> registerWithRetry(api), "telegram-register");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void registerWithRetry(TelegramBotsApi api) {
+        while (true) {
+            try {
+                if ("webhook".equalsIgnoreCase(botMode)) {
+                    registerWebhook();
+                } else {
+                    api.registerBot(telegramBotService);
+                }
+                log.info("Бот зарегистрирован в Telegram ({})", botMode);
+                return;
+            } catch (TelegramApiException e) {
+                log.warn("Не удалось зарегистрировать бота в Telegram, повтор через {} мс: {}", registerRetryMs, e.getMessage());
+            }
+            try {
+                Thread.sleep(registerRetryMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void registerWebhook() throws TelegramApiException {
+        if (webhookUrl.isBlank()) {
+            return; // адрес вебхука уже настроен снаружи (или это локальный запуск)
         }
-        return telegramBotsApi;
+        // тот же секрет проверяет TelegramWebhookController; пустой секрет не даёт запуститься раньше
+        telegramBotService.execute(SetWebhook.builder().url(webhookUrl).secretToken(webhookSecret).build());
     }
-}
\ No newline at end of file
+}
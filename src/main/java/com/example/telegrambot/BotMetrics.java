@@ -0,0 +1,105 @@
+package com.example.telegrambot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Метрики бота (Micrometer, отдаются через /actuator/prometheus).
+ *
+ * bot.command.latency — от получения апдейта до конца обработки, по командам (с гистограммой);
+ * bot.sheets.calls — вызовы Google Sheets API по типу операции и исходу;
+ * bot.parse.latency — разбор сообщений; bot.storage.write — записи журнала, снапшота и индекса;
+ * bot.errors — ошибки по компонентам. Глубины очередей регистрируют сами компоненты через gauge().
+ */
+@Component
+public class BotMetrics {
+
+    private final MeterRegistry registry;
+
+    public BotMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Метрики без экспорта — для тестов и бенчмарков */
+    public static BotMetrics noop() {
+        return new BotMetrics(new SimpleMeterRegistry());
+    }
+
+    /** Вызов Google Sheets API, который может бросить IOException */
+    @FunctionalInterface
+    public interface SheetsCall<T> {
+        T execute() throws IOException;
+    }
+
+    public void recordCommand(String command, long startNanos, boolean success) {
+        Timer.builder("bot.command.latency")
+                .description("Обработка команды от получения апдейта до ответа")
+                .tag("command", command)
+                .tag("outcome", success ? "success" : "error")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public <T> T sheetsCall(String operation, SheetsCall<T> call) throws IOException {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.execute();
+            outcome = "success";
+            return result;
+        } finally {
+            Timer.builder("bot.sheets.calls")
+                    .description("Вызовы Google Sheets API")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (outcome.equals("error")) {
+                error("sheets");
+            }
+        }
+    }
+
+    public void recordParse(String stage, long startNanos) {
+        Timer.builder("bot.parse.latency")
+                .description("Разбор сообщения")
+                .tag("stage", stage)
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordWrite(String operation, long startNanos) {
+        Timer.builder("bot.storage.write")
+                .description("Записи на диск: журнал, fsync, снапшот, индекс активностей")
+                .tag("operation", operation)
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void error(String component) {
+        Counter.builder("bot.errors")
+                .description("Ошибки по компонентам")
+                .tag("component", component)
+                .register(registry)
+                .increment();
+    }
+
+    public <T> void gauge(String name, String description, T source, ToDoubleFunction<T> value) {
+        Gauge.builder(name, source, value).description(description).register(registry);
+    }
+
+    public <T> void counter(String name, String description, T source, ToLongFunction<T> value) {
+        FunctionCounter.builder(name, source, s -> value.applyAsLong(s)).description(description).register(registry);
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.telegrambot;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Исходящие сообщения: очередь на чат + общий лимит отправки.
+ *
+ * Лимиты Telegram: около 30 сообщений в секунду на бота и около 1 сообщения в секунду в один чат.
+ * Поток отправки берёт чаты, у которых подошло время, тратит токен общего "ведра"
+ * и отправляет через executeAsync. В каждом чате одновременно отправляется не больше
+ * одного сообщения, поэтому порядок сохраняется. Ответ 429 возвращает сообщение в начало
+ * очереди чата и откладывает отправку на retry_after секунд.
+ * Опустевшая очередь чата удаляется, когда проходит её интервал: карта чатов не растёт
+ * с числом пользователей, писавших боту когда-либо.
+ * Очереди в памяти: сообщения, не отправленные до остановки, теряются. Кому важно, дошло ли сообщение,
+ * передают обработчик завершения ({@link #enqueue(SendMessage, Consumer)}).
+ */
+@Component
+public class OutboundMessageSender {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundMessageSender.class);
+
+    private final long perChatIntervalNanos;
+    private final int queueCapacity;
+    private final TokenBucket globalBucket;
+
+    private final Map<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final DelayQueue<ChatQueue> readyChats = new DelayQueue<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile AbsSender sender;
+    private volatile boolean running;
+    private Thread worker;
+
+    public OutboundMessageSender(@Value("${bot.outbound.global-rate:30}") double globalRate,
+                                 @Value("${bot.outbound.per-chat-rate:1}") double perChatRate,
+                                 @Value("${bot.outbound.queue-capacity:10000}") int queueCapacity,
+                                 BotMetrics metrics) {
+        this.globalBucket = new TokenBucket(globalRate, Math.max(1, globalRate));
+        this.perChatIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perChatRate);
+        this.queueCapacity = queueCapacity;
+
+        metrics.gauge("bot.outbound.queue.depth", "Сообщения в очередях отправки", this, OutboundMessageSender::getQueueDepth);
+        metrics.gauge("bot.outbound.in.flight", "Сообщения, отправляемые прямо сейчас", this, OutboundMessageSender::getInFlight);
+        metrics.counter("bot.outbound.sent", "Отправленные сообщения", this, OutboundMessageSender::getSentCount);
+        metrics.counter("bot.outbound.failed", "Сообщения, которые не удалось отправить", this, OutboundMessageSender::getFailedCount);
+        metrics.counter("bot.outbound.retried", "Повторы после 429", this, OutboundMessageSender::getRetriedCount);
+        metrics.counter("bot.outbound.dropped", "Сообщения, отброшенные при переполнении очереди", this, OutboundMessageSender::getDroppedCount);
+    }
+
+    /** Запускает поток отправки от имени бота */
+    public synchronized void start(AbsSender sender) {
+        if (running) return;
+        this.sender = sender;
+        this.running = true;
+        this.worker = new Thread(this::sendLoop, "outbound-sender");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Ставит сообщение в очередь чата; false — если очередь переполнена */
+    public boolean enqueue(SendMessage message) {
+        return enqueue(message, null);
+    }
+
+    /**
+     * То же с обработчиком завершения: true — Telegram принял сообщение, false — отказал (кроме 429,
+     * после которого сообщение отправляется повторно). Вызывается из потока ответа Telegram;
+     * для сообщений, отброшенных или не отправленных до остановки, не вызывается.
+     */
+    public boolean enqueue(SendMessage message, Consumer<Boolean> onDone) {
+        if (queued.get() >= queueCapacity) {
+            dropped.incrementAndGet();
+            log.warn("Очередь исходящих переполнена, сообщение в чат {} отброшено", message.getChatId());
+            return false;
+        }
+        long chatId = Long.parseLong(message.getChatId());
+        queued.incrementAndGet();
+        while (true) {
+            ChatQueue chat = chats.computeIfAbsent(chatId, ChatQueue::new);
+            synchronized (chat) {
+                if (chat.removed) continue; // очередь только что удалена как пустая — берём новую
+                chat.messages.addLast(new Outgoing(message, onDone));
+                scheduleIfIdle(chat);
+                return true;
+            }
+        }
+    }
+
+    /** Сообщений в очередях (без отправляемых прямо сейчас) */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Чатов с очередью (включая опустевшие, у которых не прошёл интервал) */
+    int getChatCount() {
+        return chats.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // даём отправить накопленное, но не дольше 10 секунд
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((queued.get() > 0 || inFlight.get() > 0) && System.nanoTime() < deadline && running) {
+            Thread.sleep(50);
+        }
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    // ---------- Внутреннее ----------
+
+    private void sendLoop() {
+        while (running) {
+            try {
+                ChatQueue chat = readyChats.take();
+                Outgoing message;
+                synchronized (chat) {
+                    message = chat.messages.pollFirst();
+                    if (message == null) {
+                        // интервал прошёл, сообщений нет — очередь больше не нужна
+                        chat.scheduled = false;
+                        chat.removed = true;
+                        chats.remove(chat.chatId, chat);
+                        continue;
+                    }
+                }
+                // токен тратится только на сообщение, которое точно уходит
+                try {
+                    globalBucket.acquire();
+                } catch (InterruptedException e) {
+                    synchronized (chat) {
+                        chat.messages.addFirst(message);
+                    }
+                    throw e;
+                }
+                queued.decrementAndGet();
+                inFlight.incrementAndGet();
+                chat.nextSendAt = System.nanoTime() + perChatIntervalNanos;
+                try {
+                    sender.executeAsync(message.message()).whenComplete((result, error) -> onComplete(chat, message, error));
+                } catch (Exception e) {
+                    onComplete(chat, message, e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Ошибка потока отправки", e);
+            }
+        }
+    }
+
+    private void onComplete(ChatQueue chat, Outgoing message, Throwable error) {
+        inFlight.decrementAndGet();
+        Throwable cause = unwrap(error);
+        Boolean done = null;
+        synchronized (chat) {
+            if (cause == null) {
+                sent.incrementAndGet();
+                done = true;
+            } else if (cause instanceof TelegramApiRequestException request && Integer.valueOf(429).equals(request.getErrorCode())) {
+                int retryAfter = request.getParameters() != null && request.getParameters().getRetryAfter() != null
+                        ? request.getParameters().getRetryAfter() : 1;
+                chat.nextSendAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfter);
+                chat.messages.addFirst(message);
+                queued.incrementAndGet();
+                retried.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+                done = false;
+                log.warn("Не удалось отправить сообщение в чат {}: {}", chat.chatId,
+                        cause instanceof TelegramApiException ? cause.getMessage() : String.valueOf(cause));
+            }
+            // чат просыпается после интервала и в пустом виде: тогда он удаляется
+            readyChats.put(chat);
+        }
+        if (done != null && message.onDone() != null) {
+            try {
+                message.onDone().accept(done);
+            } catch (RuntimeException e) {
+                log.error("Ошибка обработчика отправки в чат {}", chat.chatId, e);
+            }
+        }
+    }
+
+    /** Ставит чат в очередь готовности, если в нём есть сообщения и он ещё не стоит там (под локом чата) */
+    private void scheduleIfIdle(ChatQueue chat) {
+        if (!chat.scheduled && !chat.messages.isEmpty()) {
+            chat.scheduled = true;
+            readyChats.put(chat);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable t = error;
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    /** Сообщение в очереди чата и его обработчик завершения (может быть null) */
+    private record Outgoing(SendMessage message, Consumer<Boolean> onDone) {}
+
+    private static final class ChatQueue implements Delayed {
+        final long chatId;
+        final Deque<Outgoing> messages = new ArrayDeque<>();
+        volatile long nextSendAt = System.nanoTime();
+        // стоит в очереди готовности или отправляется
+        boolean scheduled;
+        // удалён из карты чатов; сообщения в него больше не кладутся
+        boolean removed;
+
+        ChatQueue(long chatId) {
+            this.chatId = chatId;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(nextSendAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(nextSendAt, ((ChatQueue) other).nextSendAt);
+        }
+    }
+
+    /** Простое "ведро токенов"; используется одним потоком отправки */
+    private static final class TokenBucket {
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double ratePerSecond, double capacity) {
+            this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        void acquire() throws InterruptedException {
+            while (true) {
+                long now = System.nanoTime();
+                tokens = Math.min(capacity, tokens + (now - refilledAt) * ratePerNano);
+                refilledAt = now;
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                TimeUnit.NANOSECONDS.sleep((long) ((1 - tokens) / ratePerNano));
+            }
+        }
+    }
+}
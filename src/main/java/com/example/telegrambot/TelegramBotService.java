@@ -1,25 +1,38 @@
 package com.example.telegrambot;
 
 import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.MeetingMessageScanner;
 import com.example.telegrambot.model.MeetingType;
+import com.example.telegrambot.model.ParsedMessage;
 import com.example.telegrambot.service.MessageParserService;
+import com.example.telegrambot.service.StatsPeriod;
 import com.example.telegrambot.service.StatsService;
+import com.example.telegrambot.service.UserDirectory;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.api.objects.User;
 
-import java.time.LocalDate;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class TelegramBotService extends TelegramLongPollingBot {
 
+    private static final Logger log = LoggerFactory.getLogger(TelegramBotService.class);
+
+    // Команды с собственным тегом в метриках; остальной текст — "text", неизвестные команды — "unknown"
+    private static final Set<String> COMMANDS = Set.of("/start", "/offers", "/rescheduling", "/meetings",
+            "/reset", "/modify", "/cancel", "/team");
+
     @Value("${bot.username}")
     private String botUsername;
 
@@ -28,14 +41,29 @@ public class TelegramBotService extends TelegramLongPollingBot {
 
     private final MessageParserService messageParserService;
     private final StatsService statsService;
+    private final UserDirectory userDirectory;
+    private final UpdateDispatcher updateDispatcher;
+    private final OutboundMessageSender outboundMessageSender;
+    private final BotMetrics metrics;
     
-    // Хранилище состояний пользователей (кто ожидает модификацию текста)
-    private final Map<Long, Boolean> userModifyMode = new HashMap<>();
+    // Хранилище состояний пользователей (кто ожидает модификацию текста); апдейты обрабатываются параллельно
+    private final Map<Long, Boolean> userModifyMode = new ConcurrentHashMap<>();
 
     // Конструктор для dependency injection
-    public TelegramBotService(MessageParserService messageParserService, StatsService statsService) {
+    public TelegramBotService(MessageParserService messageParserService, StatsService statsService,
+                              UserDirectory userDirectory, UpdateDispatcher updateDispatcher,
+                              OutboundMessageSender outboundMessageSender, BotMetrics metrics) {
         this.messageParserService = messageParserService;
         this.statsService = statsService;
+        this.userDirectory = userDirectory;
+        this.updateDispatcher = updateDispatcher;
+        this.outboundMessageSender = outboundMessageSender;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void startOutbound() {
+        outboundMessageSender.start(this);
     }
 
     @Override
@@ -48,35 +76,63 @@ public class TelegramBotService extends TelegramLongPollingBot {
         return botToken;
     }
 
+    /** Апдейт уходит в полосу пользователя: его сообщения по порядку, разные пользователи параллельно */
     @Override
     public void onUpdateReceived(Update update) {
+        if (update.hasMessage()) {
+            Message message = update.getMessage();
+            long key = message.getFrom() != null ? message.getFrom().getId() : message.getChatId();
+            long receivedAt = System.nanoTime();
+            updateDispatcher.dispatch(key, () -> handleTimed(update, receivedAt));
+        }
+    }
+
+    /** Время команды считается от получения апдейта: в него входит и ожидание в полосе */
+    private void handleTimed(Update update, long receivedAt) {
+        boolean success = false;
+        try {
+            handleUpdate(update);
+            success = true;
+        } finally {
+            metrics.recordCommand(commandTag(update), receivedAt, success);
+        }
+    }
+
+    private static String commandTag(Update update) {
+        if (!update.getMessage().hasText()) return "other";
+        String text = command(update.getMessage().getText());
+        if (COMMANDS.contains(text)) return text.substring(1);
+        return text.startsWith("/") ? "unknown" : "text";
+    }
+
+    private void handleUpdate(Update update) {
         if (update.hasMessage() && update.getMessage().hasText()) {
             Message message = update.getMessage();
             String messageText = message.getText();
             long chatId = message.getChatId();
+            if (message.getFrom() != null) {
+                userDirectory.remember(message.getFrom().getId(), displayName(message.getFrom()));
+            }
 
             // Обработка команд
             if (messageText.equals("/start")) {
                 sendMessage(chatId, "Привет! 📊\n\nОтправь мне шаблон встречи и я буду считать статистику." +
                         "\n\nДля офферов:\nМой вопрос: кк нс инвест\n\n" +
                         "Для переносов:\nМой вопрос: перенос недозвон клиент не ответил\n\n" +
-                        "Команды:\n/offers - статистика продаж\n/rescheduling - статистика переносов\n/" +
+                        "Команды:\n/offers - статистика продаж\n/rescheduling - статистика переносов\n" +
+                        "  период: /offers 2025-09, /offers 2025-Q3, /offers last4w, /offers 01.09-30.09\n" +
+                        "/team - итоги команды (тоже с периодом)\n/" +
                         "meetings - встречи с комментариями\n/modify - получить модифицированный текст встречи\n/reset - очистить данные");
             } else if (messageText.equals("/offers")) {
-                Long userId = message.getFrom().getId();
-                Map<String, Integer> offerStats = statsService.getWeeklyOfferStats(userId);
-                String statsText = statsService.formatOfferStats(offerStats);
-                sendMessage(chatId, statsText);
+                sendMessage(chatId, statsService.weeklyOfferReport(message.getFrom().getId()));
             } else if (messageText.equals("/rescheduling")) {
-                Long userId = message.getFrom().getId();
-                Map<String, Integer> rescheduleStats = statsService.getWeeklyRescheduleStats(userId);
-                String statsText = statsService.formatRescheduleStats(rescheduleStats);
-                sendMessage(chatId, statsText);
+                sendMessage(chatId, statsService.weeklyRescheduleReport(message.getFrom().getId()));
+            } else if (command(messageText).equals("/offers") || command(messageText).equals("/rescheduling")
+                    || command(messageText).equals("/team")) {
+                // с периодом: из сводок по периодам, без чтения Sheets
+                handlePeriodStats(chatId, message.getFrom().getId(), messageText);
             } else if (messageText.equals("/meetings")) {
-                Long userId = message.getFrom().getId();
-                List<Meeting> meetings = statsService.getWeeklyMeetingsWithComments(userId);
-                String meetingsText = statsService.formatMeetingsWithComments(meetings);
-                sendMessage(chatId, meetingsText);
+                sendMessage(chatId, statsService.weeklyMeetingsReport(message.getFrom().getId()));
             } else if (messageText.equals("/reset")) {
                 Long userId = message.getFrom().getId();
                 statsService.clearUserStats(userId);
@@ -94,19 +150,22 @@ public class TelegramBotService extends TelegramLongPollingBot {
                 sendMessage(chatId, "✅ Режим модификации отменен. Используйте /start для справки.");
             }
             // Обработка текста с офферами или переносами
-            else if (messageText.toLowerCase().contains("мой вопрос:")) {
-                Long userId = message.getFrom().getId();
-                
-                // Проверяем, находится ли пользователь в режиме модификации
-                if (userModifyMode.getOrDefault(userId, false)) {
-                    handleModifyText(chatId, messageText, userId);
-                    userModifyMode.remove(userId); // Выходим из режима модификации
-                } else {
-                    handleMeetingMessage(chatId, messageText, message);
-                }
-            } else {
+            else {
+                // Один разбор текста: маркер, тип, ID активности
+                long parseStart = System.nanoTime();
+                ParsedMessage parsed = MeetingMessageScanner.scan(messageText);
+                metrics.recordParse("scan", parseStart);
                 Long userId = message.getFrom().getId();
-                if (userModifyMode.getOrDefault(userId, false)) {
+
+                if (parsed.hasMarker()) {
+                    // Проверяем, находится ли пользователь в режиме модификации
+                    if (userModifyMode.getOrDefault(userId, false)) {
+                        handleModifyText(chatId, messageText, userId);
+                        userModifyMode.remove(userId); // Выходим из режима модификации
+                    } else {
+                        handleMeetingMessage(chatId, parsed, message);
+                    }
+                } else if (userModifyMode.getOrDefault(userId, false)) {
                     handleModifyModeInput(chatId, messageText, userId);
                 } else {
                     sendMessage(chatId, "Не понял команду. Используй /start для справки.");
@@ -115,10 +174,44 @@ public class TelegramBotService extends TelegramLongPollingBot {
         }
     }
 
-    private void handleMeetingMessage(long chatId, String messageText, Message message) {
+    /** Имя для командных отчётов: имя и фамилия, иначе @username */
+    private static String displayName(User user) {
+        String name = user.getFirstName() == null ? "" : user.getFirstName();
+        if (user.getLastName() != null) name = name + " " + user.getLastName();
+        if (name.isBlank() && user.getUserName() != null) name = "@" + user.getUserName();
+        return name;
+    }
+
+    /** Команда без аргумента: "/offers 2025-09" -> "/offers" */
+    private static String command(String text) {
+        int space = text.indexOf(' ');
+        return space < 0 ? text : text.substring(0, space);
+    }
+
+    private void handlePeriodStats(long chatId, Long userId, String messageText) {
+        StatsPeriod period;
+        try {
+            int space = messageText.indexOf(' ');
+            period = statsService.parsePeriod(space < 0 ? "" : messageText.substring(space + 1));
+        } catch (IllegalArgumentException e) {
+            sendMessage(chatId, "❌ " + e.getMessage() + "\n\nПримеры: /offers 2025-09, /offers 2025-Q3, /offers last4w, /offers 01.09-30.09");
+            return;
+        }
+        if (command(messageText).equals("/offers")) {
+            sendMessage(chatId, statsService.offerReport(userId, period));
+        } else if (command(messageText).equals("/team")) {
+            sendMessage(chatId, statsService.teamReport(period));
+        } else {
+            sendMessage(chatId, statsService.rescheduleReport(userId, period));
+        }
+    }
+
+    private void handleMeetingMessage(long chatId, ParsedMessage parsed, Message message) {
         try {
             Long userId = message.getFrom().getId();
-            Meeting meeting = messageParserService.parseMeetingMessage(messageText, userId);
+            long parseStart = System.nanoTime();
+            Meeting meeting = messageParserService.parseMeetingMessage(parsed, userId);
+            metrics.recordParse("meeting", parseStart);
 
             if (meeting == null) {
                 sendMessage(chatId, "❌ Не могу найти 'Мой вопрос:' в сообщении");
@@ -137,7 +230,7 @@ public class TelegramBotService extends TelegramLongPollingBot {
                 response.append("💬 Комментарий сохранен!\n\n");
                 response.append("Текст: ").append(meeting.getComment());
             } else {
-                if (meeting.getOffers().isEmpty()) {
+                if (!meeting.hasOffers()) {
                     sendMessage(chatId, "❌ Не найдено офферов после 'Мой вопрос:'");
                     return;
                 }
@@ -151,6 +244,8 @@ public class TelegramBotService extends TelegramLongPollingBot {
             sendMessage(chatId, response.toString());
 
         } catch (Exception e) {
+            metrics.error("meeting");
+            log.warn("Ошибка при обработке встречи", e);
             sendMessage(chatId, "❌ Ошибка при обработке встречи: " + e.getMessage());
         }
     }
@@ -160,6 +255,8 @@ public class TelegramBotService extends TelegramLongPollingBot {
             String modifiedText = statsService.getModifiedMeetingText(userId, messageText);
             sendMessage(chatId, "📝 Модифицированный текст встречи:\n\n" + modifiedText);
         } catch (Exception e) {
+            metrics.error("modify");
+            log.warn("Ошибка при получении модифицированного текста", e);
             sendMessage(chatId, "❌ Ошибка при получении модифицированного текста: " + e.getMessage());
         }
     }
@@ -186,6 +283,8 @@ public class TelegramBotService extends TelegramLongPollingBot {
                     "❌ Для выхода отправьте /cancel");
             
         } catch (Exception e) {
+            metrics.error("modify");
+            log.warn("Ошибка при обработке ввода", e);
             sendMessage(chatId, "❌ Ошибка при обработке ввода: " + e.getMessage());
         }
     }
@@ -200,15 +299,12 @@ public class TelegramBotService extends TelegramLongPollingBot {
         return input != null && input.matches("\\d{1,2}\\.\\d{1,2}");
     }
 
+    /** Ответ уходит в очередь исходящих: отправка асинхронная, с учётом лимитов Telegram */
     private void sendMessage(long chatId, String text) {
         SendMessage message = new SendMessage();
         message.setChatId(String.valueOf(chatId));
         message.setText(text);
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        outboundMessageSender.enqueue(message);
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.example.telegrambot;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Приём апдейтов в режиме вебхука (bot.mode=webhook).
+ *
+ * Апдейт сразу передаётся диспетчеру, ответ 200 отдаётся без ожидания обработки —
+ * Telegram не держит соединение, пока бот ходит в Google Sheets.
+ * Без bot.webhook.secret приложение не запускается: иначе апдейты мог бы слать кто угодно.
+ */
+@RestController
+@ConditionalOnProperty(name = "bot.mode", havingValue = "webhook")
+public class TelegramWebhookController {
+
+    private final TelegramBotService telegramBotService;
+    private final byte[] secret;
+
+    public TelegramWebhookController(TelegramBotService telegramBotService,
+                                     @Value("${bot.webhook.secret:}") String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("В режиме вебхука нужен bot.webhook.secret");
+        }
+        this.telegramBotService = telegramBotService;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping("${bot.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> onUpdate(@RequestBody Update update,
+                                         @RequestHeader(name = "X-Telegram-Bot-Api-Secret-Token", required = false) String token) {
+        // сравнение за постоянное время: по времени ответа секрет не подобрать
+        if (token == null || !MessageDigest.isEqual(secret, token.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        telegramBotService.onUpdateReceived(update);
+        return ResponseEntity.ok().build();
+    }
+}
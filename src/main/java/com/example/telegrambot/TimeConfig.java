@@ -0,0 +1,21 @@
+package com.example.telegrambot;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.ZoneId;
+
+/**
+ * Часы бота в его часовом поясе (bot.zone): по ним считаются время встречи, неделя отчётов,
+ * листы Sheets, архив и рассылка — независимо от пояса сервера.
+ */
+@Configuration
+public class TimeConfig {
+
+    @Bean
+    public Clock clock(@Value("${bot.zone:Europe/Moscow}") String zone) {
+        return Clock.system(ZoneId.of(zone));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.telegrambot;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Раздаёт обработку апдейтов по полосам (striped executor).
+ *
+ * Полоса выбирается по ключу (id пользователя или чата), в каждой полосе один поток,
+ * поэтому сообщения одного пользователя обрабатываются строго по порядку,
+ * а разные пользователи — параллельно. Если очередь полосы заполнена, поток приёма
+ * ждёт освобождения места (порядок при этом не нарушается).
+ */
+@Component
+public class UpdateDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateDispatcher.class);
+
+    private final ThreadPoolExecutor[] stripes;
+    private final BotMetrics metrics;
+
+    public UpdateDispatcher(@Value("${bot.dispatcher.stripes:16}") int stripeCount,
+                            @Value("${bot.dispatcher.queue-capacity:1000}") int queueCapacity,
+                            BotMetrics metrics) {
+        this.metrics = metrics;
+        this.stripes = new ThreadPoolExecutor[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            String threadName = "update-worker-" + i;
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity),
+                    r -> {
+                        Thread t = new Thread(r, threadName);
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    BLOCK_WHEN_FULL);
+        }
+        metrics.gauge("bot.dispatcher.queue.depth", "Апдейты, ожидающие обработки", this, UpdateDispatcher::getQueueDepth);
+    }
+
+    /** Ставит задачу в полосу ключа */
+    public void dispatch(long key, Runnable task) {
+        stripes[Math.floorMod(Long.hashCode(key), stripes.length)].execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                metrics.error("dispatcher");
+                log.error("Ошибка обработки апдейта", e);
+            }
+        });
+    }
+
+    /** Суммарное число апдейтов, ожидающих обработки */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            depth += stripe.getQueue().size();
+        }
+        return depth;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static final RejectedExecutionHandler BLOCK_WHEN_FULL = (task, executor) -> {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Диспетчер апдейтов остановлен");
+        }
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Прервано ожидание места в очереди", e);
+        }
+    };
+}
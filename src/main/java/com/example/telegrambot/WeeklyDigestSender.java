@@ -0,0 +1,368 @@
+package com.example.telegrambot;
+
+import com.example.telegrambot.service.StatsPeriod;
+import com.example.telegrambot.service.StatsRollup;
+import com.example.telegrambot.service.StatsService;
+import com.example.telegrambot.storage.JournalLines;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Недельная сводка всем активным пользователям (bot.digest.cron, "-" — выключено).
+ *
+ * Счётчики всех пользователей считаются одним проходом по {@link StatsRollup}; активные — те,
+ * у кого за неделю есть встречи или переносы. Текст — те же formatOfferStats/formatRescheduleStats,
+ * что у /offers и /rescheduling. Сводка уходит в личный чат (chatId = userId).
+ *
+ * Рассылка идёт в отдельном потоке через {@link OutboundMessageSender}: не быстрее bot.digest.rate
+ * в секунду и не больше bot.digest.max-queue сообщений в очереди, чтобы ответы на команды
+ * не ждали за тысячами сводок. Очередь отправки в памяти, поэтому userId дописывается в контрольный файл
+ * (с fsync) только после ответа Telegram; "done" пишется, когда ответ пришёл на все сводки.
+ * После перезапуска рассылка продолжается и повторяет только сводки без ответа
+ * (повтор возможен, если сбой пришёлся между ответом и записью отметки). Сводки, от которых Telegram
+ * отказался (например, пользователь заблокировал бота), тоже отмечаются: повтор не поможет.
+ * При остановке новые сводки не ставятся в очередь, а ответы на поставленные ждём до 10 секунд;
+ * оставшиеся без ответа видны в bot.digest.unconfirmed и в журнале.
+ */
+@Component
+public class WeeklyDigestSender {
+
+    private static final Logger log = LoggerFactory.getLogger(WeeklyDigestSender.class);
+    private static final String DONE = "done";
+
+    /** Состояние контрольного файла: неделя, кому уже отправлено и закончена ли рассылка */
+    record Checkpoint(LocalDate week, Set<Long> sent, boolean done, long length) {}
+
+    private final StatsRollup statsRollup;
+    private final StatsService statsService;
+    private final OutboundMessageSender outbound;
+    private final BotMetrics metrics;
+    private final Clock clock;
+    private final long intervalNanos;
+    private final int maxQueue;
+    private final Path checkpointPath;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "weekly-digest");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger unconfirmed = new AtomicInteger();
+    private volatile boolean stopping;
+
+    // файл текущей рассылки, в который обработчики ответов дописывают отметки; null — рассылки нет
+    private final Object checkpointLock = new Object();
+    private FileChannel checkpointChannel;
+    private volatile int pending;
+    private volatile long lastCompletedEpochSecond;
+    private volatile double lastDurationSeconds;
+
+    public WeeklyDigestSender(StatsRollup statsRollup,
+                              StatsService statsService,
+                              OutboundMessageSender outbound,
+                              @Value("${bot.digest.rate:20}") double rate,
+                              @Value("${bot.digest.max-queue:100}") int maxQueue,
+                              @Value("${bot.digest.checkpoint-path:digest-checkpoint.txt}") String checkpointPath,
+                              BotMetrics metrics,
+                              Clock clock) {
+        this.statsRollup = statsRollup;
+        this.clock = clock;
+        this.statsService = statsService;
+        this.outbound = outbound;
+        this.metrics = metrics;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        this.maxQueue = maxQueue;
+        this.checkpointPath = Paths.get(checkpointPath);
+
+        metrics.gauge("bot.digest.pending", "Сводки текущей рассылки, ещё не поставленные в очередь", this, WeeklyDigestSender::getPending);
+        metrics.counter("bot.digest.sent", "Недельные сводки, поставленные в очередь отправки", this, WeeklyDigestSender::getSentCount);
+        metrics.gauge("bot.digest.unconfirmed", "Сводки в очереди отправки без ответа Telegram", this, WeeklyDigestSender::getUnconfirmed);
+        metrics.counter("bot.digest.failed", "Сводки, от которых Telegram отказался", this, WeeklyDigestSender::getFailedCount);
+        metrics.counter("bot.digest.completed", "Завершённые рассылки", this, WeeklyDigestSender::getCompletedCount);
+        metrics.gauge("bot.digest.last.completed", "Время завершения последней рассылки, epoch-секунды", this, s -> s.lastCompletedEpochSecond);
+        metrics.gauge("bot.digest.last.duration", "Длительность последней рассылки, секунды", this, s -> s.lastDurationSeconds);
+    }
+
+    @Scheduled(cron = "${bot.digest.cron:0 0 18 * * SUN}", zone = "${bot.zone:Europe/Moscow}")
+    public void sendOnSchedule() {
+        start(StatsPeriod.currentWeek(LocalDate.now(clock)));
+    }
+
+    /** Продолжает рассылку, прерванную перезапуском, если её неделя ещё не старше прошлой */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        Checkpoint checkpoint = readCheckpoint();
+        if (checkpoint == null || checkpoint.done()) return;
+        LocalDate previousWeek = LocalDate.now(clock).with(DayOfWeek.MONDAY).minusWeeks(1);
+        if (checkpoint.week().isBefore(previousWeek)) {
+            log.warn("Рассылка за неделю {} не завершена и уже устарела", checkpoint.week());
+            return;
+        }
+        log.info("Продолжаем рассылку за неделю {}: уже отправлено {}", checkpoint.week(), checkpoint.sent().size());
+        start(StatsPeriod.currentWeek(checkpoint.week()));
+    }
+
+    /** Запускает рассылку в фоне; false — предыдущая ещё идёт */
+    public boolean start(StatsPeriod week) {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Рассылка уже идёт, запуск за неделю {} пропущен", week.from());
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                send(week);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                metrics.error("digest");
+                log.error("Ошибка рассылки недельной сводки: {}", e.getMessage(), e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /** Рассылка за неделю в текущем потоке; возвращает число сводок, поставленных в очередь в этом запуске */
+    public int send(StatsPeriod week) throws IOException, InterruptedException {
+        long startNanos = System.nanoTime();
+        Checkpoint checkpoint = readCheckpoint();
+        if (checkpoint == null || !checkpoint.week().equals(week.from())) {
+            writeHeader(week.from());
+            checkpoint = new Checkpoint(week.from(), Set.of(), false, Files.size(checkpointPath));
+        }
+        if (checkpoint.done()) {
+            log.info("Рассылка за неделю {} уже завершена", week.from());
+            return 0;
+        }
+
+        List<StatsRollup.UserTotals> users = statsRollup.activeUsers(week.from(), week.to());
+        long sentBefore = sent.get();
+        Set<Long> alreadySent = checkpoint.sent();
+        pending = (int) users.stream().filter(u -> !alreadySent.contains(u.userId())).count();
+        log.info("Рассылка за неделю {}: активных пользователей {}, к отправке {}", week.from(), users.size(), pending);
+
+        int count = 0;
+        boolean stopped = false;
+        try (FileChannel channel = FileChannel.open(checkpointPath, StandardOpenOption.WRITE)) {
+            // оборванная при сбое строка: следующая отметка не должна к ней дописаться
+            JournalLines.truncateTail(channel, checkpoint.length());
+            channel.position(channel.size());
+            synchronized (checkpointLock) {
+                checkpointChannel = channel;
+            }
+            try {
+                stopped = !enqueueAll(users, alreadySent, week);
+                count = (int) (sent.get() - sentBefore);
+                // отметки пишутся по ответам Telegram: "done" — только когда ответили на все сводки
+                while (unconfirmed.get() > 0) {
+                    Thread.sleep(50);
+                }
+                if (!stopped) append(channel, DONE + "\n");
+            } finally {
+                synchronized (checkpointLock) {
+                    checkpointChannel = null;
+                }
+            }
+        }
+        if (stopped) {
+            log.info("Рассылка за неделю {} остановлена: поставлено в очередь {}", week.from(), count);
+            return count;
+        }
+
+        completed.incrementAndGet();
+        lastCompletedEpochSecond = System.currentTimeMillis() / 1000;
+        lastDurationSeconds = (System.nanoTime() - startNanos) / 1e9;
+        log.info("Рассылка за неделю {} завершена: отправлено {} за {} с", week.from(), count, String.format("%.1f", lastDurationSeconds));
+        return count;
+    }
+
+    /** Ставит сводки в очередь отправки; false — остановлено до конца списка */
+    private boolean enqueueAll(List<StatsRollup.UserTotals> users, Set<Long> alreadySent, StatsPeriod week)
+            throws InterruptedException {
+        long nextSlot = System.nanoTime();
+        for (StatsRollup.UserTotals user : users) {
+            if (alreadySent.contains(user.userId())) continue;
+            if (stopping) return false;
+            SendMessage message = new SendMessage();
+            message.setChatId(String.valueOf(user.userId()));
+            message.setText(format(user, week));
+
+            waitForRoom();
+            long delay = nextSlot - System.nanoTime();
+            if (delay > 0) LockSupport.parkNanos(delay);
+            nextSlot = Math.max(nextSlot, System.nanoTime()) + intervalNanos;
+            if (Thread.interrupted()) throw new InterruptedException();
+
+            long userId = user.userId();
+            unconfirmed.incrementAndGet();
+            try {
+                while (!outbound.enqueue(message, delivered -> confirm(userId, delivered))) {
+                    Thread.sleep(1000);
+                }
+            } catch (InterruptedException e) {
+                unconfirmed.decrementAndGet();
+                throw e;
+            }
+            sent.incrementAndGet();
+            pending--;
+        }
+        return true;
+    }
+
+    /** Ответ Telegram на сводку: отметка в контрольном файле (с fsync) */
+    private void confirm(long userId, boolean delivered) {
+        if (!delivered) failed.incrementAndGet();
+        synchronized (checkpointLock) {
+            if (checkpointChannel != null) {
+                try {
+                    append(checkpointChannel, userId + "\n");
+                } catch (IOException e) {
+                    metrics.error("digest");
+                    log.warn("Отметка рассылки для {} не записана, после перезапуска сводка уйдёт повторно: {}", userId, e.getMessage());
+                }
+            }
+        }
+        unconfirmed.decrementAndGet();
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /** Сводки, поставленные в очередь, на которые Telegram ещё не ответил */
+    public int getUnconfirmed() {
+        return unconfirmed.get();
+    }
+
+    /** Срабатывает раньше остановки {@link OutboundMessageSender}: он ещё отправляет очередь */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopping = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (unconfirmed.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        int lost = unconfirmed.get();
+        if (lost > 0) {
+            log.warn("Остановка: сводок без ответа Telegram {}, после перезапуска они будут отправлены повторно", lost);
+        }
+        executor.shutdownNow();
+    }
+
+    // ---------- Внутреннее ----------
+
+    private String format(StatsRollup.UserTotals user, StatsPeriod week) {
+        return "🗓 Итоги недели: проведено встреч — " + user.meetings() + "\n\n"
+                + statsService.formatOfferStats(user.offers(), week) + "\n\n"
+                + statsService.formatRescheduleStats(user.reschedules(), week);
+    }
+
+    /** Не переполняем общую очередь: ответы на команды встают в неё же */
+    private void waitForRoom() throws InterruptedException {
+        while (outbound.getQueueDepth() >= maxQueue) {
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * Первая строка — понедельник недели, дальше userId по одному в строке, в конце "done".
+     * Последняя строка без перевода строки не учитывается: оборванный id может совпасть с чужим.
+     * Нечитаемые строки пропускаются с предупреждением; null — файла нет или неделя не читается.
+     */
+    Checkpoint readCheckpoint() {
+        if (!Files.exists(checkpointPath)) return null;
+        List<String> lines = new ArrayList<>();
+        long length;
+        try {
+            length = JournalLines.read(checkpointPath, line -> lines.add(line.trim()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения контрольного файла рассылки " + checkpointPath, e);
+        }
+        if (lines.isEmpty()) return null;
+        LocalDate week;
+        try {
+            week = LocalDate.parse(lines.get(0));
+        } catch (DateTimeParseException e) {
+            log.warn("Контрольный файл рассылки {} повреждён, неделя не читается: {}", checkpointPath, lines.get(0));
+            return null;
+        }
+        Set<Long> ids = new HashSet<>();
+        boolean done = false;
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.equals(DONE)) {
+                done = true;
+                continue;
+            }
+            try {
+                ids.add(Long.parseLong(line));
+            } catch (NumberFormatException e) {
+                log.warn("Пропущена строка контрольного файла рассылки {}: {}", checkpointPath, line);
+            }
+        }
+        return new Checkpoint(week, ids, done, length);
+    }
+
+    private void writeHeader(LocalDate week) throws IOException {
+        Path tmp = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+        Files.writeString(tmp, week + "\n", StandardCharsets.UTF_8);
+        Files.move(tmp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void append(FileChannel channel, String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.telegrambot.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -7,7 +9,10 @@ import java.util.List;
 public class Meeting {
     private String id; // Уникальный ID встречи
     private LocalDateTime timestamp;
-    private List<String> offers;
+    // Офферы: количество по ordinal OfferType (null — не заданы) и нераспознанные слова.
+    // В JSON по-прежнему пишутся списком названий "offers" (см. getOffers/setOffers)
+    private int[] offerCounts;
+    private List<String> unknownOffers = List.of();
     private String originalText;
     private Long userId;
 
@@ -20,9 +25,26 @@ public class Meeting {
 
     // Конструктор для обычных встреч с офферами
     public Meeting(LocalDateTime timestamp, List<String> offers, String originalText, Long userId) {
-        this.id = extractActivityId(originalText);
+        this(MeetingMessageScanner.extractActivityId(originalText), timestamp, offers, originalText, userId);
+    }
+
+    // То же с уже извлечённым ID активности (см. MeetingMessageScanner)
+    public Meeting(String id, LocalDateTime timestamp, List<String> offers, String originalText, Long userId) {
+        this.id = id;
+        this.timestamp = timestamp;
+        setOffers(offers);
+        this.originalText = originalText;
+        this.userId = userId;
+        this.meetingType = MeetingType.COMPLETED;
+    }
+
+    // То же с уже посчитанными офферами (см. OfferAliasMatcher#countOffers); массив не копируется
+    public Meeting(String id, LocalDateTime timestamp, int[] offerCounts, List<String> unknownOffers,
+                   String originalText, Long userId) {
+        this.id = id;
         this.timestamp = timestamp;
-        this.offers = offers;
+        this.offerCounts = offerCounts;
+        this.unknownOffers = unknownOffers;
         this.originalText = originalText;
         this.userId = userId;
         this.meetingType = MeetingType.COMPLETED;
@@ -31,19 +53,30 @@ public class Meeting {
     // Конструктор для переносов
     public Meeting(LocalDateTime timestamp, String originalText, Long userId,
                    String rescheduleReason, String comment) {
-        this.id = extractActivityId(originalText);
+        this(MeetingMessageScanner.extractActivityId(originalText), timestamp, originalText, userId,
+                rescheduleReason, comment);
+    }
+
+    public Meeting(String id, LocalDateTime timestamp, String originalText, Long userId,
+                   String rescheduleReason, String comment) {
+        this.id = id;
         this.timestamp = timestamp;
-        this.offers = new ArrayList<>(); // Пустой список офферов для переносов
+        this.offerCounts = new int[OfferType.count()]; // Пустой список офферов для переносов
         this.originalText = originalText;
         this.userId = userId;
         this.rescheduleReason = rescheduleReason;
         this.comment = comment;
         this.meetingType = MeetingType.RESCHEDULED;
     }
+
     public Meeting(LocalDateTime timestamp, String originalText, Long userId, String comment) {
-        this.id = extractActivityId(originalText);
+        this(MeetingMessageScanner.extractActivityId(originalText), timestamp, originalText, userId, comment);
+    }
+
+    public Meeting(String id, LocalDateTime timestamp, String originalText, Long userId, String comment) {
+        this.id = id;
         this.timestamp = timestamp;
-        this.offers = new ArrayList<>();
+        this.offerCounts = new int[OfferType.count()];
         this.originalText = originalText;
         this.userId = userId;
         this.comment = comment;
@@ -58,12 +91,77 @@ public class Meeting {
         this.timestamp = timestamp;
     }
 
+    /** Названия офферов: распознанные в порядке OfferType (с повторами), затем нераспознанные слова */
     public List<String> getOffers() {
+        if (offerCounts == null) return null;
+        List<String> offers = new ArrayList<>();
+        for (int i = 0; i < offerCounts.length; i++) {
+            for (int n = 0; n < offerCounts[i]; n++) {
+                offers.add(OfferType.ofOrdinal(i).getDisplayName());
+            }
+        }
+        offers.addAll(unknownOffers);
         return offers;
     }
 
     public void setOffers(List<String> offers) {
-        this.offers = offers;
+        if (offers == null) {
+            this.offerCounts = null;
+            this.unknownOffers = List.of();
+            return;
+        }
+        int[] counts = new int[OfferType.count()];
+        List<String> unknown = new ArrayList<>(0);
+        for (String name : offers) {
+            OfferType offer = OfferType.findByDisplayName(name);
+            if (offer != null && offer.getDisplayName().equals(name)) {
+                counts[offer.ordinal()]++;
+            } else {
+                unknown.add(name);
+            }
+        }
+        this.offerCounts = counts;
+        this.unknownOffers = unknown;
+    }
+
+    /** Заменяет офферы уже посчитанными; массив не копируется */
+    @JsonIgnore
+    public void setOfferCounts(int[] offerCounts, List<String> unknownOffers) {
+        this.offerCounts = offerCounts;
+        this.unknownOffers = unknownOffers;
+    }
+
+    /** Количество каждого оффера по ordinal OfferType; null — офферы не заданы. Массив не копируется */
+    @JsonIgnore
+    public int[] getOfferCounts() {
+        return offerCounts;
+    }
+
+    /** Слова после "Мой вопрос:", не совпавшие ни с одним оффером */
+    @JsonIgnore
+    public List<String> getUnknownOffers() {
+        return unknownOffers;
+    }
+
+    /** Распознанные офферы битами по ordinal OfferType (без учёта повторов) */
+    @JsonIgnore
+    public long getOffersMask() {
+        long mask = 0;
+        if (offerCounts == null) return mask;
+        for (int i = 0; i < offerCounts.length; i++) {
+            if (offerCounts[i] > 0) mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    /** Есть ли хотя бы один оффер, в том числе нераспознанный */
+    public boolean hasOffers() {
+        if (offerCounts == null) return false;
+        if (!unknownOffers.isEmpty()) return true;
+        for (int n : offerCounts) {
+            if (n > 0) return true;
+        }
+        return false;
     }
 
     public String getOriginalText() {
@@ -113,28 +211,4 @@ public class Meeting {
     public void setId(String id) {
         this.id = id;
     }
-
-    /**
-     * Извлекает ID активности из текста встречи
-     * Ищет строку вида "Id активности - XXXXX" или "ID активности - XXXXX"
-     */
-    private String extractActivityId(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return null;
-        }
-        
-        String[] lines = text.split("\n");
-        for (String line : lines) {
-            String trimmedLine = line.trim();
-            // Ищем строки с ID активности (разные варианты написания)
-            if (trimmedLine.toLowerCase().contains("id активности") || 
-                trimmedLine.toLowerCase().contains("id активности")) {
-                String[] parts = trimmedLine.split("-");
-                if (parts.length >= 2) {
-                    return parts[1].trim();
-                }
-            }
-        }
-        return null;
-    }
-}
\ No newline at end of file
+}
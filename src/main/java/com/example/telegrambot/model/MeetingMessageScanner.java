@@ -0,0 +1,104 @@
+package com.example.telegrambot.model;
+
+/**
+ * Разбор шаблона встречи за один проход по исходному тексту.
+ *
+ * Текст не переводится в нижний регистр и не режется на строки: маркер "Мой вопрос:",
+ * строка "Id активности - X" и ключевые слова "перенос"/"комментарий" сравниваются
+ * через regionMatches без учёта регистра. Копируется только значение ID активности.
+ */
+public final class MeetingMessageScanner {
+
+    public static final String MARKER = "мой вопрос:";
+    private static final String ACTIVITY_ID = "id активности";
+    private static final String RESCHEDULE = "перенос";
+    private static final String COMMENT = "комментарий";
+
+    private MeetingMessageScanner() {
+    }
+
+    public static ParsedMessage scan(String text) {
+        int markerEnd = -1;
+        String activityId = null;
+
+        int lineStart = 0;
+        int length = text.length();
+        while (lineStart <= length && (markerEnd < 0 || activityId == null)) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = length;
+            if (markerEnd < 0) {
+                int marker = indexOfIgnoreCase(text, MARKER, lineStart, lineEnd);
+                if (marker >= 0) markerEnd = marker + MARKER.length();
+            }
+            if (activityId == null && indexOfIgnoreCase(text, ACTIVITY_ID, lineStart, lineEnd) >= 0) {
+                activityId = activityIdFromLine(text, lineStart, lineEnd);
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        if (markerEnd < 0) {
+            return new ParsedMessage(text, -1, null, 0, 0, activityId);
+        }
+        int from = skipSpaces(text, markerEnd, length);
+        int to = trimEnd(text, from, length);
+        MeetingType type = MeetingType.COMPLETED;
+        if (startsWithIgnoreCase(text, RESCHEDULE, from, to)) {
+            type = MeetingType.RESCHEDULED;
+            from = skipSpaces(text, from + RESCHEDULE.length(), to);
+        } else if (startsWithIgnoreCase(text, COMMENT, from, to)) {
+            type = MeetingType.COMMENT;
+            from = skipSpaces(text, from + COMMENT.length(), to);
+        }
+        return new ParsedMessage(text, markerEnd, type, from, to, activityId);
+    }
+
+    /** Позиция "Мой вопрос:" без учёта регистра или -1 */
+    public static int indexOfMarker(String text) {
+        return indexOfIgnoreCase(text, MARKER, 0, text.length());
+    }
+
+    /** ID активности из шаблона или null */
+    public static String extractActivityId(String text) {
+        return text == null ? null : scan(text).activityId();
+    }
+
+    // ---------- Внутреннее ----------
+
+    /** Значение между первым и вторым '-' строки, как в "Id активности - XXXXX" */
+    private static String activityIdFromLine(String text, int lineStart, int lineEnd) {
+        int dash = text.indexOf('-', lineStart);
+        if (dash < 0 || dash >= lineEnd) return null;
+        int valueEnd = text.indexOf('-', dash + 1);
+        if (valueEnd < 0 || valueEnd > lineEnd) valueEnd = lineEnd;
+        int from = skipSpaces(text, dash + 1, valueEnd);
+        int to = trimEnd(text, from, valueEnd);
+        return from < to ? text.substring(from, to) : null;
+    }
+
+    private static int indexOfIgnoreCase(String text, String word, int from, int to) {
+        char first = word.charAt(0);
+        char firstUpper = Character.toUpperCase(first);
+        for (int i = from, last = to - word.length(); i <= last; i++) {
+            char c = text.charAt(i);
+            if ((c == first || c == firstUpper) && text.regionMatches(true, i, word, 0, word.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWithIgnoreCase(String text, String word, int from, int to) {
+        return to - from >= word.length() && text.regionMatches(true, from, word, 0, word.length());
+    }
+
+    // пробелами, как и в String.trim(), считаются символы не больше ' '
+    private static int skipSpaces(String text, int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') from++;
+        return from;
+    }
+
+    private static int trimEnd(String text, int from, int to) {
+        while (to > from && text.charAt(to - 1) <= ' ') to--;
+        return to;
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.telegrambot.model;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public enum OfferType {
@@ -33,6 +35,19 @@ public enum OfferType {
     private final String displayName;
     private final List<String> aliases;
 
+    private static final OfferType[] VALUES = values();
+    private static final Map<String, OfferType> BY_DISPLAY_NAME = new HashMap<>();
+    private static final Map<String, OfferType> BY_ALIAS = new HashMap<>();
+
+    static {
+        for (OfferType offer : values()) {
+            BY_DISPLAY_NAME.putIfAbsent(offer.displayName, offer);
+            for (String alias : offer.aliases) {
+                BY_ALIAS.putIfAbsent(alias, offer); // при совпадении алиасов побеждает первый оффер
+            }
+        }
+    }
+
     OfferType(String displayName, List<String> aliases) {
         this.displayName = displayName;
         this.aliases = aliases;
@@ -46,15 +61,24 @@ public enum OfferType {
         return aliases;
     }
 
+    // Количество офферов — длина массивов счётчиков по ordinal
+    public static int count() {
+        return VALUES.length;
+    }
+
+    public static OfferType ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
     // Найти оффер по алиасу
 
     public static OfferType findByAlias(String alias) {
-        String searchKey = alias.trim().toLowerCase();
-        return Arrays.stream(values())
-                .filter(offer -> offer.getAliases().stream()
-                        .anyMatch(offerAlias -> offerAlias.equals(searchKey)))
-                .findFirst()
-                .orElse(null);
+        return BY_ALIAS.get(alias.trim().toLowerCase());
+    }
+
+    // Найти оффер по названию (как в заголовках Google Sheets)
+    public static OfferType findByDisplayName(String displayName) {
+        return displayName == null ? null : BY_DISPLAY_NAME.get(displayName.trim());
     }
 
     // Получить все названия офферов для Google Sheets
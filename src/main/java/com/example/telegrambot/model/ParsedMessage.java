@@ -0,0 +1,24 @@
+package com.example.telegrambot.model;
+
+/**
+ * Результат разбора сообщения {@link MeetingMessageScanner}: границы частей исходного текста без копий.
+ *
+ * markerEnd — позиция сразу после "Мой вопрос:" (-1, если маркера нет),
+ * [bodyStart, bodyEnd) — содержимое после маркера и ключевого слова ("перенос"/"комментарий"),
+ * уже без пробелов по краям.
+ */
+public record ParsedMessage(String text, int markerEnd, MeetingType type,
+                            int bodyStart, int bodyEnd, String activityId) {
+
+    public boolean hasMarker() {
+        return markerEnd >= 0;
+    }
+
+    public boolean isBodyEmpty() {
+        return bodyStart >= bodyEnd;
+    }
+
+    public String body() {
+        return text.substring(bodyStart, bodyEnd);
+    }
+}
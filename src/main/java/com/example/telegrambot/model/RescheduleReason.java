@@ -8,10 +8,10 @@ public enum RescheduleReason {
     )),
 
     НЕДОЗВОН("недозвон", Arrays.asList(
-            "недозвон"
+            "недозвон", "не дозвонился", "не ответил", "не отвечает", "не берет трубку"
     )),
 
-    НЕ_ЯВИЛСЯ_НА_АДРЕС("не явился по адресу", List.of("не явился по адресу"
+    НЕ_ЯВИЛСЯ_НА_АДРЕС("не явился по адресу", List.of("не явился по адресу", "не явился"
     )),
 
     В_ДРУГОМ_ГОРОДЕ("не в городе", Arrays.asList(
@@ -26,13 +26,18 @@ public enum RescheduleReason {
             "не успел доехать", "не успел на встречу", "не успел", "вина представителя"
     )),
     НЕТ_ПАСПОРТА("нет документов", Arrays.asList(
-            "без паспорта", "нет паспорта", "забыл паспорт")),
+            "без паспорта", "нет паспорта", "забыл паспорт", "нет документов")),
 
     ДРУГОЕ("другое", List.of());
 
     private final String displayName;
     private final List<String> keywords;
 
+    // собирается при первом обращении: к этому моменту все константы enum уже созданы
+    private static final class MatcherHolder {
+        static final RescheduleReasonMatcher MATCHER = new RescheduleReasonMatcher();
+    }
+
     RescheduleReason(String displayName, List<String> keywords) {
         this.displayName = displayName;
         this.keywords = keywords;
@@ -46,16 +51,26 @@ public enum RescheduleReason {
         return keywords;
     }
 
-    // Найти причину переноса по ключевым словам в тексте
+    // Найти причину переноса по ключевым словам в тексте (с учётом словоформ)
     public static RescheduleReason findByKeywords(String text) {
-        String lowerText = text.toLowerCase();
+        return findByKeywords(text, 0, text.length());
+    }
 
-        return Arrays.stream(values())
-                .filter(reason -> reason != ДРУГОЕ) // ДРУГОЕ проверяем в конце
-                .filter(reason -> reason.getKeywords().stream()
-                        .anyMatch(lowerText::contains))
-                .findFirst()
-                .orElse(ДРУГОЕ);
+    // То же для части текста, без копирования
+    public static RescheduleReason findByKeywords(CharSequence text, int from, int to) {
+        return MatcherHolder.MATCHER.classify(text, from, to);
+    }
+
+    // Найти причину по названию (как в Google Sheets и в Meeting.rescheduleReason)
+    public static RescheduleReason findByDisplayName(String displayName) {
+        if (displayName == null) return null;
+        String key = displayName.trim();
+        for (RescheduleReason reason : values()) {
+            if (reason.displayName.equals(key)) {
+                return reason;
+            }
+        }
+        return null;
     }
 
     // Получить все названия причин для статистики
@@ -0,0 +1,195 @@
+package com.example.telegrambot.model;
+
+import java.util.Arrays;
+
+/**
+ * Классификатор причин переноса, собирается один раз из ключевых фраз {@link RescheduleReason}.
+ *
+ * Каждое слово ключевой фразы приводится к основе (отбрасывается типичное окончание),
+ * и слово текста совпадает, если начинается с этой основы: "недозвон" находит "недозвонился",
+ * "не ответил" — "не ответила". Короткие слова ("не", "в", "за") сравниваются целиком.
+ * Основы всех фраз сложены в одно префиксное дерево, где конец основы может продолжаться
+ * переходом к следующему слову. Текст просматривается один раз, каждая найденная фраза
+ * добавляет своей причине вес (длину основ), побеждает причина с наибольшим весом,
+ * при равенстве — объявленная раньше. Память на вызов — один массив по числу причин.
+ */
+final class RescheduleReasonMatcher {
+
+    private static final int MIN_STEM = 4;
+    private static final String[] ENDINGS = {
+            "ились", "илась", "ился", "ется", "ются",
+            "ать", "ять", "ить", "ого", "ему", "ами", "ями",
+            "ом", "ем", "ой", "ей", "ий", "ый", "ая", "яя", "ую", "юю", "ые", "ие",
+            "ах", "ях", "ам", "ям", "ов", "ев", "ла", "ли", "ло", "ил", "ся", "ть", "ти", "ет", "ит",
+            "а", "я", "у", "ю", "ы", "и", "е", "о", "й", "ь"
+    };
+
+    private final RescheduleReason[] reasons = RescheduleReason.values();
+    private final Node root = new Node();
+
+    RescheduleReasonMatcher() {
+        for (RescheduleReason reason : reasons) {
+            for (String keyword : reason.getKeywords()) {
+                addPhrase(keyword, reason);
+            }
+        }
+    }
+
+    /** Причина для text[from, to); если ни одна фраза не найдена — ДРУГОЕ */
+    RescheduleReason classify(CharSequence text, int from, int to) {
+        int[] scores = new int[reasons.length];
+        int pos = nextTokenStart(text, from, to);
+        while (pos < to) {
+            match(root, text, pos, to, scores);
+            pos = nextTokenStart(text, tokenEnd(text, pos, to), to);
+        }
+        int best = -1;
+        for (int r = 0; r < scores.length; r++) {
+            if (scores[r] > 0 && (best < 0 || scores[r] > scores[best])) {
+                best = r;
+            }
+        }
+        return best < 0 ? RescheduleReason.ДРУГОЕ : reasons[best];
+    }
+
+    // ---------- Построение ----------
+
+    private void addPhrase(String phrase, RescheduleReason reason) {
+        String[] words = phrase.trim().toLowerCase().replace('ё', 'е').split("[^\\p{L}\\p{N}]+");
+        Node node = root;
+        int weight = 0;
+        for (int w = 0; w < words.length; w++) {
+            String word = words[w];
+            if (word.isEmpty()) continue;
+            boolean exact = word.length() < MIN_STEM;
+            String stem = exact ? word : stem(word);
+            for (int i = 0; i < stem.length(); i++) {
+                node = node.childOrCreate(stem.charAt(i));
+            }
+            weight += stem.length();
+            if (w == words.length - 1) {
+                node.addWeight(exact, reason.ordinal(), weight, reasons.length);
+            } else {
+                node = node.gapOrCreate(exact);
+            }
+        }
+    }
+
+    static String stem(String word) {
+        for (String ending : ENDINGS) {
+            if (word.endsWith(ending) && word.length() - ending.length() >= MIN_STEM) {
+                return word.substring(0, word.length() - ending.length());
+            }
+        }
+        return word;
+    }
+
+    // ---------- Просмотр текста ----------
+
+    private void match(Node start, CharSequence text, int tokenStart, int to, int[] scores) {
+        int end = tokenEnd(text, tokenStart, to);
+        Node node = start;
+        for (int i = tokenStart; i < end; i++) {
+            node = node.child(normalize(text.charAt(i)));
+            if (node == null) return;
+            boolean wholeWord = i + 1 == end;
+            add(scores, node.prefixWeights);
+            if (wholeWord) add(scores, node.exactWeights);
+            if (node.prefixGap != null || (wholeWord && node.exactGap != null)) {
+                int next = nextTokenStart(text, end, to);
+                if (next < to) {
+                    if (node.prefixGap != null) match(node.prefixGap, text, next, to, scores);
+                    if (wholeWord && node.exactGap != null) match(node.exactGap, text, next, to, scores);
+                }
+            }
+        }
+    }
+
+    private static void add(int[] scores, int[] weights) {
+        if (weights == null) return;
+        for (int r = 0; r < weights.length; r++) {
+            scores[r] += weights[r];
+        }
+    }
+
+    private static char normalize(char c) {
+        if (c >= 'а' && c <= 'я') return c;
+        if (c >= 'А' && c <= 'Я') return (char) (c + ('а' - 'А'));
+        if (c == 'ё' || c == 'Ё') return 'е';
+        return Character.toLowerCase(c);
+    }
+
+    private static boolean isWordChar(char c) {
+        if ((c >= 'а' && c <= 'я') || (c >= 'А' && c <= 'Я') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+            return true;
+        }
+        return c > 0x7F ? Character.isLetterOrDigit(c) : (c >= 'A' && c <= 'Z');
+    }
+
+    private static int nextTokenStart(CharSequence text, int pos, int to) {
+        while (pos < to && !isWordChar(text.charAt(pos))) pos++;
+        return pos;
+    }
+
+    private static int tokenEnd(CharSequence text, int pos, int to) {
+        while (pos < to && isWordChar(text.charAt(pos))) pos++;
+        return pos;
+    }
+
+    /** Узел дерева основ: переходы по символам и переходы к следующему слову фразы */
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        int[] prefixWeights; // фраза закончилась основой: слово текста может быть длиннее
+        int[] exactWeights;  // фраза закончилась коротким словом: нужно совпадение целиком
+        Node prefixGap;
+        Node exactGap;
+
+        Node child(char c) {
+            if (keys.length <= 8) {
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] == c) return children[i];
+                }
+                return null;
+            }
+            int idx = Arrays.binarySearch(keys, c);
+            return idx >= 0 ? children[idx] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            if (idx >= 0) return children[idx];
+            int at = -idx - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newKeys[at] = c;
+            newChildren[at] = new Node();
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[at];
+        }
+
+        Node gapOrCreate(boolean exact) {
+            if (exact) {
+                if (exactGap == null) exactGap = new Node();
+                return exactGap;
+            }
+            if (prefixGap == null) prefixGap = new Node();
+            return prefixGap;
+        }
+
+        void addWeight(boolean exact, int reason, int weight, int reasonCount) {
+            if (exact) {
+                if (exactWeights == null) exactWeights = new int[reasonCount];
+                exactWeights[reason] = Math.max(exactWeights[reason], weight);
+            } else {
+                if (prefixWeights == null) prefixWeights = new int[reasonCount];
+                prefixWeights[reason] = Math.max(prefixWeights[reason], weight);
+            }
+        }
+    }
+}
@@ -1,268 +1,636 @@
 package com.example.telegrambot.service;
 
+import com.example.telegrambot.BotMetrics;
 import com.example.telegrambot.model.Meeting;
 import com.example.telegrambot.model.MeetingType;
 import com.example.telegrambot.model.OfferType;
+import com.example.telegrambot.model.RescheduleReason;
+import com.example.telegrambot.storage.MeetingCodec;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.sheets.v4.Sheets;
 import com.google.api.services.sheets.v4.SheetsScopes;
 import com.google.api.services.sheets.v4.model.*;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.GeneralSecurityException;
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.MonthDay;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntPredicate;
 
 /**
  * Работа с Google Sheets: недельные листы для офферов, отдельные недельные листы для переносов и комментариев.
  *
- * Именование:
- *   Базовый недельный лист (офферы): user{userId}_{MMM d}-{MMM d}
- *   Переносы:   user{userId}_{MMM d}-{MMM d}_Переносы
- *   Комментарии: user{userId}_{MMM d}-{MMM d}_Комментарии
+ * Именование листов задаёт {@link SheetLayout} (google.sheets.layout):
+ *   per-user: user{userId}_{MMM d}-{MMM d}, ..._Переносы, ..._Комментарии — до трёх листов на пользователя;
+ *   weekly:   Офферы_{MMM d}-{MMM d}, Переносы_..., Комментарии_... — общие листы с колонкой "Пользователь".
+ * В недельных листах строки пользователя находятся по кешу "пользователь -> номера строк"
+ * (одно чтение колонки пользователя) и читаются точечными диапазонами.
+ * {@link #migrateLegacySheets()} переносит листы per-user в недельные.
+ *
+ * Список листов (название -> sheetId) кешируется: загружается один раз, пополняется при создании
+ * листа и перечитывается только при промахе (не чаще catalog-refresh-ms) или ошибке "already exists".
+ *
+ * Запись идёт через очередь на диске ({@link SheetOutbox}): save*ToSheets только дописывают строку
+ * в файл, а {@link #flushPendingWrites()} раз в flush-interval-ms группирует строки по листам и
+ * отправляет их одним values().batchUpdate. Строки, не дошедшие до Sheets, переживают перезапуск.
+ *
+ * Все вызовы API идут через {@link SheetsCircuitBreaker}: после нескольких ошибок подряд
+ * Sheets не вызывается open-ms миллисекунд — чтение сразу получает ошибку, запись копится в очереди,
+ * а после восстановления очередь отправляется по порядку. Недельная статистика учитывает
+ * ещё не отправленные строки.
+ *
+ * Поиск встречи по ID активности идёт через {@link SheetActivityIndex}, который строится при старте
+ * одним batchGet по колонке C всех листов офферов и пополняется при каждой записи строки.
+ *
+ * Клиент (учётные данные, HTTP-транспорт) создаётся в фоновом потоке: бот стартует и принимает
+ * сообщения, даже если Sheets или credentials.json недоступны, — запись копится в очереди.
+ * Вызовы до готовности клиента ждут не дольше init-wait-ms, после ошибки инициализация
+ * повторяется не чаще init-retry-ms. Состояние — в health ({@link SheetsHealthIndicator}).
  */
 @Service
 public class GoogleSheetsService {
 
+    private static final Logger log = LoggerFactory.getLogger(GoogleSheetsService.class);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final List<DateTimeFormatter> FULL_DATE_FORMATS = List.of(DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("dd.MM.yyyy"), DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+    private static final List<String> SHORT_DATE_PATTERNS = List.of("dd.MM", "dd/MM", "d.MM");
+
     private final String spreadsheetId;
-    private Sheets sheetsService;
+    private final long catalogRefreshMs;
+    private final SheetActivityIndex activityIndex;
+    private final BotMetrics metrics;
+
+    // Фоновая инициализация клиента
+    private final String rootUrl;
+    private final String authMode;
+    private final long initWaitMs;
+    private final long initRetryMs;
+    private final ExecutorService initExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sheets-init");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile CompletableFuture<Sheets> client;
+    private volatile long initFailedAt;
+    private boolean started; // ApplicationReadyEvent уже был: задачи старта ждут готовности клиента
+
+    // Каталог листов: название -> sheetId
+    private final Map<String, Integer> sheetCatalog = new ConcurrentHashMap<>();
+    private volatile long catalogRefreshedAt;
 
-    public GoogleSheetsService(@Value("${google.sheets.spreadsheet.id}") String spreadsheetId) {
+    // Очередь записи на диске и автомат защиты от недоступности Sheets
+    private final SheetOutbox outbox;
+    private final SheetsCircuitBreaker breaker;
+    private final int flushBatchSize;
+    private final Object flushLock = new Object();
+    // Заголовки листов (порядок колонок не меняется после создания листа)
+    private final Map<String, List<Object>> sheetHeaders = new ConcurrentHashMap<>();
+
+    private final SheetLayout layout;
+    private final boolean migrateOnStartup;
+    private final Clock clock;
+    // Недельные листы: лист -> (пользователь -> номера его строк)
+    private final Map<String, Map<Long, Set<Integer>>> userRows = new ConcurrentHashMap<>();
+
+    public GoogleSheetsService(@Value("${google.sheets.spreadsheet.id}") String spreadsheetId,
+                               @Value("${google.sheets.catalog-refresh-ms:30000}") long catalogRefreshMs,
+                               @Value("${google.sheets.flush-batch-size:500}") int flushBatchSize,
+                               @Value("${google.sheets.breaker.failure-threshold:3}") int breakerFailureThreshold,
+                               @Value("${google.sheets.breaker.open-ms:30000}") long breakerOpenMs,
+                               @Value("${google.sheets.root-url:}") String rootUrl,
+                               @Value("${google.sheets.auth:service-account}") String authMode,
+                               @Value("${google.sheets.layout:per-user}") String layout,
+                               @Value("${google.sheets.layout.migrate:false}") boolean migrateOnStartup,
+                               @Value("${google.sheets.init-wait-ms:5000}") long initWaitMs,
+                               @Value("${google.sheets.init-retry-ms:60000}") long initRetryMs,
+                               SheetOutbox outbox,
+                               SheetActivityIndex activityIndex,
+                               BotMetrics metrics,
+                               Clock clock) {
         this.spreadsheetId = spreadsheetId;
+        this.clock = clock;
+        this.activityIndex = activityIndex;
+        this.metrics = metrics;
+        this.catalogRefreshMs = catalogRefreshMs;
+        this.outbox = outbox;
+        this.flushBatchSize = Math.max(1, flushBatchSize);
+        this.breaker = new SheetsCircuitBreaker(breakerFailureThreshold, breakerOpenMs);
+        this.layout = SheetLayout.parse(layout);
+        this.migrateOnStartup = migrateOnStartup;
+        this.rootUrl = rootUrl;
+        this.authMode = authMode;
+        this.initWaitMs = initWaitMs;
+        this.initRetryMs = initRetryMs;
+        metrics.gauge("bot.sheets.ready", "Клиент Google Sheets готов: 1 — да, 0 — нет", this, s -> s.isClientReady() ? 1 : 0);
+        metrics.gauge("bot.sheets.pending.rows", "Строки, ожидающие записи в Google Sheets", this, GoogleSheetsService::getPendingWriteCount);
+        metrics.gauge("bot.sheets.breaker.state", "Автомат защиты Sheets: 0 — замкнут, 1 — полуоткрыт, 2 — разомкнут",
+                breaker, b -> switch (b.getState()) { case CLOSED -> 0; case HALF_OPEN -> 1; case OPEN -> 2; });
+        this.client = startInit();
+    }
+
+    /** Клиент создан и им можно пользоваться */
+    public boolean isClientReady() {
+        CompletableFuture<Sheets> current = client;
+        return current.isDone() && !current.isCompletedExceptionally();
+    }
+
+    /** Ошибка последней инициализации клиента; null — клиент готов или ещё создаётся */
+    public Throwable getInitError() {
+        CompletableFuture<Sheets> current = client;
+        if (!current.isCompletedExceptionally()) return null;
         try {
-            initializeSheetsService();
-        } catch (Exception e) {
-            throw new RuntimeException("Ошибка инициализации Google Sheets", e);
+            current.join();
+            return null;
+        } catch (RuntimeException e) {
+            return e.getCause() != null ? e.getCause() : e;
         }
     }
 
-    private void initializeSheetsService() throws IOException, GeneralSecurityException {
-        InputStream credentialsStream = getClass().getResourceAsStream("/credentials.json");
-        if (credentialsStream == null) {
-            throw new RuntimeException("Файл credentials.json не найден в resources");
+    /** Состояние автомата защиты (для health) */
+    SheetsCircuitBreaker.State getBreakerState() {
+        return breaker.getState();
+    }
+
+    private CompletableFuture<Sheets> startInit() {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                Sheets sheets = initializeSheetsService();
+                log.info("Клиент Google Sheets готов за {} мс", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return sheets;
+            } catch (Exception e) {
+                initFailedAt = System.currentTimeMillis();
+                metrics.error("sheets-init");
+                log.error("Ошибка инициализации Google Sheets: {}", e.getMessage());
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }, initExecutor);
+    }
+
+    /** После ошибки инициализации — новая попытка, если с прошлой прошло init-retry-ms */
+    private synchronized void retryInitIfDue() {
+        if (client.isCompletedExceptionally() && System.currentTimeMillis() - initFailedAt >= initRetryMs) {
+            client = startInit();
+            if (started) {
+                // первая попытка не удалась — задачи старта выполнятся после этой
+                client.thenRunAsync(this::buildActivityIndexOnStartup, initExecutor);
+            }
+        }
+    }
+
+    /** Клиент Sheets; пока он создаётся, ждём не дольше init-wait-ms */
+    private Sheets sheets() throws IOException {
+        CompletableFuture<Sheets> current = client;
+        try {
+            return current.get(initWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("Google Sheets ещё инициализируется");
+        } catch (ExecutionException e) {
+            retryInitIfDue();
+            Throwable cause = e.getCause() instanceof IllegalStateException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            throw new IOException("Google Sheets не инициализирован: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Прервано ожидание инициализации Google Sheets", e);
+        }
+    }
+
+    /**
+     * rootUrl — адрес API (пусто — настоящий Google), authMode=none — без учётных данных,
+     * для локальной заглушки Sheets в нагрузочных тестах.
+     */
+    private Sheets initializeSheetsService() throws IOException, GeneralSecurityException {
+        HttpCredentialsAdapter credentialsAdapter = null;
+        if (!"none".equals(authMode)) {
+            InputStream credentialsStream = getClass().getResourceAsStream("/credentials.json");
+            if (credentialsStream == null) {
+                throw new RuntimeException("Файл credentials.json не найден в resources");
+            }
+            GoogleCredentials credentials = GoogleCredentials.fromStream(credentialsStream)
+                    .createScoped(Collections.singleton(SheetsScopes.SPREADSHEETS));
+            credentialsAdapter = new HttpCredentialsAdapter(credentials);
         }
-        GoogleCredentials credentials = GoogleCredentials.fromStream(credentialsStream)
-                .createScoped(Collections.singleton(SheetsScopes.SPREADSHEETS));
 
-        this.sheetsService = new Sheets.Builder(
+        Sheets.Builder builder = new Sheets.Builder(
                 GoogleNetHttpTransport.newTrustedTransport(),
                 JacksonFactory.getDefaultInstance(),
-                new HttpCredentialsAdapter(credentials)
-        ).setApplicationName("TelegramBot").build();
+                credentialsAdapter
+        ).setApplicationName("TelegramBot");
+        if (rootUrl != null && !rootUrl.isBlank()) {
+            builder.setRootUrl(rootUrl.endsWith("/") ? rootUrl : rootUrl + "/");
+        }
+        return builder.build();
     }
 
     // ---------- Публичные методы, используемые сервисами ----------
 
-    /** Запись офферов в недельный лист */
+    /** Запись офферов в недельный лист (строка ставится в очередь) */
     public void saveMeetingToSheets(Long userId, List<String> offers, String activityId) {
+        enqueue(PendingSheetRow.offers(sheetName(PendingSheetRow.Kind.OFFERS, userId), userId, LocalDateTime.now(clock), offers, activityId));
+    }
+
+    /** Поиск встречи по ID активности: через индекс, одним точечным чтением строки (или без чтения) */
+    public Meeting findMeetingById(String activityId) {
         try {
-            String sheetName = generateSheetName(userId);
-            if (!sheetExists(sheetName)) {
-                createOfferSheet(sheetName);
+            if (!activityIndex.isLoaded()) {
+                rebuildActivityIndex();
             }
-            addMeetingRow(sheetName, offers, activityId);
+            Meeting meeting = readIndexedMeeting(activityId);
+            if (meeting == null && activityIndex.find(activityId) != null) {
+                // строка сместилась (ручная правка листа) — перестраиваем индекс и пробуем ещё раз
+                rebuildActivityIndex();
+                meeting = readIndexedMeeting(activityId);
+            }
+            return meeting; // null — встреча не найдена
         } catch (Exception e) {
-            throw new RuntimeException("Ошибка сохранения офферов в Google Sheets", e);
+            log.warn("Ошибка поиска встречи по ID: {}", e.getMessage());
+            return null;
         }
     }
 
-    /** Поиск встречи по ID активности */
-    public Meeting findMeetingById(String activityId) {
+    /**
+     * После старта, как только готов клиент: перенос листов (если включён) и индекс ID активности.
+     * Если инициализация не удалась, задачи выполнятся после успешной повторной ({@link #retryInitIfDue()}).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void onStartup() {
+        started = true;
+        client.thenRunAsync(this::buildActivityIndexOnStartup, initExecutor);
+    }
+
+    /** Строит индекс ID активности одним batchGet по колонке C всех листов офферов */
+    public void buildActivityIndexOnStartup() {
+        if (migrateOnStartup && layout == SheetLayout.WEEKLY) {
+            try {
+                log.info("Листов старой раскладки перенесено: {}", migrateLegacySheets());
+            } catch (Exception e) {
+                log.warn("Не удалось перенести листы старой раскладки: {}", e.getMessage());
+            }
+        }
+        if (activityIndex.isLoaded()) return;
+        try {
+            rebuildActivityIndex();
+        } catch (Exception e) {
+            log.warn("Не удалось построить индекс активностей: {}", e.getMessage());
+        }
+    }
+
+    /** Еженедельная статистика по офферам: количество за неделю по ordinal {@link OfferType} */
+    public int[] getWeeklyStatsFromSheets(Long userId) {
+        String sheetName = sheetName(PendingSheetRow.Kind.OFFERS, userId);
         try {
-            // Получаем список всех листов
-            Spreadsheet spreadsheet = sheetsService.spreadsheets().get(spreadsheetId).execute();
-            List<Sheet> sheets = spreadsheet.getSheets();
-            
-            for (Sheet sheet : sheets) {
-                String sheetName = sheet.getProperties().getTitle();
-                
-                // Пропускаем листы с переносами и комментариями
-                if (sheetName.contains("_Переносы") || sheetName.contains("_Комментарии")) {
-                    continue;
+            // недоступность Sheets — ошибка, а не пустая статистика: по этим данным восстанавливаются счётчики
+            UserRows read = readUserRows(sheetName, userId, "ZZ");
+            List<List<Object>> rows = new ArrayList<>(read.rows().size() + 1);
+            rows.add(read.header());
+            rows.addAll(read.rows());
+            int[] totals = sumOfferColumns(rows);
+            // строки из очереди, которых ещё нет в листе; в строке оффер отмечается один раз
+            for (PendingSheetRow pending : unsentRows(sheetName, userId, read.read())) {
+                for (long m = MeetingCodec.offersMask(pending.offers()); m != 0; m &= m - 1) {
+                    totals[Long.numberOfTrailingZeros(m)]++;
                 }
-                
-                // Читаем данные листа
-                ValueRange vr = sheetsService.spreadsheets().values()
-                        .get(spreadsheetId, sheetName + "!A:ZZ").execute();
-                
-                List<List<Object>> rows = vr.getValues();
-                if (rows == null || rows.isEmpty()) continue;
-                
-                // Ищем строку с нужным ID активности (колонка C)
-                for (int i = 1; i < rows.size(); i++) { // начиная со второй строки (пропускаем заголовки)
-                    List<Object> row = rows.get(i);
-                    if (row.size() >= 3 && activityId.equals(String.valueOf(row.get(2)))) {
-                        // Найдена встреча, создаем объект Meeting
-                        Meeting meeting = new Meeting();
-                        meeting.setId(activityId);
-                        meeting.setTimestamp(LocalDateTime.now()); // Время встречи
-                        
-                        // Извлекаем офферы из строки
-                        List<String> offers = new ArrayList<>();
-                        for (int j = 3; j < row.size(); j++) {
-                            if ("1".equals(String.valueOf(row.get(j)))) {
-                                // Получаем название оффера из заголовка
-                                if (rows.get(0).size() > j) {
-                                    offers.add(String.valueOf(rows.get(0).get(j)));
-                                }
-                            }
-                        }
-                        meeting.setOffers(offers);
-                        meeting.setMeetingType(MeetingType.COMPLETED);
-                        meeting.setOriginalText("Мой вопрос: " + String.join(", ", offers).toLowerCase());
-                        
-                        return meeting;
+            }
+            return totals;
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения статистики из Google Sheets", e);
+        }
+    }
+
+    /** Суммы по колонкам офферов (заголовок — первая строка) по ordinal {@link OfferType}; вынесено для бенчмарка */
+    static int[] sumOfferColumns(List<List<Object>> rows) {
+        int[] totals = new int[OfferType.count()];
+        if (rows == null || rows.isEmpty()) return totals;
+
+        // колонка заголовка -> ordinal оффера (-1 — не оффер)
+        List<Object> header = rows.get(0);
+        int[] offerAt = new int[header.size()];
+        boolean any = false;
+        for (int i = 0; i < header.size(); i++) {
+            OfferType offer = OfferType.findByDisplayName(String.valueOf(header.get(i)));
+            offerAt[i] = offer == null ? -1 : offer.ordinal();
+            any |= offer != null;
+        }
+        if (!any) return totals;
+
+        // суммируем числа по строкам, начиная со второй
+        for (int r = 1; r < rows.size(); r++) {
+            List<Object> row = rows.get(r);
+            for (int i = 0; i < Math.min(row.size(), offerAt.length); i++) {
+                if (offerAt[i] < 0) continue;
+                String val = String.valueOf(row.get(i)).trim();
+                if (!val.isEmpty()) {
+                    try {
+                        totals[offerAt[i]] += Integer.parseInt(val);
+                    } catch (NumberFormatException ignore) {
+                        // пропустим нечисловые
                     }
                 }
             }
-            
-            return null; // Встреча не найдена
-        } catch (Exception e) {
-            System.out.println("Ошибка поиска встречи по ID: " + e.getMessage());
-            return null;
         }
+        return totals;
     }
 
-    /** Еженедельная статистика по офферам (название -> суммарное количество за неделю) */
-    public Map<String, Integer> getWeeklyStatsFromSheets(Long userId) {
-        String sheetName = generateSheetName(userId);
-        if (!safeSheetExists(sheetName)) return Collections.emptyMap();
+    /** Запись переноса в отдельный недельный лист пользователя (строка ставится в очередь) */
+    public void saveRescheduleToSheets(Long userId, String reason, String comment) {
+        enqueue(PendingSheetRow.reschedule(sheetName(PendingSheetRow.Kind.RESCHEDULE, userId), userId, LocalDateTime.now(clock), reason, comment));
+    }
+
+    /** Запись комментария в отдельный недельный лист пользователя (строка ставится в очередь) */
+    public void saveCommentToSheets(Long userId, String comment) {
+        enqueue(PendingSheetRow.comment(sheetName(PendingSheetRow.Kind.COMMENT, userId), userId, LocalDateTime.now(clock), comment));
+    }
+
+    /** Количество строк, ожидающих отправки */
+    public int getPendingWriteCount() {
+        return outbox.size();
+    }
 
+    /** Сброс очереди: строки уходят по порядку, до flush-batch-size строк на один batchUpdate */
+    @Scheduled(fixedDelayString = "${google.sheets.flush-interval-ms:2000}")
+    public void flushPendingWrites() {
+        synchronized (flushLock) {
+            if (outbox.size() == 0 || breaker.getState() == SheetsCircuitBreaker.State.OPEN) return;
+            if (getInitError() != null) {
+                retryInitIfDue(); // строки подождут в очереди
+                return;
+            }
+            outbox.force();
+            List<SheetOutbox.Entry> batch;
+            do {
+                batch = outbox.peek(flushBatchSize);
+                if (batch.isEmpty()) return;
+                try {
+                    writeBatch(batch);
+                } catch (GoogleJsonResponseException e) {
+                    if (!isPermanent(e)) {
+                        log.warn("Ошибка записи в Google Sheets, строк в очереди: {} ({})", outbox.size(), e.getMessage());
+                        return;
+                    }
+                    // одна отклонённая строка отклоняет весь batchUpdate: пишем по одной, чтобы найти её
+                    if (!writeOneByOne(batch)) return;
+                } catch (Exception e) {
+                    // строки остаются в очереди с закреплёнными номерами строк, повторим в следующий раз
+                    log.warn("Ошибка записи в Google Sheets, строк в очереди: {} ({})", outbox.size(), e.getMessage());
+                    return;
+                }
+            } while (batch.size() == flushBatchSize);
+        }
+    }
+
+    /**
+     * Пишет строки по одной; отклонённые насовсем уходят в файл отказов.
+     * false — временная ошибка, остаток повторим в следующий раз.
+     */
+    private boolean writeOneByOne(List<SheetOutbox.Entry> batch) {
         try {
-            // читаем весь диапазон
-            ValueRange vr = sheetsService.spreadsheets().values()
-                    .get(spreadsheetId, sheetName + "!A:ZZ").execute();
-
-            List<List<Object>> rows = vr.getValues();
-            if (rows == null || rows.isEmpty()) return Collections.emptyMap();
-
-            // заголовки
-            List<Object> header = rows.get(0);
-            // Индексы колонок с офферами (по displayName)
-            Map<String, Integer> offerIndex = new LinkedHashMap<>();
-            List<String> offerNames = OfferType.getAllDisplayNames();
-            for (int i = 0; i < header.size(); i++) {
-                String h = String.valueOf(header.get(i)).trim();
-                if (offerNames.contains(h)) {
-                    offerIndex.put(h, i);
+            refreshCatalog(); // лист могли удалить вручную — тогда он будет создан заново
+        } catch (IOException e) {
+            log.warn("Ошибка чтения списка листов Google Sheets: {}", e.getMessage());
+            return false;
+        }
+        // заново из очереди: у строк уже закреплены номера строк листа, отклонённая оставит пустую строку
+        for (SheetOutbox.Entry entry : outbox.peek(batch.size())) {
+            try {
+                writeBatch(List.of(entry));
+            } catch (GoogleJsonResponseException e) {
+                if (!isPermanent(e)) {
+                    log.warn("Ошибка записи в Google Sheets, строк в очереди: {} ({})", outbox.size(), e.getMessage());
+                    return false;
                 }
+                String error = e.getStatusCode() + " " + (e.getDetails() != null ? e.getDetails().getMessage() : e.getMessage());
+                outbox.deadLetter(List.of(entry), error);
+                metrics.error("sheets-dead-letter");
+                log.error("Google Sheets отклонил строку листа {}, она перенесена в {}: {}",
+                        entry.row().sheetName(), outbox.getDeadLetterPath(), error);
+            } catch (Exception e) {
+                log.warn("Ошибка записи в Google Sheets, строк в очереди: {} ({})", outbox.size(), e.getMessage());
+                return false;
             }
-            if (offerIndex.isEmpty()) return Collections.emptyMap();
-
-            Map<String, Integer> totals = new LinkedHashMap<>();
-            offerIndex.keySet().forEach(k -> totals.put(k, 0));
-
-            // суммируем числа по строкам, начиная со второй
-            for (int r = 1; r < rows.size(); r++) {
-                List<Object> row = rows.get(r);
-                for (Map.Entry<String, Integer> e : offerIndex.entrySet()) {
-                    int idx = e.getValue();
-                    if (idx < row.size()) {
-                        String val = String.valueOf(row.get(idx)).trim();
-                        if (!val.isEmpty()) {
-                            try {
-                                totals.put(e.getKey(), totals.get(e.getKey()) + Integer.parseInt(val));
-                            } catch (NumberFormatException ignore) {
-                                // пропустим нечисловые
-                            }
-                        }
-                    }
+        }
+        return true;
+    }
+
+    /** Ошибка запроса, которую повтор не исправит (4xx, кроме авторизации, таймаута и лимитов) */
+    static boolean isPermanent(GoogleJsonResponseException e) {
+        int status = e.getStatusCode();
+        if (status < 400 || status >= 500 || status == 401 || status == 408 || status == 429) return false;
+        if (status == 403 && e.getDetails() != null && e.getDetails().getErrors() != null) {
+            // 403 rateLimitExceeded / userRateLimitExceeded — это лимит, а не запрет
+            return e.getDetails().getErrors().stream()
+                    .noneMatch(info -> info.getReason() != null && info.getReason().toLowerCase().contains("ratelimit"));
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushPendingWrites();
+        int left = getPendingWriteCount();
+        if (left > 0) {
+            log.warn("Строк не отправлено в Google Sheets: {}, они останутся в очереди до следующего запуска", left);
+        }
+        initExecutor.shutdownNow();
+    }
+
+    /**
+     * Переносит листы раскладки per-user в недельные: строки каждого вида за неделю дописываются
+     * в общий лист с колонкой "Пользователь" (колонки офферов сопоставляются по заголовку),
+     * а исходные листы удаляются в том же batchUpdate: запрос атомарен, поэтому после сбоя
+     * повторный запуск не задвоит строки. Перед переносом очередь записи должна быть пуста.
+     * Возвращает количество перенесённых листов.
+     */
+    public int migrateLegacySheets() throws IOException {
+        synchronized (flushLock) {
+            flushPendingWrites();
+            if (outbox.size() > 0) {
+                throw new IOException("В очереди записи остались строки: " + outbox.size());
+            }
+            refreshCatalog();
+            // целевой недельный лист -> исходные листы per-user
+            Map<String, List<String>> groups = new TreeMap<>();
+            for (String sheetName : sheetCatalog.keySet()) {
+                SheetLayout.LegacySheet legacy = SheetLayout.parseLegacy(sheetName);
+                if (legacy != null) {
+                    groups.computeIfAbsent(SheetLayout.weeklyName(legacy.kind(), legacy.week()), k -> new ArrayList<>()).add(sheetName);
                 }
             }
-            // удалить нули для красоты
-            totals.entrySet().removeIf(en -> en.getValue() == 0);
-            return totals;
-        } catch (IOException e) {
-            throw new RuntimeException("Ошибка чтения статистики из Google Sheets", e);
+            int migrated = 0;
+            for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+                migrateGroup(group.getKey(), group.getValue());
+                migrated += group.getValue().size();
+            }
+            userRows.clear();
+            if (migrated > 0) {
+                rebuildActivityIndex();
+            }
+            return migrated;
         }
     }
 
-    /** Запись переноса в отдельный недельный лист пользователя */
-    public void saveRescheduleToSheets(Long userId, String reason, String comment) {
-        try {
-            String sheetName = generateRescheduleSheetName(userId);
-            if (!sheetExists(sheetName)) {
-                createRescheduleSheet(sheetName);
+    private void migrateGroup(String target, List<String> sources) throws IOException {
+        PendingSheetRow.Kind kind = SheetLayout.parseLegacy(sources.get(0)).kind();
+        if (!sheetExists(target)) {
+            switch (kind) {
+                case OFFERS -> createOfferSheet(target);
+                case RESCHEDULE -> createRescheduleSheet(target);
+                case COMMENT -> createCommentSheet(target);
             }
-            addRescheduleRow(sheetName, reason, comment);
-        } catch (Exception e) {
-            throw new RuntimeException("Ошибка сохранения переноса", e);
         }
+        List<Object> targetHeader = header(target);
+
+        List<String> ranges = new ArrayList<>();
+        for (String source : sources) {
+            ranges.add(range(source, "A:ZZ"));
+        }
+        List<ValueRange> fetched = call("values.batchGet", sheets().spreadsheets().values()
+                .batchGet(spreadsheetId).setRanges(ranges)::execute).getValueRanges();
+
+        List<RowData> rows = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            List<List<Object>> values = fetched.get(i).getValues();
+            if (values == null || values.size() <= 1) continue;
+            String userId = String.valueOf(SheetLayout.parseLegacy(sources.get(i)).userId());
+            List<Object> sourceHeader = values.get(0);
+            for (int r = 1; r < values.size(); r++) {
+                List<Object> source = values.get(r);
+                if (source == null || source.isEmpty()) continue;
+                List<CellData> row = new ArrayList<>();
+                for (Object column : targetHeader) {
+                    String value;
+                    if (column.equals(SheetLayout.USER_COLUMN)) {
+                        value = userId;
+                    } else {
+                        int idx = sourceHeader.indexOf(column);
+                        value = idx < 0 ? "" : getCell(source, idx);
+                    }
+                    // строкой, как valueInputOption=RAW
+                    row.add(new CellData().setUserEnteredValue(new ExtendedValue().setStringValue(value)));
+                }
+                rows.add(new RowData().setValues(row));
+            }
+        }
+
+        // строки и удаление исходных листов — одним атомарным batchUpdate
+        List<Request> requests = new ArrayList<>();
+        if (!rows.isEmpty()) {
+            requests.add(new Request().setAppendCells(new AppendCellsRequest()
+                    .setSheetId(sheetCatalog.get(target)).setRows(rows).setFields("userEnteredValue")));
+        }
+        for (String source : sources) {
+            Integer sheetId = sheetCatalog.get(source);
+            if (sheetId != null) {
+                requests.add(new Request().setDeleteSheet(new DeleteSheetRequest().setSheetId(sheetId)));
+            }
+        }
+        if (!requests.isEmpty()) {
+            call("spreadsheets.batchUpdate", sheets().spreadsheets()
+                    .batchUpdate(spreadsheetId, new BatchUpdateSpreadsheetRequest().setRequests(requests))::execute);
+        }
+        sources.forEach(sheetCatalog::remove);
+        sources.forEach(sheetHeaders::remove);
+        log.info("Лист {}: перенесено строк {} из листов: {}", target, rows.size(), sources.size());
     }
 
-    /** Запись комментария в отдельный недельный лист пользователя */
-    public void saveCommentToSheets(Long userId, String comment) {
+    /** Еженедельная статистика переносов по ordinal {@link RescheduleReason} (причины не из справочника — ДРУГОЕ) */
+    public int[] getWeeklyRescheduleStatsFromSheets(Long userId) {
+        String sheetName = sheetName(PendingSheetRow.Kind.RESCHEDULE, userId);
         try {
-            String sheetName = generateCommentSheetName(userId);
-            if (!sheetExists(sheetName)) {
-                createCommentSheet(sheetName);
+            UserRows read = readUserRows(sheetName, userId, "D");
+
+            int[] counts = new int[RescheduleReason.values().length];
+            for (List<Object> row : read.rows()) {
+                if (row == null || row.isEmpty()) continue;
+                countReason(counts, getCell(row, 2)); // колонка C: Причина
             }
-            addCommentRow(sheetName, comment);
-        } catch (Exception e) {
-            throw new RuntimeException("Ошибка сохранения комментария", e);
+            for (PendingSheetRow pending : unsentRows(sheetName, userId, read.read())) {
+                if (pending.reason() != null) countReason(counts, pending.reason());
+            }
+            return counts;
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения переносов из Google Sheets", e);
         }
     }
 
-    /** Еженедельная статистика переносов (причина -> количество) */
-    public Map<String, Integer> getWeeklyRescheduleStatsFromSheets(Long userId) {
-        String sheetName = generateRescheduleSheetName(userId);
-        if (!safeSheetExists(sheetName)) return Collections.emptyMap();
+    /**
+     * Строки офферов и переносов пользователя за текущую неделю как встречи — без строк из очереди
+     * (они уже есть в локальном хранилище). По ним в хранилище переносятся строки, внесённые в лист
+     * не через бота. Недоступность Sheets — исключение, а не пустой список.
+     */
+    public List<Meeting> getWeeklyMeetingsFromSheets(Long userId) {
+        LocalDate today = LocalDate.now(clock);
+        List<Meeting> out = new ArrayList<>();
         try {
-            ValueRange vr = sheetsService.spreadsheets().values()
-                    .get(spreadsheetId, sheetName + "!A:D").execute();
-            List<List<Object>> rows = vr.getValues();
-            if (rows == null || rows.size() <= 1) return Collections.emptyMap();
-
-            Map<String, Integer> map = new LinkedHashMap<>();
-            for (int i = 1; i < rows.size(); i++) {
-                List<Object> row = rows.get(i);
+            UserRows offers = readUserRows(sheetName(PendingSheetRow.Kind.OFFERS, userId), userId, "ZZ");
+            for (List<Object> row : offers.rows()) {
                 if (row == null || row.isEmpty()) continue;
-                String reason = getCell(row, 2); // колонка C: Причина
-                if (reason.isEmpty()) continue;
-                map.put(reason, map.getOrDefault(reason, 0) + 1);
+                Meeting m = toMeeting(getCell(row, 2), offers.header(), row, today);
+                m.setUserId(userId);
+                if (m.hasOffers()) out.add(m);
             }
-            return map;
+            UserRows reschedules = readUserRows(sheetName(PendingSheetRow.Kind.RESCHEDULE, userId), userId, "D");
+            for (List<Object> row : reschedules.rows()) {
+                if (row == null || row.isEmpty() || getCell(row, 2).isEmpty()) continue;
+                out.add(new Meeting(null, timestamp(row, today), "", userId, getCell(row, 2), getCell(row, 3)));
+            }
+            return out;
         } catch (IOException e) {
-            throw new RuntimeException("Ошибка чтения переносов из Google Sheets", e);
+            throw new RuntimeException("Ошибка чтения встреч из Google Sheets", e);
         }
     }
 
-    /** Список комментариев за неделю (как список Meeting для совместимости) */
+    /** Список комментариев за неделю (как список Meeting для совместимости), вместе со строками из очереди */
     public List<Meeting> getWeeklyCommentsFromSheets(Long userId) {
-        String sheetName = generateCommentSheetName(userId);
-        if (!safeSheetExists(sheetName)) return Collections.emptyList();
+        String sheetName = sheetName(PendingSheetRow.Kind.COMMENT, userId);
         try {
-            ValueRange vr = sheetsService.spreadsheets().values()
-                    .get(spreadsheetId, sheetName + "!A:C").execute();
-            List<List<Object>> rows = vr.getValues();
-            if (rows == null || rows.size() <= 1) return Collections.emptyList();
-
+            UserRows read = safeSheetExists(sheetName) ? readUserRows(sheetName, userId, "C") : UserRows.EMPTY;
             List<Meeting> out = new ArrayList<>();
-            for (int i = 1; i < rows.size(); i++) {
-                List<Object> row = rows.get(i);
+            for (List<Object> row : read.rows()) {
                 if (row == null || row.isEmpty()) continue;
 
                 String dateStr = getCell(row, 0);
                 String timeStr = getCell(row, 1);
                 String comment = getCell(row, 2);
 
-                LocalDate date = parseDate(dateStr);
+                LocalDate date = parseDate(dateStr, LocalDate.now(clock));
                 LocalTime time = parseTime(timeStr);
-                LocalDateTime timestamp = (date == null ? LocalDate.now() : date).atTime(time == null ? LocalTime.MIDNIGHT : time);
-
-                Meeting m = new Meeting(timestamp, Collections.emptyList(), "", userId);
-                m.setComment(comment);
-                m.setMeetingType(MeetingType.COMMENT);
-                out.add(m);
+                LocalDateTime timestamp = (date == null ? LocalDate.now(clock) : date).atTime(time == null ? LocalTime.MIDNIGHT : time);
+                out.add(comment(userId, timestamp, comment));
+            }
+            // строки из очереди, которых ещё нет в листе: ответ /meetings кешируется до следующей встречи
+            for (PendingSheetRow pending : unsentRows(sheetName, userId, read.read())) {
+                out.add(comment(userId, pending.timestamp(), pending.comment()));
             }
             return out;
         } catch (IOException e) {
@@ -270,30 +638,150 @@ public class GoogleSheetsService {
         }
     }
 
+    private static Meeting comment(Long userId, LocalDateTime timestamp, String comment) {
+        Meeting m = new Meeting(timestamp, Collections.emptyList(), "", userId);
+        m.setComment(comment);
+        m.setMeetingType(MeetingType.COMMENT);
+        return m;
+    }
+
     // ---------- Вспомогательные методы и создание листов ----------
 
-    private String generateSheetName(Long userId) {
-        LocalDateTime now = LocalDateTime.now();
-        // находим понедельник текущей недели (1..7)
-        LocalDateTime monday = now.minusDays(now.getDayOfWeek().getValue() - 1L);
-        LocalDateTime sunday = monday.plusDays(6);
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("MMM d", java.util.Locale.forLanguageTag("ru"));
-        String weekRange = monday.format(fmt) + "-" + sunday.format(fmt);
-        return String.format("user%d_%s", userId, weekRange);
+    /** Лист текущей недели для вида записей (в раскладке из настроек) */
+    private String sheetName(PendingSheetRow.Kind kind, Long userId) {
+        return layout.sheetName(kind, userId, LocalDate.now(clock));
+    }
+
+    /** Строки пользователя на листе без заголовка; read — попадает ли номер строки листа в прочитанное */
+    private record UserRows(List<Object> header, List<List<Object>> rows, IntPredicate read) {
+        static final UserRows EMPTY = new UserRows(Collections.emptyList(), Collections.emptyList(), r -> false);
+    }
+
+    /**
+     * Листы per-user читаются целиком (A:lastColumn). В недельных листах номера строк пользователя
+     * берутся из кеша userRows и читаются одним batchGet по подряд идущим диапазонам; если строка
+     * оказалась чужой (лист правили вручную), кеш перестраивается и чтение повторяется.
+     */
+    private UserRows readUserRows(String sheetName, Long userId, String lastColumn) throws IOException {
+        if (!sheetExists(sheetName)) return UserRows.EMPTY;
+        if (!SheetLayout.hasUserColumn(sheetName)) {
+            List<List<Object>> rows = call("values.get", sheets().spreadsheets().values()
+                    .get(spreadsheetId, range(sheetName, "A:" + lastColumn))::execute).getValues();
+            if (rows == null || rows.isEmpty()) return UserRows.EMPTY;
+            int total = rows.size();
+            return new UserRows(rows.get(0), rows.subList(1, total), r -> r <= total);
+        }
+
+        List<Object> header = header(sheetName);
+        int userCol = header.indexOf(SheetLayout.USER_COLUMN);
+        if (userCol < 0) return UserRows.EMPTY;
+        String user = String.valueOf(userId);
+        for (int attempt = 0; ; attempt++) {
+            List<Integer> numbers = new ArrayList<>(userRowMap(sheetName, userCol).getOrDefault(userId, Collections.emptySet()));
+            List<List<Object>> rows = readRowRuns(sheetName, numbers);
+            boolean stale = false;
+            for (List<Object> row : rows) {
+                if (!user.equals(getCell(row, userCol))) stale = true;
+            }
+            if (!stale || attempt > 0) {
+                rows.removeIf(row -> !user.equals(getCell(row, userCol)));
+                Set<Integer> read = new HashSet<>(numbers);
+                return new UserRows(header, rows, read::contains);
+            }
+            userRows.remove(sheetName);
+        }
+    }
+
+    /** Заголовок листа (из кеша или одним чтением первой строки) */
+    private List<Object> header(String sheetName) throws IOException {
+        List<Object> header = sheetHeaders.get(sheetName);
+        if (header == null) {
+            List<List<Object>> values = call("values.get", sheets().spreadsheets().values()
+                    .get(spreadsheetId, range(sheetName, "1:1"))::execute).getValues();
+            header = values != null && !values.isEmpty() ? values.get(0) : Collections.emptyList();
+            sheetHeaders.put(sheetName, header);
+        }
+        return header;
     }
 
-    private String generateRescheduleSheetName(Long userId) {
-        return generateSheetName(userId) + "_Переносы";
+    /** Кеш "пользователь -> номера строк" недельного листа; строится одним чтением колонки пользователя */
+    private Map<Long, Set<Integer>> userRowMap(String sheetName, int userCol) throws IOException {
+        Map<Long, Set<Integer>> map = userRows.get(sheetName);
+        if (map != null) return map;
+        String column = columnName(userCol);
+        List<List<Object>> values = call("values.get", sheets().spreadsheets().values()
+                .get(spreadsheetId, range(sheetName, column + ":" + column))::execute).getValues();
+        map = new ConcurrentHashMap<>();
+        if (values != null) {
+            for (int i = 1; i < values.size(); i++) { // первая строка — заголовок
+                String cell = values.get(i).isEmpty() ? "" : String.valueOf(values.get(i).get(0)).trim();
+                try {
+                    map.computeIfAbsent(Long.parseLong(cell), k -> new ConcurrentSkipListSet<>()).add(i + 1);
+                } catch (NumberFormatException ignore) {
+                    // пустые и нечисловые ячейки пропускаем
+                }
+            }
+        }
+        userRows.put(sheetName, map);
+        return map;
     }
 
-    private String generateCommentSheetName(Long userId) {
-        return generateSheetName(userId) + "_Комментарии";
+    /** Строки листа с заданными номерами (по возрастанию): один batchGet, диапазон на каждый отрезок подряд идущих строк */
+    private List<List<Object>> readRowRuns(String sheetName, List<Integer> numbers) throws IOException {
+        List<List<Object>> out = new ArrayList<>();
+        if (numbers.isEmpty()) return out;
+        List<String> ranges = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        int start = numbers.get(0);
+        int prev = start;
+        for (int i = 1; i <= numbers.size(); i++) {
+            if (i == numbers.size() || numbers.get(i) != prev + 1) {
+                ranges.add(range(sheetName, "A" + start + ":ZZ" + prev));
+                lengths.add(prev - start + 1);
+                if (i < numbers.size()) start = numbers.get(i);
+            }
+            if (i < numbers.size()) prev = numbers.get(i);
+        }
+        List<ValueRange> fetched = call("values.batchGet", sheets().spreadsheets().values()
+                .batchGet(spreadsheetId).setRanges(ranges)::execute).getValueRanges();
+        for (int i = 0; i < ranges.size(); i++) {
+            List<List<Object>> values = fetched.get(i).getValues();
+            for (int j = 0; j < lengths.get(i); j++) {
+                // пустые строки в конце диапазона API не возвращает
+                out.add(values != null && j < values.size() ? values.get(j) : Collections.emptyList());
+            }
+        }
+        return out;
     }
 
     private boolean sheetExists(String sheetName) throws IOException {
-        Spreadsheet spreadsheet = sheetsService.spreadsheets().get(spreadsheetId).execute();
-        return spreadsheet.getSheets().stream()
-                .anyMatch(s -> sheetName.equals(s.getProperties().getTitle()));
+        if (catalogRefreshedAt == 0) {
+            refreshCatalog();
+        }
+        if (sheetCatalog.containsKey(sheetName)) {
+            return true;
+        }
+        // промах: лист мог появиться без нас — перечитываем каталог, но не чаще catalogRefreshMs
+        if (System.currentTimeMillis() - catalogRefreshedAt >= catalogRefreshMs) {
+            refreshCatalog();
+            return sheetCatalog.containsKey(sheetName);
+        }
+        return false;
+    }
+
+    /** Перечитывает список листов (только title и sheetId, без остальных свойств) */
+    private synchronized void refreshCatalog() throws IOException {
+        Spreadsheet spreadsheet = call("spreadsheets.get", sheets().spreadsheets().get(spreadsheetId)
+                .setFields("sheets.properties(sheetId,title)")::execute);
+        Map<String, Integer> fresh = new HashMap<>();
+        if (spreadsheet.getSheets() != null) {
+            for (Sheet sheet : spreadsheet.getSheets()) {
+                fresh.put(sheet.getProperties().getTitle(), sheet.getProperties().getSheetId());
+            }
+        }
+        sheetCatalog.keySet().retainAll(fresh.keySet());
+        sheetCatalog.putAll(fresh);
+        catalogRefreshedAt = System.currentTimeMillis();
     }
 
     private boolean safeSheetExists(String sheetName) {
@@ -305,130 +793,431 @@ public class GoogleSheetsService {
     }
 
     private void createOfferSheet(String sheetName) throws IOException {
-        addEmptySheet(sheetName);
+        if (!addEmptySheet(sheetName)) return; // лист уже был создан, заголовки на месте
         // заголовки: Дата, Время, ID активности, офферы...
         List<Object> headers = new ArrayList<>();
         headers.add("Дата");
         headers.add("Время");
         headers.add("ID активности");
         headers.addAll(OfferType.getAllDisplayNames());
+        if (SheetLayout.hasUserColumn(sheetName)) headers.add(SheetLayout.USER_COLUMN);
+        sheetHeaders.put(sheetName, headers);
         ValueRange vr = new ValueRange().setValues(Collections.singletonList(headers));
-        sheetsService.spreadsheets().values()
+        call("values.update", sheets().spreadsheets().values()
                 .update(spreadsheetId, sheetName + "!A1", vr)
-                .setValueInputOption("RAW").execute();
+                .setValueInputOption("RAW")::execute);
     }
 
     private void createRescheduleSheet(String sheetName) throws IOException {
-        addEmptySheet(sheetName);
-        List<Object> headers = Arrays.asList("Дата", "Время", "Причина", "Комментарий");
+        if (!addEmptySheet(sheetName)) return; // лист уже был создан, заголовки на месте
+        List<Object> headers = new ArrayList<>(Arrays.asList("Дата", "Время", "Причина", "Комментарий"));
+        if (SheetLayout.hasUserColumn(sheetName)) headers.add(SheetLayout.USER_COLUMN);
+        sheetHeaders.put(sheetName, headers);
         ValueRange vr = new ValueRange().setValues(Collections.singletonList(headers));
-        sheetsService.spreadsheets().values()
+        call("values.update", sheets().spreadsheets().values()
                 .update(spreadsheetId, sheetName + "!A1", vr)
-                .setValueInputOption("RAW").execute();
+                .setValueInputOption("RAW")::execute);
     }
 
     private void createCommentSheet(String sheetName) throws IOException {
-        addEmptySheet(sheetName);
-        List<Object> headers = Arrays.asList("Дата", "Время", "Комментарий");
+        if (!addEmptySheet(sheetName)) return; // лист уже был создан, заголовки на месте
+        List<Object> headers = new ArrayList<>(Arrays.asList("Дата", "Время", "Комментарий"));
+        if (SheetLayout.hasUserColumn(sheetName)) headers.add(SheetLayout.USER_COLUMN);
+        sheetHeaders.put(sheetName, headers);
         ValueRange vr = new ValueRange().setValues(Collections.singletonList(headers));
-        sheetsService.spreadsheets().values()
+        call("values.update", sheets().spreadsheets().values()
                 .update(spreadsheetId, sheetName + "!A1", vr)
-                .setValueInputOption("RAW").execute();
+                .setValueInputOption("RAW")::execute);
     }
 
-    private void addEmptySheet(String sheetName) throws IOException {
+    /** Создаёт лист; false — если лист с таким названием уже существует */
+    private boolean addEmptySheet(String sheetName) throws IOException {
         AddSheetRequest add = new AddSheetRequest()
                 .setProperties(new SheetProperties().setTitle(sheetName));
         BatchUpdateSpreadsheetRequest batch = new BatchUpdateSpreadsheetRequest()
                 .setRequests(Collections.singletonList(new Request().setAddSheet(add)));
-        sheetsService.spreadsheets().batchUpdate(spreadsheetId, batch).execute();
+        try {
+            BatchUpdateSpreadsheetResponse response = call("spreadsheets.batchUpdate", sheets().spreadsheets().batchUpdate(spreadsheetId, batch)::execute);
+            SheetProperties created = response.getReplies().get(0).getAddSheet().getProperties();
+            sheetCatalog.put(created.getTitle(), created.getSheetId());
+            return true;
+        } catch (GoogleJsonResponseException e) {
+            if (e.getDetails() != null && e.getDetails().getMessage() != null
+                    && e.getDetails().getMessage().contains("already exists")) {
+                refreshCatalog();
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private void enqueue(PendingSheetRow row) {
+        if (!outbox.add(row)) {
+            metrics.error("sheets-queue");
+            throw new RuntimeException("Очередь записи в Google Sheets переполнена");
+        }
+    }
+
+    /**
+     * Вызов Sheets API через автомат защиты. Ответы 4xx (кроме 429) говорят об ошибке запроса,
+     * а не о недоступности, и автомат не размыкают.
+     */
+    <T> T call(String operation, BotMetrics.SheetsCall<T> call) throws IOException {
+        if (!breaker.tryAcquire()) {
+            throw new IOException("Google Sheets временно недоступен");
+        }
+        try {
+            T result = metrics.sheetsCall(operation, call);
+            breaker.onSuccess();
+            return result;
+        } catch (GoogleJsonResponseException e) {
+            int status = e.getStatusCode();
+            if (status >= 400 && status < 500 && status != 429) {
+                breaker.onIgnored();
+            } else {
+                breaker.onFailure();
+            }
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * Строки очереди для листа, которых ещё нет в прочитанных rows. Строка с уже выбранным номером,
+     * попадающим в прочитанный диапазон, могла быть записана до потери ответа — её не считаем.
+     */
+    private List<PendingSheetRow> unsentRows(String sheetName, Long userId, IntPredicate read) {
+        List<PendingSheetRow> out = new ArrayList<>();
+        for (SheetOutbox.Entry e : outbox.pendingForSheet(sheetName)) {
+            // у строк, принятых до появления колонки пользователя, userId нет — это листы per-user
+            boolean own = e.row().userId() == null || e.row().userId().equals(userId);
+            if (own && (e.sheetRow() == null || !read.test(e.sheetRow()))) {
+                out.add(e.row());
+            }
+        }
+        return out;
+    }
+
+    private void writeBatch(List<SheetOutbox.Entry> batch) throws IOException {
+        // группируем строки по листам, сохраняя порядок поступления
+        Map<String, List<SheetOutbox.Entry>> bySheet = new LinkedHashMap<>();
+        for (SheetOutbox.Entry entry : batch) {
+            bySheet.computeIfAbsent(entry.row().sheetName(), k -> new ArrayList<>()).add(entry);
+        }
+
+        for (Map.Entry<String, List<SheetOutbox.Entry>> e : bySheet.entrySet()) {
+            if (!sheetExists(e.getKey())) {
+                switch (e.getValue().get(0).row().kind()) {
+                    case OFFERS -> createOfferSheet(e.getKey());
+                    case RESCHEDULE -> createRescheduleSheet(e.getKey());
+                    case COMMENT -> createCommentSheet(e.getKey());
+                }
+            }
+        }
+
+        // один batchGet: колонка A каждого листа (следующая свободная строка) и недостающие заголовки
+        List<String> sheetNames = new ArrayList<>(bySheet.keySet());
+        List<String> ranges = new ArrayList<>();
+        List<String> headerSheets = new ArrayList<>();
+        for (String sheetName : sheetNames) {
+            ranges.add(range(sheetName, "A:A"));
+        }
+        for (String sheetName : sheetNames) {
+            if (bySheet.get(sheetName).get(0).row().kind() == PendingSheetRow.Kind.OFFERS && !sheetHeaders.containsKey(sheetName)) {
+                headerSheets.add(sheetName);
+                ranges.add(range(sheetName, "1:1"));
+            }
+        }
+        List<ValueRange> fetched = call("values.batchGet", sheets().spreadsheets().values()
+                .batchGet(spreadsheetId).setRanges(ranges)::execute).getValueRanges();
+        for (int i = 0; i < headerSheets.size(); i++) {
+            List<List<Object>> values = fetched.get(sheetNames.size() + i).getValues();
+            sheetHeaders.put(headerSheets.get(i), values != null && !values.isEmpty() ? values.get(0) : Collections.emptyList());
+        }
+
+        // номера строк: повтор пишет в ранее выбранные строки, новые строки — после занятых
+        Map<Long, Integer> assigned = new LinkedHashMap<>();
+        List<ValueRange> data = new ArrayList<>();
+        List<WrittenRow> written = new ArrayList<>();
+        List<UserRow> userRowsWritten = new ArrayList<>();
+        List<Long> seqs = new ArrayList<>();
+        for (int i = 0; i < sheetNames.size(); i++) {
+            String sheetName = sheetNames.get(i);
+            List<List<Object>> columnA = fetched.get(i).getValues();
+            int nextRow = Math.max((columnA != null) ? columnA.size() + 1 : 2, outbox.maxAssignedRow(sheetName) + 1);
+            nextRow = Math.max(nextRow, 2);
+
+            // подряд идущие строки листа — один ValueRange
+            int runStart = -1;
+            List<List<Object>> run = new ArrayList<>();
+            for (SheetOutbox.Entry entry : bySheet.get(sheetName)) {
+                int sheetRow;
+                if (entry.sheetRow() != null) {
+                    sheetRow = entry.sheetRow();
+                } else {
+                    sheetRow = nextRow++;
+                    assigned.put(entry.seq(), sheetRow);
+                }
+                if (!run.isEmpty() && sheetRow != runStart + run.size()) {
+                    data.add(new ValueRange().setRange(range(sheetName, "A" + runStart)).setValues(run));
+                    run = new ArrayList<>();
+                }
+                if (run.isEmpty()) runStart = sheetRow;
+
+                PendingSheetRow pending = entry.row();
+                List<Object> cells = toCells(pending);
+                if (pending.kind() == PendingSheetRow.Kind.OFFERS) {
+                    written.add(new WrittenRow(pending.activityId(), new SheetActivityIndex.RowRef(sheetName, sheetRow), cells));
+                }
+                if (pending.userId() != null && SheetLayout.hasUserColumn(sheetName)) {
+                    userRowsWritten.add(new UserRow(sheetName, pending.userId(), sheetRow));
+                }
+                run.add(cells);
+                seqs.add(entry.seq());
+            }
+            data.add(new ValueRange().setRange(range(sheetName, "A" + runStart)).setValues(run));
+        }
+        // номера строк на диске до отправки: после таймаута или падения повтор не создаст дублей
+        outbox.assign(assigned);
+
+        BatchUpdateValuesRequest request = new BatchUpdateValuesRequest()
+                .setValueInputOption("RAW")
+                .setData(data);
+        call("values.batchUpdate", sheets().spreadsheets().values().batchUpdate(spreadsheetId, request)::execute);
+        outbox.ack(seqs);
+
+        // запись прошла — дополняем индекс ID активности и кеш строк пользователей
+        for (WrittenRow w : written) {
+            activityIndex.put(w.activityId(), w.ref(), w.cells());
+        }
+        activityIndex.save();
+        for (UserRow u : userRowsWritten) {
+            Map<Long, Set<Integer>> map = userRows.get(u.sheet());
+            if (map != null) {
+                map.computeIfAbsent(u.userId(), k -> new ConcurrentSkipListSet<>()).add(u.row());
+            }
+        }
     }
 
-    private void addMeetingRow(String sheetName, List<String> offers, String activityId) throws IOException {
-        LocalDateTime now = LocalDateTime.now();
-        // подготавливаем строку: Дата, Время, ID активности, затем для каждого оффера "1" или ""
+    private List<Object> toCells(PendingSheetRow pending) {
+        LocalDateTime ts = pending.timestamp();
         List<Object> row = new ArrayList<>();
-        row.add(now.format(DateTimeFormatter.ofPattern("dd.MM")));
-        row.add(now.format(DateTimeFormatter.ofPattern("HH:mm")));
-        row.add(activityId); // Добавляем ID активности
+        row.add(ts.format(DATE_FORMAT));
+        row.add(ts.format(TIME_FORMAT));
+        switch (pending.kind()) {
+            case OFFERS -> {
+                // Дата, Время, ID активности, затем для каждого оффера "1" или ""
+                row.add(pending.activityId());
+                Set<String> normalized = new HashSet<>();
+                for (String o : pending.offers()) {
+                    if (o != null) normalized.add(o.trim());
+                }
+                List<Object> header = sheetHeaders.getOrDefault(pending.sheetName(), Collections.emptyList());
+                for (int i = 3; i < header.size(); i++) { // начиная с 4-й колонки (после ID активности)
+                    String colName = String.valueOf(header.get(i)).trim();
+                    if (colName.equals(SheetLayout.USER_COLUMN)) {
+                        row.add(userCell(pending));
+                    } else {
+                        row.add(normalized.contains(colName) ? "1" : "");
+                    }
+                }
+            }
+            case RESCHEDULE -> {
+                row.add(pending.reason() == null ? "" : pending.reason());
+                row.add(pending.comment() == null ? "" : pending.comment());
+                if (SheetLayout.hasUserColumn(pending.sheetName())) row.add(userCell(pending));
+            }
+            case COMMENT -> {
+                row.add(pending.comment() == null ? "" : pending.comment());
+                if (SheetLayout.hasUserColumn(pending.sheetName())) row.add(userCell(pending));
+            }
+        }
+        return row;
+    }
 
-        // Получаем заголовки, чтобы понять порядок офферов
-        ValueRange headerVr = sheetsService.spreadsheets().values()
-                .get(spreadsheetId, sheetName + "!1:1").execute();
-        List<Object> header = headerVr.getValues() != null && !headerVr.getValues().isEmpty() ? headerVr.getValues().get(0) : Collections.emptyList();
+    private synchronized void rebuildActivityIndex() throws IOException {
+        refreshCatalog();
+        List<String> offerSheets = new ArrayList<>();
+        for (String sheetName : sheetCatalog.keySet()) {
+            // Пропускаем листы с переносами и комментариями
+            if (SheetLayout.isOfferSheet(sheetName)) {
+                offerSheets.add(sheetName);
+            }
+        }
+        Map<String, SheetActivityIndex.RowRef> rebuilt = new HashMap<>();
+        if (!offerSheets.isEmpty()) {
+            List<String> ranges = new ArrayList<>();
+            for (String sheetName : offerSheets) {
+                ranges.add(range(sheetName, "C:C"));
+            }
+            List<ValueRange> columns = call("values.batchGet", sheets().spreadsheets().values()
+                    .batchGet(spreadsheetId).setRanges(ranges)::execute).getValueRanges();
+            for (int sheetIdx = 0; sheetIdx < offerSheets.size(); sheetIdx++) {
+                List<List<Object>> rows = columns.get(sheetIdx).getValues();
+                if (rows == null) continue;
+                for (int i = 1; i < rows.size(); i++) { // начиная со второй строки (пропускаем заголовки)
+                    String id = rows.get(i).isEmpty() ? "" : String.valueOf(rows.get(i).get(0)).trim();
+                    if (!id.isEmpty()) {
+                        rebuilt.put(id, new SheetActivityIndex.RowRef(offerSheets.get(sheetIdx), i + 1));
+                    }
+                }
+            }
+        }
+        activityIndex.replaceAll(rebuilt);
+    }
+
+    private Meeting readIndexedMeeting(String activityId) throws IOException {
+        SheetActivityIndex.RowRef ref = activityIndex.find(activityId);
+        if (ref == null) return null;
 
-        Set<String> normalized = new HashSet<>();
-        for (String o : offers) {
-            if (o != null) normalized.add(o.trim());
+        // строки архивных листов читаются из архивной таблицы
+        String source = ref.spreadsheetId() != null ? ref.spreadsheetId() : spreadsheetId;
+        String headerKey = ref.spreadsheetId() != null ? ref.spreadsheetId() + "/" + ref.sheet() : ref.sheet();
+        List<Object> header = sheetHeaders.get(headerKey);
+        List<Object> row = activityIndex.cachedRow(activityId);
+        if (row == null || header == null) {
+            List<String> ranges = new ArrayList<>();
+            ranges.add(range(ref.sheet(), "A" + ref.row() + ":ZZ" + ref.row()));
+            if (header == null) {
+                ranges.add(range(ref.sheet(), "1:1"));
+            }
+            List<ValueRange> fetched = call("values.batchGet", sheets().spreadsheets().values()
+                    .batchGet(source).setRanges(ranges)::execute).getValueRanges();
+            List<List<Object>> rowValues = fetched.get(0).getValues();
+            row = rowValues != null && !rowValues.isEmpty() ? rowValues.get(0) : Collections.emptyList();
+            if (header == null) {
+                List<List<Object>> headerValues = fetched.get(1).getValues();
+                header = headerValues != null && !headerValues.isEmpty() ? headerValues.get(0) : Collections.emptyList();
+                sheetHeaders.put(headerKey, header);
+            }
+        }
+        if (row.size() < 3 || !activityId.equals(String.valueOf(row.get(2)))) {
+            return null;
         }
+        // год в ячейке не пишется: берём его из недели листа
+        LocalDate today = LocalDate.now(clock);
+        LocalDate week = SheetLayout.weekStart(ref.sheet(), today);
+        return toMeeting(activityId, header, row, week != null ? week : today);
+    }
 
-        for (int i = 3; i < header.size(); i++) { // начиная с 4-й колонки (после ID активности)
-            String colName = String.valueOf(header.get(i)).trim();
-            row.add(normalized.contains(colName) ? "1" : "");
+    private static Meeting toMeeting(String activityId, List<Object> header, List<Object> row, LocalDate near) {
+        // Найдена встреча, создаем объект Meeting
+        Meeting meeting = new Meeting();
+        meeting.setId(activityId.isEmpty() ? null : activityId);
+        meeting.setTimestamp(timestamp(row, near));
+
+        // Извлекаем офферы из строки
+        List<String> offers = new ArrayList<>();
+        for (int j = 3; j < row.size(); j++) {
+            if ("1".equals(String.valueOf(row.get(j)))) {
+                // Получаем название оффера из заголовка
+                if (header.size() > j && !SheetLayout.USER_COLUMN.equals(header.get(j))) {
+                    offers.add(String.valueOf(header.get(j)));
+                }
+            }
         }
+        meeting.setOffers(offers);
+        meeting.setMeetingType(MeetingType.COMPLETED);
+        meeting.setOriginalText("Мой вопрос: " + String.join(", ", offers).toLowerCase());
+        return meeting;
+    }
 
-        appendRow(sheetName, row);
+    // ---------- Для архиватора ----------
+
+    /** Клиент Sheets API; вызовы идут через {@link #call} */
+    Sheets client() throws IOException {
+        return sheets();
     }
 
-    private void addRescheduleRow(String sheetName, String reason, String comment) throws IOException {
-        LocalDateTime now = LocalDateTime.now();
-        List<Object> row = Arrays.asList(
-                now.format(DateTimeFormatter.ofPattern("dd.MM")),
-                now.format(DateTimeFormatter.ofPattern("HH:mm")),
-                reason == null ? "" : reason,
-                comment == null ? "" : comment
-        );
-        appendRow(sheetName, row);
+    String spreadsheetId() {
+        return spreadsheetId;
     }
 
-    private void addCommentRow(String sheetName, String comment) throws IOException {
-        LocalDateTime now = LocalDateTime.now();
-        List<Object> row = Arrays.asList(
-                now.format(DateTimeFormatter.ofPattern("dd.MM")),
-                now.format(DateTimeFormatter.ofPattern("HH:mm")),
-                comment == null ? "" : comment
-        );
-        appendRow(sheetName, row);
+    /** Каталог листов основной таблицы, перечитанный из Sheets */
+    Map<String, Integer> freshCatalog() throws IOException {
+        refreshCatalog();
+        return new HashMap<>(sheetCatalog);
+    }
+
+    /** Листы удалены из основной таблицы (перенесены в архив) */
+    void forgetSheets(Collection<String> sheetNames) {
+        for (String sheetName : sheetNames) {
+            sheetCatalog.remove(sheetName);
+            sheetHeaders.remove(sheetName);
+            userRows.remove(sheetName);
+        }
+    }
+
+    /** A1-диапазон с экранированным названием листа */
+    static String range(String sheetName, String a1) {
+        return "'" + sheetName.replace("'", "''") + "'!" + a1;
+    }
+
+    private record WrittenRow(String activityId, SheetActivityIndex.RowRef ref, List<Object> cells) {}
+
+    private record UserRow(String sheet, Long userId, int row) {}
+
+    private static String userCell(PendingSheetRow pending) {
+        return pending.userId() == null ? "" : String.valueOf(pending.userId());
     }
 
-    private void appendRow(String sheetName, List<Object> row) throws IOException {
-        // находим следующую строку (колонка A)
-        ValueRange response = sheetsService.spreadsheets().values()
-                .get(spreadsheetId, sheetName + "!A:A").execute();
-        int nextRow = (response.getValues() != null) ? response.getValues().size() + 1 : 2;
+    /** Буквенное имя колонки по индексу с нуля: 0 -> A, 26 -> AA */
+    static String columnName(int index) {
+        StringBuilder sb = new StringBuilder();
+        for (int n = index + 1; n > 0; n = (n - 1) / 26) {
+            sb.append((char) ('A' + (n - 1) % 26));
+        }
+        return sb.reverse().toString();
+    }
 
-        ValueRange vr = new ValueRange().setValues(Collections.singletonList(row));
-        sheetsService.spreadsheets().values()
-                .update(spreadsheetId, sheetName + "!A" + nextRow, vr)
-                .setValueInputOption("RAW").execute();
+    private static void countReason(int[] counts, String name) {
+        if (name.isBlank()) return;
+        RescheduleReason reason = RescheduleReason.findByDisplayName(name);
+        counts[(reason != null ? reason : RescheduleReason.ДРУГОЕ).ordinal()]++;
     }
 
     private static String getCell(List<Object> row, int idx) {
         return idx < row.size() ? String.valueOf(row.get(idx)).trim() : "";
     }
 
-    private static LocalDate parseDate(String s) {
+    /**
+     * Дата ячейки листа. В строках пишется только день и месяц (dd.MM): из соседних лет берём тот,
+     * в котором дата ближе к near — понедельнику недели листа или сегодняшнему дню для текущей недели
+     * (31.12 в листе недели с 29 декабря остаётся в её году, 31.12, прочитанное 2 января, — прошлый год).
+     */
+    static LocalDate parseDate(String s, LocalDate near) {
         if (s == null || s.isEmpty()) return null;
-        List<DateTimeFormatter> fmts = Arrays.asList(
-                DateTimeFormatter.ISO_LOCAL_DATE,
-                DateTimeFormatter.ofPattern("dd.MM"),
-                DateTimeFormatter.ofPattern("dd/MM"),
-                DateTimeFormatter.ofPattern("dd.MM.yyyy"),
-                DateTimeFormatter.ofPattern("dd/MM/yyyy")
-        );
-        for (DateTimeFormatter f : fmts) {
+        for (DateTimeFormatter f : FULL_DATE_FORMATS) {
+            try {
+                return LocalDate.parse(s, f);
+            } catch (DateTimeParseException ignored) {}
+        }
+        for (String pattern : SHORT_DATE_PATTERNS) {
             try {
-                LocalDate d = LocalDate.parse(s, f);
-                // если год не указан, используем текущий
-                if (f.equals(DateTimeFormatter.ofPattern("dd.MM")) || f.equals(DateTimeFormatter.ofPattern("dd/MM"))) {
-                    return d.withYear(LocalDate.now().getYear());
+                MonthDay day = MonthDay.parse(s, DateTimeFormatter.ofPattern(pattern));
+                LocalDate best = null;
+                for (int year = near.getYear() - 1; year <= near.getYear() + 1; year++) {
+                    if (!day.isValidYear(year)) continue;
+                    LocalDate d = day.atYear(year);
+                    if (best == null || Math.abs(ChronoUnit.DAYS.between(near, d)) < Math.abs(ChronoUnit.DAYS.between(near, best))) {
+                        best = d;
+                    }
                 }
-                return d;
-            } catch (Exception ignored) {}
+                return best;
+            } catch (DateTimeParseException ignored) {}
         }
         return null;
     }
 
+    /** Дата и время из колонок A и B; без даты — near, без времени — полночь */
+    private static LocalDateTime timestamp(List<Object> row, LocalDate near) {
+        LocalDate date = parseDate(getCell(row, 0), near);
+        LocalTime time = parseTime(getCell(row, 1));
+        return (date == null ? near : date).atTime(time == null ? LocalTime.MIDNIGHT : time);
+    }
+
     private static LocalTime parseTime(String s) {
         if (s == null || s.isEmpty()) return null;
         List<DateTimeFormatter> fmts = Arrays.asList(
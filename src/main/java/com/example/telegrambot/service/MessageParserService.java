@@ -1,10 +1,14 @@
 package com.example.telegrambot.service;
 
 import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.MeetingMessageScanner;
+import com.example.telegrambot.model.MeetingType;
 import com.example.telegrambot.model.OfferType;
+import com.example.telegrambot.model.ParsedMessage;
 import com.example.telegrambot.model.RescheduleReason;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,73 +16,43 @@ import java.util.List;
 @Service
 public class MessageParserService {
 
-    public Meeting parseMeetingMessage(String messageText, Long userId) {
-        // Ищем "Мой вопрос:" (игнорируя регистр)
-        String lowerText = messageText.toLowerCase();
-        int questionIndex = lowerText.indexOf("мой вопрос:");
-
-        if (questionIndex == -1) {
-            return null; // Не найдено "Мой вопрос:"
-        }
-
-        // Извлекаем текст после "Мой вопрос:"
-        String contentText = messageText.substring(questionIndex + "мой вопрос:".length()).trim();
-
-        if (contentText.isEmpty()) {
-            return new Meeting(LocalDateTime.now(), new ArrayList<>(), messageText, userId);
-        }
-
-        // Проверяем начинается ли с "перенос"
-        if (contentText.toLowerCase().startsWith("перенос")) {
-            return parseRescheduleMessage(contentText, messageText, userId);
-        } else if (contentText.toLowerCase().startsWith("комментарий")) {
-            return parseCommentMessage(contentText, messageText, userId);
-        } else {
-            return parseOffersMessage(contentText, messageText, userId);
-        }
-    }
+    private final Clock clock;
 
-    private Meeting parseCommentMessage(String commentText, String originalText, Long userId) {
-        String comment = commentText.substring(11).trim(); // "комментарий".length() = 11
-        return new Meeting(LocalDateTime.now(), originalText, userId, comment);
+    public MessageParserService(Clock clock) {
+        this.clock = clock;
     }
 
-    private Meeting parseRescheduleMessage(String rescheduleText, String originalText, Long userId) {
-        // Убираем слово "перенос" и получаем текст с причиной и комментарием
-        String reasonAndComment = rescheduleText.substring(7).trim(); // "перенос".length() = 7
-
-        // Автоматически определяем причину по ключевым словам
-        RescheduleReason reason = RescheduleReason.findByKeywords(reasonAndComment);
+    private static final OfferAliasMatcher OFFER_MATCHER = new OfferAliasMatcher();
 
-        // Возвращаем встречу типа "перенос" - используем правильный конструктор
-        return new Meeting(LocalDateTime.now(), originalText, userId,
-                reason.getDisplayName(), reasonAndComment);
+    public Meeting parseMeetingMessage(String messageText, Long userId) {
+        return parseMeetingMessage(MeetingMessageScanner.scan(messageText), userId);
     }
 
-    private Meeting parseOffersMessage(String offersText, String originalText, Long userId) {
-        // Разбиваем на строки, затем каждую строку на слова
-        List<String> offers = new ArrayList<>();
-
-        String[] lines = offersText.split("\n");
-        for (String line : lines) {
-            String trimmedLine = line.trim();
-            if (!trimmedLine.isEmpty()) {
-                // Разбиваем строку на слова по пробелам
-                String[] words = trimmedLine.split("\\s+");
-                for (String word : words) {
-                    String trimmedWord = word.trim();
-                    if (!trimmedWord.isEmpty()) {
-                        offers.add(normalizeOffer(trimmedWord));
-                    }
-                }
-            }
+    /** Встреча из уже разобранного сообщения: текст не копируется и не переводится в нижний регистр */
+    public Meeting parseMeetingMessage(ParsedMessage parsed, Long userId) {
+        if (!parsed.hasMarker()) {
+            return null; // Не найдено "Мой вопрос:"
         }
 
-        return new Meeting(LocalDateTime.now(), offers, originalText, userId);
-    }
+        String originalText = parsed.text();
+        String activityId = parsed.activityId();
+        LocalDateTime now = LocalDateTime.now(clock);
+
+        if (parsed.type() == MeetingType.RESCHEDULED) {
+            // Автоматически определяем причину по ключевым словам
+            RescheduleReason reason = RescheduleReason.findByKeywords(originalText, parsed.bodyStart(), parsed.bodyEnd());
+            return new Meeting(activityId, now, originalText, userId, reason.getDisplayName(), parsed.body());
+        } else if (parsed.type() == MeetingType.COMMENT) {
+            return new Meeting(activityId, now, originalText, userId, parsed.body());
+        }
 
-    private String normalizeOffer(String offer) {
-        OfferType offerType = OfferType.findByAlias(offer);
-        return offerType != null ? offerType.getDisplayName() : offer.trim().toUpperCase();
+        // Один проход по тексту: многословные алиасы ("кредитная карта", "сим мнп") тоже находятся
+        // офферы сразу считаются по ordinal, без списка названий
+        int[] offerCounts = new int[OfferType.count()];
+        List<String> unknown = new ArrayList<>(0);
+        if (!parsed.isBodyEmpty()) {
+            OFFER_MATCHER.countOffers(originalText, parsed.bodyStart(), parsed.bodyEnd(), offerCounts, unknown);
+        }
+        return new Meeting(activityId, now, offerCounts, unknown, originalText, userId);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.model.OfferType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Префиксное дерево алиасов офферов, собирается один раз из {@link OfferType#getAliases()}.
+ *
+ * Текст просматривается за один проход без разбиения на слова: с начала каждого слова
+ * дерево проходится посимвольно (с приведением к нижнему регистру на лету), и берётся
+ * самый длинный алиас, заканчивающийся на границе слова. Пробелы и табуляции внутри алиаса
+ * ("кредитная карта", "сим мнп") совпадают с любым количеством пробелов в тексте,
+ * перевод строки алиас не продолжает. Слова, не вошедшие ни в один алиас, возвращаются
+ * в верхнем регистре — как и раньше.
+ */
+public final class OfferAliasMatcher {
+
+    private final Node root = new Node();
+
+    public OfferAliasMatcher() {
+        for (OfferType offer : OfferType.values()) {
+            for (String alias : offer.getAliases()) {
+                insert(alias, offer);
+            }
+        }
+    }
+
+    /** Офферы (displayName) и нераспознанные слова из text[from, to) в порядке появления */
+    public List<String> findOffers(CharSequence text, int from, int to) {
+        List<String> offers = new ArrayList<>();
+        scan(text, from, to, null, offers);
+        return offers;
+    }
+
+    /** Считает офферы из text[from, to) в counts (по ordinal OfferType), нераспознанные слова — в unknown */
+    public void countOffers(CharSequence text, int from, int to, int[] counts, List<String> unknown) {
+        scan(text, from, to, counts, unknown);
+    }
+
+    /** Без counts распознанные офферы тоже попадают в words (displayName) */
+    private void scan(CharSequence text, int from, int to, int[] counts, List<String> words) {
+        int pos = from;
+        while (true) {
+            while (pos < to && Character.isWhitespace(text.charAt(pos))) pos++;
+            if (pos >= to) break;
+
+            Node node = root;
+            OfferType match = null;
+            int matchEnd = -1;
+            int i = pos;
+            while (node != null) {
+                if (i >= to) {
+                    if (node.offer != null) { match = node.offer; matchEnd = i; }
+                    break;
+                }
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    // граница слова: здесь может закончиться алиас
+                    if (node.offer != null) { match = node.offer; matchEnd = i; }
+                    if (c == '\n' || c == '\r') break;
+                    while (i < to && isHorizontalSpace(text.charAt(i))) i++;
+                    node = node.child(' ');
+                } else {
+                    node = node.child(Character.toLowerCase(c));
+                    i++;
+                }
+            }
+
+            if (match != null) {
+                if (counts != null) {
+                    counts[match.ordinal()]++;
+                } else {
+                    words.add(match.getDisplayName());
+                }
+                pos = matchEnd;
+            } else {
+                int end = pos;
+                while (end < to && !Character.isWhitespace(text.charAt(end))) end++;
+                words.add(text.subSequence(pos, end).toString().toUpperCase());
+                pos = end;
+            }
+        }
+    }
+
+    private void insert(String alias, OfferType offer) {
+        Node node = root;
+        String normalized = alias.trim().toLowerCase().replaceAll("\\s+", " ");
+        for (int i = 0; i < normalized.length(); i++) {
+            node = node.childOrCreate(normalized.charAt(i));
+        }
+        if (node.offer == null) {
+            node.offer = offer; // как и в findByAlias, при совпадении алиасов побеждает первый оффер
+        }
+    }
+
+    private static boolean isHorizontalSpace(char c) {
+        return c != '\n' && c != '\r' && Character.isWhitespace(c);
+    }
+
+    /** Узел дерева: отсортированные символы переходов и дочерние узлы (без боксинга char) */
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        OfferType offer;
+
+        Node child(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            return idx >= 0 ? children[idx] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            if (idx >= 0) return children[idx];
+            int at = -idx - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newKeys[at] = c;
+            newChildren[at] = new Node();
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[at];
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.telegrambot.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Строка, принятая к записи в Google Sheets, но ещё не отправленная.
+ * Значения ячеек собираются при сбросе очереди: для листа офферов порядок колонок
+ * зависит от заголовка листа.
+ */
+record PendingSheetRow(String sheetName,
+                       Kind kind,
+                       Long userId,
+                       LocalDateTime timestamp,
+                       List<String> offers,
+                       String activityId,
+                       String reason,
+                       String comment) {
+
+    enum Kind { OFFERS, RESCHEDULE, COMMENT }
+
+    static PendingSheetRow offers(String sheetName, Long userId, LocalDateTime timestamp, List<String> offers, String activityId) {
+        return new PendingSheetRow(sheetName, Kind.OFFERS, userId, timestamp, List.copyOf(offers), activityId, null, null);
+    }
+
+    static PendingSheetRow reschedule(String sheetName, Long userId, LocalDateTime timestamp, String reason, String comment) {
+        return new PendingSheetRow(sheetName, Kind.RESCHEDULE, userId, timestamp, List.of(), null, reason, comment);
+    }
+
+    static PendingSheetRow comment(String sheetName, Long userId, LocalDateTime timestamp, String comment) {
+        return new PendingSheetRow(sheetName, Kind.COMMENT, userId, timestamp, List.of(), null, null, comment);
+    }
+}
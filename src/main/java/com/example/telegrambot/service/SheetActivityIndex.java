@@ -0,0 +1,133 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.BotMetrics;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс ID активности -> (таблица, лист, номер строки) для листов офферов.
+ *
+ * Хранится в activity-index.json, пополняется при каждой записи строки встречи.
+ * Последние записанные строки дополнительно держатся в небольшом LRU-кеше,
+ * чтобы поиск свежей встречи не требовал ни одного запроса к Sheets.
+ * Строки листов, перенесённых в архивные таблицы ({@link SheetArchiver}), хранятся с ID архивной
+ * таблицы и переживают перестроение индекса по основной таблице.
+ */
+@Component
+public class SheetActivityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SheetActivityIndex.class);
+
+    /** Положение строки встречи; spreadsheetId == null — основная таблица */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record RowRef(String spreadsheetId, String sheet, int row) {
+        public RowRef(String sheet, int row) {
+            this(null, sheet, row);
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path indexPath;
+    private final Map<String, RowRef> index = new ConcurrentHashMap<>();
+    private final Map<String, List<Object>> recentRows;
+    private final BotMetrics metrics;
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+
+    public SheetActivityIndex(@Value("${google.sheets.activity-index.path:activity-index.json}") String indexPath,
+                              @Value("${google.sheets.activity-index.cached-rows:1000}") int cachedRows,
+                              BotMetrics metrics) {
+        this.indexPath = Paths.get(indexPath);
+        this.metrics = metrics;
+        this.recentRows = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Object>> eldest) {
+                return size() > cachedRows;
+            }
+        });
+        load();
+    }
+
+    /** true, если индекс прочитан с диска или построен */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public RowRef find(String activityId) {
+        return index.get(activityId);
+    }
+
+    /** Ячейки строки, если она недавно записывалась этим процессом */
+    public List<Object> cachedRow(String activityId) {
+        return recentRows.get(activityId);
+    }
+
+    /** Запоминает положение только что записанной строки */
+    public void put(String activityId, RowRef ref, List<Object> cells) {
+        if (activityId == null || activityId.isEmpty()) return;
+        index.put(activityId, ref);
+        recentRows.put(activityId, cells);
+        dirty = true;
+    }
+
+    /** Заменяет строки основной таблицы (после перестроения по ней); архивные строки остаются */
+    public void replaceAll(Map<String, RowRef> rebuilt) {
+        index.entrySet().removeIf(e -> e.getValue().spreadsheetId() == null && !rebuilt.containsKey(e.getKey()));
+        index.putAll(rebuilt);
+        recentRows.clear();
+        loaded = true;
+        dirty = true;
+        save();
+    }
+
+    /** Запоминает строки листов, перенесённых в архивную таблицу */
+    public void putArchived(Map<String, RowRef> archived) {
+        if (archived.isEmpty()) return;
+        index.putAll(archived);
+        archived.keySet().forEach(recentRows::remove);
+        dirty = true;
+        save();
+    }
+
+    /** Сохраняет индекс на диск, если он менялся */
+    public synchronized void save() {
+        if (!dirty) return;
+        try {
+            long start = System.nanoTime();
+            Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+            objectMapper.writeValue(tmp.toFile(), new LinkedHashMap<>(index));
+            Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            metrics.recordWrite("activity-index", start);
+        } catch (IOException e) {
+            metrics.error("activity-index");
+            log.warn("Ошибка сохранения индекса активностей: {}", e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(indexPath)) return;
+        try {
+            index.putAll(objectMapper.readValue(indexPath.toFile(), new TypeReference<Map<String, RowRef>>() {}));
+            loaded = true;
+        } catch (IOException e) {
+            log.warn("Индекс активностей повреждён, будет перестроен: {}", e.getMessage());
+        }
+    }
+}
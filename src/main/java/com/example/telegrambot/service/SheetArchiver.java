@@ -0,0 +1,243 @@
+package com.example.telegrambot.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.services.sheets.v4.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Перенос закрытых недельных листов в архивные таблицы по кварталам.
+ *
+ * По расписанию (google.sheets.archive.cron, по умолчанию "-" — выключено) листы недель старше
+ * horizon-weeks копируются (sheets.copyTo) в архивную таблицу google.sheets.archive.spreadsheet-id
+ * и удаляются из основной. Архивную таблицу создаёт человек и открывает доступ сервисному аккаунту:
+ * таблица, созданная самим сервисным аккаунтом, никому, кроме него, не видна. Без неё архивация не выполняется.
+ * Лист удаляется, только если в копии столько же строк, сколько в оригинале; иначе копия удаляется из архива
+ * и лист переносится при следующем запуске.
+ * Положение каждого перенесённого листа хранится в локальном индексе (sheet-archive.json), а строки встреч —
+ * в {@link SheetActivityIndex} с ID архивной таблицы, поэтому поиск по ID активности находит и архивные встречи.
+ * Листы, для которых в очереди записи есть строки, не переносятся.
+ * Копия переименовывается сразу после copyTo; копия, оставшаяся без переименования после сбоя
+ * ("Копия {лист}" / "Copy of {лист}"), при следующем запуске переименовывается, а не копируется заново.
+ */
+@Component
+public class SheetArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(SheetArchiver.class);
+
+    /** Локальный индекс архива: лист -> ID таблицы */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record ArchiveIndex(Map<String, String> sheets) {
+        ArchiveIndex {
+            sheets = sheets == null ? new TreeMap<>() : new TreeMap<>(sheets);
+        }
+    }
+
+    private final GoogleSheetsService sheets;
+    private final SheetActivityIndex activityIndex;
+    private final SheetOutbox outbox;
+    private final int horizonWeeks;
+    private final String archiveSpreadsheetId;
+    private final Path indexPath;
+    private final Clock clock;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ArchiveIndex index;
+
+    public SheetArchiver(GoogleSheetsService sheets,
+                         SheetActivityIndex activityIndex,
+                         SheetOutbox outbox,
+                         @Value("${google.sheets.archive.horizon-weeks:8}") int horizonWeeks,
+                         @Value("${google.sheets.archive.spreadsheet-id:}") String archiveSpreadsheetId,
+                         @Value("${google.sheets.archive.index-path:sheet-archive.json}") String indexPath,
+                         Clock clock) {
+        this.sheets = sheets;
+        this.clock = clock;
+        this.activityIndex = activityIndex;
+        this.outbox = outbox;
+        this.horizonWeeks = horizonWeeks;
+        this.archiveSpreadsheetId = archiveSpreadsheetId == null ? "" : archiveSpreadsheetId.trim();
+        this.indexPath = Paths.get(indexPath);
+        this.index = load();
+    }
+
+    @Scheduled(cron = "${google.sheets.archive.cron:-}", zone = "${bot.zone:Europe/Moscow}")
+    public void archiveOnSchedule() {
+        try {
+            int archived = archiveClosedWeeks(LocalDate.now(clock));
+            if (archived > 0) {
+                log.info("Перенесено в архив листов: {}", archived);
+            }
+        } catch (Exception e) {
+            log.warn("Ошибка архивации листов: {}", e.getMessage());
+        }
+    }
+
+    /** Переносит листы недель, закончившихся раньше horizon-weeks до today; возвращает их количество */
+    public synchronized int archiveClosedWeeks(LocalDate today) throws IOException {
+        if (archiveSpreadsheetId.isEmpty()) {
+            log.warn("Архивация пропущена: не задан google.sheets.archive.spreadsheet-id");
+            return 0;
+        }
+        if (archiveSpreadsheetId.equals(sheets.spreadsheetId())) {
+            throw new IllegalStateException("Архивная таблица совпадает с основной: " + archiveSpreadsheetId);
+        }
+        Map<String, Integer> catalog = sheets.freshCatalog();
+        LocalDate horizon = today.with(DayOfWeek.MONDAY).minusWeeks(horizonWeeks);
+        Map<String, List<String>> byQuarter = new TreeMap<>();
+        for (String sheetName : catalog.keySet()) {
+            LocalDate weekStart = SheetLayout.weekStart(sheetName, today);
+            if (weekStart == null || !weekStart.isBefore(horizon)) continue;
+            if (!outbox.pendingForSheet(sheetName).isEmpty()) continue;
+            byQuarter.computeIfAbsent(quarter(weekStart), k -> new ArrayList<>()).add(sheetName);
+        }
+        int archived = 0;
+        for (Map.Entry<String, List<String>> e : byQuarter.entrySet()) {
+            archived += archiveQuarter(e.getKey(), e.getValue(), catalog);
+        }
+        return archived;
+    }
+
+    /** Квартал недели: 2025-Q3 */
+    static String quarter(LocalDate weekStart) {
+        return weekStart.getYear() + "-Q" + ((weekStart.getMonthValue() - 1) / 3 + 1);
+    }
+
+    /** Переносит листы квартала; возвращает число удалённых из основной таблицы */
+    private int archiveQuarter(String quarter, List<String> sheetNames, Map<String, Integer> catalog) throws IOException {
+        String archiveId = archiveSpreadsheetId;
+        Map<String, Integer> archived = new HashMap<>();
+        Spreadsheet archive = sheets.call("spreadsheets.get", sheets.client().spreadsheets().get(archiveId)
+                .setFields("sheets.properties(sheetId,title)")::execute);
+        if (archive.getSheets() != null) {
+            for (Sheet sheet : archive.getSheets()) {
+                archived.put(sheet.getProperties().getTitle(), sheet.getProperties().getSheetId());
+            }
+        }
+
+        // содержимое оригиналов читаем до копирования: по нему проверяются копии и запоминаются строки встреч
+        List<List<List<Object>>> originals = readSheets(sheets.spreadsheetId(), sheetNames);
+
+        // copyTo — по одному листу; копия называется "Копия ...", переименовываем её сразу
+        for (String sheetName : sheetNames) {
+            if (archived.containsKey(sheetName)) continue; // уже скопирован в прошлый раз
+            Integer copyId = orphanCopy(archived, sheetName);
+            if (copyId != null) {
+                log.info("Архив {}: переименовываем копию листа {}, оставшуюся после сбоя", quarter, sheetName);
+            } else {
+                copyId = sheets.call("sheets.copyTo", sheets.client().spreadsheets().sheets()
+                        .copyTo(sheets.spreadsheetId(), catalog.get(sheetName),
+                                new CopySheetToAnotherSpreadsheetRequest().setDestinationSpreadsheetId(archiveId))::execute)
+                        .getSheetId();
+            }
+            Request rename = new Request().setUpdateSheetProperties(new UpdateSheetPropertiesRequest()
+                    .setProperties(new SheetProperties().setSheetId(copyId).setTitle(sheetName))
+                    .setFields("title"));
+            sheets.call("spreadsheets.batchUpdate", sheets.client().spreadsheets()
+                    .batchUpdate(archiveId, new BatchUpdateSpreadsheetRequest().setRequests(List.of(rename)))::execute);
+            archived.put(sheetName, copyId);
+        }
+
+        // удаляем только листы, копия которых совпадает с оригиналом по числу строк
+        List<List<List<Object>>> copies = readSheets(archiveId, sheetNames);
+        List<String> verified = new ArrayList<>();
+        List<Request> staleCopies = new ArrayList<>();
+        Map<String, SheetActivityIndex.RowRef> refs = new HashMap<>();
+        for (int s = 0; s < sheetNames.size(); s++) {
+            String sheetName = sheetNames.get(s);
+            int expected = originals.get(s).size();
+            int actual = copies.get(s).size();
+            if (expected != actual) {
+                log.error("Лист {} не удалён: в архивной копии строк {}, в оригинале {}", sheetName, actual, expected);
+                // неполную копию убираем из архива, при следующем запуске лист скопируется заново
+                staleCopies.add(new Request().setDeleteSheet(new DeleteSheetRequest().setSheetId(archived.get(sheetName))));
+                continue;
+            }
+            verified.add(sheetName);
+            if (SheetLayout.isOfferSheet(sheetName)) putActivityRefs(refs, archiveId, sheetName, originals.get(s));
+        }
+        if (!staleCopies.isEmpty()) {
+            sheets.call("spreadsheets.batchUpdate", sheets.client().spreadsheets()
+                    .batchUpdate(archiveId, new BatchUpdateSpreadsheetRequest().setRequests(staleCopies))::execute);
+        }
+        if (verified.isEmpty()) return 0;
+
+        for (String sheetName : verified) {
+            index.sheets().put(sheetName, archiveId);
+        }
+        save();
+        activityIndex.putArchived(refs);
+
+        List<Request> deletes = new ArrayList<>();
+        for (String sheetName : verified) {
+            deletes.add(new Request().setDeleteSheet(new DeleteSheetRequest().setSheetId(catalog.get(sheetName))));
+        }
+        sheets.call("spreadsheets.batchUpdate", sheets.client().spreadsheets()
+                .batchUpdate(sheets.spreadsheetId(), new BatchUpdateSpreadsheetRequest().setRequests(deletes))::execute);
+        sheets.forgetSheets(verified);
+        log.info("Квартал {}: листов перенесено в архив {}", quarter, verified.size());
+        return verified.size();
+    }
+
+    /** Копия листа, не переименованная после сбоя; название зависит от локали архивной таблицы */
+    private static Integer orphanCopy(Map<String, Integer> archived, String sheetName) {
+        Integer id = archived.get("Копия " + sheetName);
+        return id != null ? id : archived.get("Copy of " + sheetName);
+    }
+
+    /** Строки листов таблицы одним batchGet; пустые строки в конце листа Sheets не возвращает */
+    private List<List<List<Object>>> readSheets(String spreadsheetId, List<String> sheetNames) throws IOException {
+        List<String> ranges = new ArrayList<>();
+        for (String sheetName : sheetNames) {
+            ranges.add(GoogleSheetsService.range(sheetName, "A:Z"));
+        }
+        List<ValueRange> values = sheets.call("values.batchGet", sheets.client().spreadsheets().values()
+                .batchGet(spreadsheetId).setRanges(ranges)::execute).getValueRanges();
+        List<List<List<Object>>> out = new ArrayList<>();
+        for (int s = 0; s < sheetNames.size(); s++) {
+            List<List<Object>> rows = values == null || s >= values.size() ? null : values.get(s).getValues();
+            out.add(rows == null ? List.of() : rows);
+        }
+        return out;
+    }
+
+    /** ID активности (колонка C листа офферов) -> строка в архивной таблице */
+    private static void putActivityRefs(Map<String, SheetActivityIndex.RowRef> refs, String archiveId,
+                                        String sheetName, List<List<Object>> rows) {
+        for (int i = 1; i < rows.size(); i++) { // первая строка — заголовок
+            List<Object> row = rows.get(i);
+            String id = row.size() < 3 ? "" : String.valueOf(row.get(2)).trim();
+            if (!id.isEmpty()) {
+                refs.put(id, new SheetActivityIndex.RowRef(archiveId, sheetName, i + 1));
+            }
+        }
+    }
+
+    private ArchiveIndex load() {
+        if (!Files.exists(indexPath)) return new ArchiveIndex(null);
+        try {
+            return objectMapper.readValue(indexPath.toFile(), ArchiveIndex.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения индекса архива " + indexPath, e);
+        }
+    }
+
+    private void save() throws IOException {
+        Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        objectMapper.writeValue(tmp.toFile(), index);
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
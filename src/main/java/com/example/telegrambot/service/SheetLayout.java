@@ -0,0 +1,115 @@
+package com.example.telegrambot.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Раскладка листов в таблице (google.sheets.layout).
+ *
+ * per-user — исторический вариант, до трёх листов на пользователя в неделю:
+ *   user{userId}_{неделя}, user{userId}_{неделя}_Переносы, user{userId}_{неделя}_Комментарии.
+ * weekly — по одному листу на неделю для каждого вида записей, пользователь — в последней колонке:
+ *   Офферы_{неделя}, Переносы_{неделя}, Комментарии_{неделя}.
+ *
+ * Неделя записывается как {MMM d}-{MMM d} (понедельник-воскресенье, русская локаль).
+ */
+enum SheetLayout {
+    PER_USER, WEEKLY;
+
+    /** Заголовок колонки с ID пользователя в недельных листах */
+    static final String USER_COLUMN = "Пользователь";
+
+    private static final DateTimeFormatter WEEK_FORMAT = DateTimeFormatter.ofPattern("MMM d", Locale.forLanguageTag("ru"));
+    private static final Pattern LEGACY_NAME = Pattern.compile("user(\\d+)_(.+?)(_Переносы|_Комментарии)?");
+
+    /** Лист старой раскладки, разобранный по названию */
+    record LegacySheet(long userId, String week, PendingSheetRow.Kind kind) {}
+
+    static SheetLayout parse(String value) {
+        if (value == null || value.isBlank() || value.equals("per-user")) return PER_USER;
+        if (value.equals("weekly")) return WEEKLY;
+        throw new IllegalArgumentException("Неизвестная раскладка листов: " + value);
+    }
+
+    String sheetName(PendingSheetRow.Kind kind, Long userId, LocalDate date) {
+        String week = week(date);
+        if (this == WEEKLY) return weeklyName(kind, week);
+        return switch (kind) {
+            case OFFERS -> String.format("user%d_%s", userId, week);
+            case RESCHEDULE -> String.format("user%d_%s_Переносы", userId, week);
+            case COMMENT -> String.format("user%d_%s_Комментарии", userId, week);
+        };
+    }
+
+    static String weeklyName(PendingSheetRow.Kind kind, String week) {
+        return switch (kind) {
+            case OFFERS -> "Офферы_" + week;
+            case RESCHEDULE -> "Переносы_" + week;
+            case COMMENT -> "Комментарии_" + week;
+        };
+    }
+
+    /** Неделя даты: понедельник-воскресенье */
+    static String week(LocalDate date) {
+        LocalDate monday = date.minusDays(date.getDayOfWeek().getValue() - 1L);
+        return monday.format(WEEK_FORMAT) + "-" + monday.plusDays(6).format(WEEK_FORMAT);
+    }
+
+    /**
+     * Понедельник недели листа любой раскладки; null — название не недельное или год не определить.
+     * Год в названии не пишется (и в колонке A — только день и месяц): берётся последний год не позже today,
+     * в котором эта дата — понедельник. Так лист старше года не попадает в текущий год: одна и та же
+     * дата приходится на понедельник не чаще раза в пять лет.
+     */
+    static LocalDate weekStart(String sheetName, LocalDate today) {
+        String week;
+        LegacySheet legacy = parseLegacy(sheetName);
+        if (legacy != null) {
+            week = legacy.week();
+        } else if (hasUserColumn(sheetName)) {
+            week = sheetName.substring(sheetName.indexOf('_') + 1);
+        } else {
+            return null;
+        }
+        int dash = week.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            MonthDay monday = MonthDay.parse(week.substring(0, dash), WEEK_FORMAT);
+            // 29 февраля повторяется в понедельник за 28 лет
+            for (int year = today.getYear(); year > today.getYear() - 28; year--) {
+                if (!monday.isValidYear(year)) continue;
+                LocalDate date = monday.atYear(year);
+                if (!date.isAfter(today) && date.getDayOfWeek() == DayOfWeek.MONDAY) return date;
+            }
+            return null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /** Лист недельной раскладки (с колонкой пользователя) */
+    static boolean hasUserColumn(String sheetName) {
+        return sheetName.startsWith("Офферы_") || sheetName.startsWith("Переносы_") || sheetName.startsWith("Комментарии_");
+    }
+
+    /** Лист офферов в любой раскладке (листы переносов и комментариев пропускаются) */
+    static boolean isOfferSheet(String sheetName) {
+        return !sheetName.contains("_Переносы") && !sheetName.contains("_Комментарии")
+                && !sheetName.startsWith("Переносы_") && !sheetName.startsWith("Комментарии_");
+    }
+
+    /** Разбор названия листа старой раскладки; null — лист другой раскладки */
+    static LegacySheet parseLegacy(String sheetName) {
+        Matcher m = LEGACY_NAME.matcher(sheetName);
+        if (!m.matches()) return null;
+        PendingSheetRow.Kind kind = m.group(3) == null ? PendingSheetRow.Kind.OFFERS
+                : m.group(3).equals("_Переносы") ? PendingSheetRow.Kind.RESCHEDULE : PendingSheetRow.Kind.COMMENT;
+        return new LegacySheet(Long.parseLong(m.group(1)), m.group(2), kind);
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.storage.JournalLines;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Очередь записи в Google Sheets на диске (sheets-outbox.jsonl): строки не теряются
+ * ни при недоступности Sheets, ни при перезапуске.
+ *
+ * Записи файла — JSON-строки трёх видов: ADD (новая строка с порядковым номером),
+ * ASSIGN (номера строк листа, выбранные перед отправкой) и ACK (строки записаны).
+ * Номер строки листа сохраняется до отправки, поэтому повтор после таймаута или падения
+ * пишет в те же ячейки и не создаёт дублей. Когда неподтверждённых строк не остаётся,
+ * файл обрезается; если он разросся — переписывается только с неподтверждёнными.
+ *
+ * {@link #add} возвращается после fsync: строка, о которой пользователю ответили, не теряется
+ * при падении. fsync групповой — один force покрывает все ADD, дописанные параллельно.
+ * Строки, не ушедшие из-за ошибки, остаются в очереди и занимают место в write-queue-capacity.
+ * Строки, которые Sheets отклоняет насовсем, переносятся в файл отказов ({имя очереди}.dead)
+ * и подтверждаются, чтобы не задерживать остальные.
+ */
+@Component
+public class SheetOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(SheetOutbox.class);
+
+    /** Строка в очереди: номер, содержимое и (после первой попытки) номер строки листа */
+    record Entry(long seq, PendingSheetRow row, Integer sheetRow) {}
+
+    private final ObjectMapper objectMapper;
+    private final Path path;
+    private final Path deadLetterPath;
+    private final int capacity;
+    private final int compactionThreshold;
+
+    private final TreeMap<Long, Entry> pending = new TreeMap<>();
+    private FileChannel channel;
+    private long nextSeq = 1;
+    private int fileRecords;
+
+    // групповой fsync: ADD с номером не больше syncedSeq уже на диске
+    private final Object syncLock = new Object();
+    private long syncedSeq;
+
+    public SheetOutbox(@Value("${google.sheets.outbox.path:sheets-outbox.jsonl}") String path,
+                       @Value("${google.sheets.write-queue-capacity:10000}") int capacity,
+                       @Value("${google.sheets.outbox.compaction-threshold:10000}") int compactionThreshold) {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.path = Paths.get(path);
+        this.deadLetterPath = this.path.resolveSibling(this.path.getFileName() + ".dead");
+        this.capacity = capacity;
+        this.compactionThreshold = compactionThreshold;
+        recover();
+    }
+
+    /** Дописывает строку в очередь и дожидается fsync; false — если очередь заполнена */
+    public boolean add(PendingSheetRow row) {
+        long seq;
+        synchronized (this) {
+            if (pending.size() >= capacity) return false;
+            seq = nextSeq++;
+            write(new OutboxRecord(OutboxRecord.ADD, List.of(seq), row, null));
+            pending.put(seq, new Entry(seq, row, null));
+        }
+        syncThrough(seq);
+        return true;
+    }
+
+    /** fsync, если ADD с номером seq ещё не покрыт чужим force */
+    private void syncThrough(long seq) {
+        synchronized (syncLock) {
+            if (syncedSeq >= seq) return;
+            synchronized (this) {
+                long written = nextSeq - 1;
+                force();
+                syncedSeq = written;
+            }
+        }
+    }
+
+    /** Первые limit неподтверждённых строк в порядке поступления */
+    public synchronized List<Entry> peek(int limit) {
+        List<Entry> out = new ArrayList<>(Math.min(limit, pending.size()));
+        for (Entry e : pending.values()) {
+            if (out.size() >= limit) break;
+            out.add(e);
+        }
+        return out;
+    }
+
+    /** Все неподтверждённые строки листа */
+    public synchronized List<Entry> pendingForSheet(String sheetName) {
+        List<Entry> out = new ArrayList<>();
+        for (Entry e : pending.values()) {
+            if (e.row().sheetName().equals(sheetName)) out.add(e);
+        }
+        return out;
+    }
+
+    /** Наибольший уже выбранный номер строки листа (0 — нет) */
+    public synchronized int maxAssignedRow(String sheetName) {
+        int max = 0;
+        for (Entry e : pending.values()) {
+            if (e.sheetRow() != null && e.row().sheetName().equals(sheetName)) {
+                max = Math.max(max, e.sheetRow());
+            }
+        }
+        return max;
+    }
+
+    /** Сохраняет номера строк листа до отправки (с fsync) */
+    public synchronized void assign(Map<Long, Integer> sheetRows) {
+        if (sheetRows.isEmpty()) return;
+        List<Long> seqs = new ArrayList<>(sheetRows.keySet());
+        List<Integer> rows = new ArrayList<>();
+        for (Long seq : seqs) rows.add(sheetRows.get(seq));
+        write(new OutboxRecord(OutboxRecord.ASSIGN, seqs, null, rows));
+        force();
+        for (int i = 0; i < seqs.size(); i++) {
+            Entry e = pending.get(seqs.get(i));
+            if (e != null) pending.put(e.seq(), new Entry(e.seq(), e.row(), rows.get(i)));
+        }
+    }
+
+    /** Строки записаны в Sheets */
+    public synchronized void ack(List<Long> seqs) {
+        if (seqs.isEmpty()) return;
+        write(new OutboxRecord(OutboxRecord.ACK, seqs, null, null));
+        seqs.forEach(pending::remove);
+        compactIfNeeded();
+    }
+
+    /**
+     * Строки, которые Sheets не примет и при повторе: дописываются в файл отказов с причиной
+     * (с fsync) и подтверждаются. Из файла их можно перенести вручную.
+     */
+    public synchronized void deadLetter(List<Entry> entries, String error) {
+        if (entries.isEmpty()) return;
+        List<Long> seqs = new ArrayList<>();
+        try (FileChannel out = FileChannel.open(deadLetterPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            for (Entry e : entries) {
+                out.write(line(new DeadLetter(e.seq(), e.row(), error)));
+                seqs.add(e.seq());
+            }
+            out.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка записи в файл отказов " + deadLetterPath, e);
+        }
+        ack(seqs);
+    }
+
+    public Path getDeadLetterPath() {
+        return deadLetterPath;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /** fsync накопленных записей (при каждом add, перед каждой отправкой и при остановке) */
+    public synchronized void force() {
+        if (channel == null) return;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка синхронизации очереди Sheets", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия очереди Sheets: {}", e.getMessage());
+        } finally {
+            channel = null;
+        }
+    }
+
+    // ---------- Внутреннее ----------
+
+    private void write(OutboxRecord record) {
+        try {
+            byte[] line = objectMapper.writeValueAsBytes(record);
+            ByteBuffer buf = ByteBuffer.allocate(line.length + 1).put(line).put((byte) '\n');
+            buf.flip();
+            FileChannel ch = openChannel();
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            fileRecords++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка записи в очередь Sheets", e);
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (pending.isEmpty()) {
+                openChannel().truncate(0);
+                fileRecords = 0;
+            } else if (fileRecords >= compactionThreshold) {
+                rewrite();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка сжатия очереди Sheets", e);
+        }
+    }
+
+    /** Переписывает файл только с неподтверждёнными строками (временный файл + атомарная замена) */
+    private void rewrite() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        int records = 0;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Entry e : pending.values()) {
+                out.write(line(new OutboxRecord(OutboxRecord.ADD, List.of(e.seq()), e.row(), null)));
+                records++;
+                if (e.sheetRow() != null) {
+                    out.write(line(new OutboxRecord(OutboxRecord.ASSIGN, List.of(e.seq()), null, List.of(e.sheetRow()))));
+                    records++;
+                }
+            }
+            out.force(true);
+        }
+        close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fileRecords = records;
+    }
+
+    private ByteBuffer line(Object record) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(record);
+        return ByteBuffer.allocate(bytes.length + 1).put(bytes).put((byte) '\n').flip();
+    }
+
+    private void recover() {
+        if (!Files.exists(path)) return;
+        try {
+            long validBytes = JournalLines.read(path, line -> {
+                OutboxRecord record;
+                try {
+                    record = objectMapper.readValue(line, OutboxRecord.class);
+                } catch (IOException e) {
+                    // оборванный хвост без '\n' сюда не попадает: строка целая, но испорчена
+                    log.error("Пропущена нечитаемая запись очереди Sheets {}: {}", path, e.getMessage());
+                    return true;
+                }
+                apply(record);
+                fileRecords++;
+                return true;
+            });
+            if (JournalLines.truncateTail(openChannel(), validBytes)) {
+                log.warn("Очередь Sheets обрезана до последней целой записи ({} байт)", validBytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка восстановления очереди Sheets " + path, e);
+        }
+        if (!pending.isEmpty()) {
+            log.info("В очереди Sheets осталось строк с прошлого запуска: {}", pending.size());
+        }
+    }
+
+    private void apply(OutboxRecord record) {
+        switch (record.op()) {
+            case OutboxRecord.ADD -> {
+                long seq = record.seqs().get(0);
+                pending.put(seq, new Entry(seq, record.row(), null));
+                nextSeq = Math.max(nextSeq, seq + 1);
+            }
+            case OutboxRecord.ASSIGN -> {
+                for (int i = 0; i < record.seqs().size(); i++) {
+                    Entry e = pending.get(record.seqs().get(i));
+                    if (e != null) pending.put(e.seq(), new Entry(e.seq(), e.row(), record.sheetRows().get(i)));
+                }
+            }
+            case OutboxRecord.ACK -> record.seqs().forEach(pending::remove);
+            default -> log.warn("Неизвестная запись очереди Sheets: {}", record.op());
+        }
+    }
+
+    /** Строка файла отказов */
+    record DeadLetter(long seq, PendingSheetRow row, String error) {}
+
+    /** Одна строка файла очереди */
+    record OutboxRecord(String op, List<Long> seqs, PendingSheetRow row, List<Integer> sheetRows) {
+        static final String ADD = "ADD";
+        static final String ASSIGN = "ASSIGN";
+        static final String ACK = "ACK";
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.telegrambot.service;
+
+/**
+ * Автомат защиты для вызовов Google Sheets.
+ *
+ * После failureThreshold ошибок подряд автомат размыкается: вызовы не выполняются вовсе
+ * (запись остаётся в очереди, чтение сразу получает ошибку). Через openMillis пропускается
+ * один пробный вызов: успех замыкает автомат, ошибка снова размыкает его.
+ */
+final class SheetsCircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    SheetsCircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    /** Можно ли выполнить вызов сейчас; в полуоткрытом состоянии — только один пробный */
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialInFlight) yield false;
+                trialInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    synchronized void onFailure() {
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /** Вызов завершился ответом, который не говорит о недоступности (например, 400) */
+    synchronized void onIgnored() {
+        trialInFlight = false;
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+        }
+    }
+
+    synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.telegrambot.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Компонент "sheets" в /actuator/health: UNKNOWN — клиент ещё создаётся, DOWN — ошибка
+ * инициализации или разомкнут автомат защиты, иначе UP. В группу readiness не входит:
+ * без Sheets бот продолжает принимать сообщения, строки копятся в очереди записи.
+ */
+@Component
+public class SheetsHealthIndicator implements HealthIndicator {
+
+    private final GoogleSheetsService sheets;
+
+    public SheetsHealthIndicator(GoogleSheetsService sheets) {
+        this.sheets = sheets;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder;
+        Throwable initError = sheets.getInitError();
+        if (initError != null) {
+            builder = Health.down().withDetail("error", String.valueOf(initError.getMessage()));
+        } else if (!sheets.isClientReady()) {
+            builder = Health.unknown().withDetail("state", "initializing");
+        } else if (sheets.getBreakerState() == SheetsCircuitBreaker.State.OPEN) {
+            builder = Health.down();
+        } else {
+            builder = Health.up();
+        }
+        return builder.withDetail("breaker", sheets.getBreakerState())
+                .withDetail("pendingRows", sheets.getPendingWriteCount())
+                .build();
+    }
+}
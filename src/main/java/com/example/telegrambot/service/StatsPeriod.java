@@ -0,0 +1,122 @@
+package com.example.telegrambot.service;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Период для /offers и /rescheduling: даты включительно и подпись для ответа ("за {title}").
+ *
+ * Аргумент команды:
+ *   пусто — текущая неделя;
+ *   2025-09 — месяц; 2025-Q3 — квартал;
+ *   last4w — последние N недель, включая текущую;
+ *   01.09-30.09 или 01.09.2025-30.09.2025 — произвольный диапазон.
+ * Год без указания выбирается так, чтобы начало периода было не позже сегодняшнего дня,
+ * а конец — не раньше начала (15.12-15.01 — через Новый год).
+ */
+public record StatsPeriod(LocalDate from, LocalDate to, String title) {
+
+    private static final Locale RU = Locale.forLanguageTag("ru");
+    private static final int MAX_WEEKS = 104;
+
+    // форматтеры создаются один раз: подпись текущей недели строится на каждый запрос статистики
+    private static final DateTimeFormatter MONTH_YEAR = DateTimeFormatter.ofPattern("LLLL yyyy", RU);
+    private static final DateTimeFormatter MONTH_NAME = DateTimeFormatter.ofPattern("LLLL", RU);
+    private static final DateTimeFormatter DAY_MONTH = DateTimeFormatter.ofPattern("d LLLL", RU);
+    private static final DateTimeFormatter DAY_MONTH_YEAR = DateTimeFormatter.ofPattern("d LLLL yyyy", RU);
+
+    private static final Pattern MONTH = Pattern.compile("(\\d{4})-(\\d{1,2})");
+    private static final Pattern QUARTER = Pattern.compile("(\\d{4})-[QqКк]([1-4])");
+    private static final Pattern LAST_WEEKS = Pattern.compile("last(\\d{1,3})w", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RANGE = Pattern.compile(
+            "(\\d{1,2})\\.(\\d{1,2})(?:\\.(\\d{4}))?\\s*[-–]\\s*(\\d{1,2})\\.(\\d{1,2})(?:\\.(\\d{4}))?");
+
+    /** Неделя (понедельник-воскресенье), в которую входит today */
+    public static StatsPeriod currentWeek(LocalDate today) {
+        LocalDate monday = today.with(DayOfWeek.MONDAY);
+        return new StatsPeriod(monday, monday.plusDays(6), "неделю (" + formatRange(monday, monday.plusDays(6)) + ")");
+    }
+
+    /** Разбор аргумента команды; IllegalArgumentException с текстом для пользователя */
+    public static StatsPeriod parse(String arg, LocalDate today) {
+        String value = arg == null ? "" : arg.trim();
+        if (value.isEmpty()) return currentWeek(today);
+        try {
+            Matcher m = MONTH.matcher(value);
+            if (m.matches()) {
+                LocalDate first = LocalDate.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), 1);
+                return new StatsPeriod(first, first.plusMonths(1).minusDays(1),
+                        first.format(MONTH_YEAR));
+            }
+            m = QUARTER.matcher(value);
+            if (m.matches()) {
+                int quarter = Integer.parseInt(m.group(2));
+                LocalDate first = LocalDate.of(Integer.parseInt(m.group(1)), (quarter - 1) * 3 + 1, 1);
+                return new StatsPeriod(first, first.plusMonths(3).minusDays(1), quarter + " квартал " + first.getYear());
+            }
+            m = LAST_WEEKS.matcher(value);
+            if (m.matches()) {
+                int weeks = Integer.parseInt(m.group(1));
+                if (weeks < 1 || weeks > MAX_WEEKS) {
+                    throw new IllegalArgumentException("Число недель — от 1 до " + MAX_WEEKS);
+                }
+                LocalDate sunday = today.with(DayOfWeek.MONDAY).plusDays(6);
+                LocalDate monday = sunday.minusWeeks(weeks).plusDays(1);
+                String range = formatRange(monday, sunday);
+                return new StatsPeriod(monday, sunday, weeks == 1 ? "неделю (" + range + ")" : weeks + " " + weeksWord(weeks) + " (" + range + ")");
+            }
+            m = RANGE.matcher(value);
+            if (m.matches()) {
+                LocalDate from = date(m.group(1), m.group(2), m.group(3), today);
+                LocalDate to = date(m.group(4), m.group(5), m.group(6), from.getYear());
+                if (m.group(6) == null && to.isBefore(from)) to = to.plusYears(1);
+                if (from.isAfter(to)) {
+                    throw new IllegalArgumentException("Начало периода позже конца");
+                }
+                return new StatsPeriod(from, to, "период " + formatRange(from, to));
+            }
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Неверная дата: " + value);
+        }
+        throw new IllegalArgumentException("Не понял период: " + value);
+    }
+
+    /** "8–14 сентября" в пределах месяца, иначе "29 сентября – 5 октября 2025" */
+    static String formatRange(LocalDate from, LocalDate to) {
+        boolean sameMonth = from.getMonth().equals(to.getMonth()) && from.getYear() == to.getYear();
+        if (sameMonth) {
+            String month = from.format(MONTH_NAME); // «сентября»
+            return from.getDayOfMonth() + "–" + to.getDayOfMonth() + " " + month;
+        }
+
+        boolean sameYear = from.getYear() == to.getYear();
+        String left = from.format(sameYear ? DAY_MONTH : DAY_MONTH_YEAR);
+        String right = to.format(DAY_MONTH_YEAR);
+        return left + " – " + right;
+    }
+
+    /** Дата без года — в году today, а если получается позже today — годом раньше */
+    private static LocalDate date(String day, String month, String year, LocalDate today) {
+        if (year != null) return date(day, month, year, 0);
+        LocalDate date = date(day, month, null, today.getYear());
+        return date.isAfter(today) ? date.minusYears(1) : date;
+    }
+
+    private static LocalDate date(String day, String month, String year, int defaultYear) {
+        int y = year != null ? Integer.parseInt(year) : defaultYear;
+        return LocalDate.of(y, Integer.parseInt(month), Integer.parseInt(day));
+    }
+
+    private static String weeksWord(int n) {
+        int mod100 = n % 100;
+        int mod10 = n % 10;
+        if (mod100 >= 11 && mod100 <= 14) return "недель";
+        if (mod10 >= 2 && mod10 <= 4) return "недели";
+        return mod10 == 1 ? "неделю" : "недель";
+    }
+}
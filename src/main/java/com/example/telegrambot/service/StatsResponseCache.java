@@ -0,0 +1,110 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.BotMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Готовые ответы на /offers, /rescheduling, /meetings и /team: ключ — (пользователь, команда, период).
+ *
+ * Размер ограничен (bot.stats.cache-size), вытесняется давно не запрошенный ответ (LRU).
+ * Вместо поиска записей пользователя при любом изменении его данных (сохранение встречи, /reset,
+ * перенос строк из Sheets) увеличивается его версия:
+ * запись со старой версией считается промахом и перезаписывается при следующем запросе.
+ * Версия читается до построения ответа, поэтому встреча, сохранённая во время построения,
+ * не потеряется. /team зависит от всех пользователей и сбрасывается при любом изменении.
+ * Смена недели — новый ключ (период входит в ключ), старые ответы уходят по LRU.
+ */
+@Component
+public class StatsResponseCache {
+
+    /** Пользователь для ответов, собранных по всей команде */
+    static final long TEAM = 0L;
+
+    private record Key(long userId, String command, StatsPeriod period) {}
+
+    private record Entry(long version, String text) {}
+
+    private final int maxEntries;
+    private final Map<Key, Entry> entries;
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong teamVersion = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public StatsResponseCache(@Value("${bot.stats.cache-size:10000}") int maxEntries, BotMetrics metrics) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > StatsResponseCache.this.maxEntries;
+            }
+        };
+
+        metrics.gauge("bot.stats.cache.size", "Ответы в кэше статистики", this, StatsResponseCache::size);
+        metrics.counter("bot.stats.cache.hits", "Ответы статистики из кэша", this, StatsResponseCache::getHitCount);
+        metrics.counter("bot.stats.cache.misses", "Ответы статистики, построенные заново", this, StatsResponseCache::getMissCount);
+    }
+
+    /** Ответ из кэша или построенный build (вне блокировки кэша) */
+    public String get(long userId, String command, StatsPeriod period, Supplier<String> build) {
+        long version = version(userId);
+        String text = find(userId, command, period, version);
+        if (text == null) {
+            text = build.get();
+            put(userId, command, period, version, text);
+        }
+        return text;
+    }
+
+    /** Версия данных пользователя (для /team — {@link #TEAM}); читается до построения ответа */
+    public long version(long userId) {
+        return userId == TEAM ? teamVersion.get() : versions.getOrDefault(userId, 0L);
+    }
+
+    /** Ответ, построенный при той же версии данных; null — промах */
+    public String find(long userId, String command, StatsPeriod period, long version) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(new Key(userId, command, period));
+        }
+        if (entry != null && entry.version() == version) {
+            hits.incrementAndGet();
+            return entry.text();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(long userId, String command, StatsPeriod period, long version, String text) {
+        synchronized (entries) {
+            entries.put(new Key(userId, command, period), new Entry(version, text));
+        }
+    }
+
+    /** Данные пользователя изменились: его ответы и ответы по команде устарели */
+    public void invalidate(long userId) {
+        versions.merge(userId, 1L, Long::sum);
+        teamVersion.incrementAndGet();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.MeetingType;
+import com.example.telegrambot.model.OfferType;
+import com.example.telegrambot.model.RescheduleReason;
+import com.example.telegrambot.storage.MeetingCodec;
+import com.example.telegrambot.storage.MeetingStore;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сводки по периодам для /offers и /rescheduling с аргументом (см. {@link StatsPeriod}).
+ *
+ * Для каждого пользователя счётчики (офферы по ordinal {@link OfferType}, затем переносы
+ * по ordinal {@link RescheduleReason}) хранятся в корзинах по дням, неделям, месяцам и кварталам.
+ * Запрос раскладывается на самые крупные целые корзины, поэтому квартал — одно сложение массивов,
+ * а произвольный диапазон — не больше нескольких десятков, независимо от числа встреч.
+ *
+ * Источник — локальное хранилище встреч (Sheets не читается): корзины пользователя строятся
+ * одним проходом {@link MeetingStore#scanUser} при первом запросе и дальше обновляются при сохранении.
+ * Счёт тот же, что у недельных счётчиков: оффер — один раз на встречу, причина не из справочника — ДРУГОЕ.
+ * Отдельно считаются проведённые встречи — для доли переносов в {@link #team}.
+ *
+ * Командный отчёт — те же корзины по всем пользователям хранилища: O(пользователей) сложений
+ * массивов, корзины ещё не запрошенных пользователей строятся параллельно (ForkJoinPool).
+ */
+@Component
+public class StatsRollup {
+
+    private static final int OFFERS = OfferType.count();
+    private static final int REASONS = RescheduleReason.values().length;
+    private static final int MEETINGS = OFFERS + REASONS;
+    private static final int WIDTH = MEETINGS + 1;
+    private static final int OTHER_REASON = RescheduleReason.ДРУГОЕ.ordinal();
+
+    private final MeetingStore meetingStore;
+    private final Map<Long, UserRollup> users = new ConcurrentHashMap<>();
+
+    public StatsRollup(MeetingStore meetingStore) {
+        this.meetingStore = meetingStore;
+    }
+
+    /**
+     * Сохраняет встречу (persist) и учитывает её в сводках. Оба шага — под блокировкой пользователя,
+     * чтобы параллельное построение корзин из хранилища не посчитало встречу дважды или не пропустило её.
+     */
+    public void add(Meeting meeting, Runnable persist) {
+        UserRollup rollup = users.computeIfAbsent(meeting.getUserId(), k -> new UserRollup());
+        synchronized (rollup) {
+            persist.run();
+            if (rollup.loaded) {
+                rollup.add(meeting.getTimestamp().toLocalDate(), meeting.getMeetingType(), meeting.getOffersMask(),
+                        MeetingCodec.reasonOrdinal(meeting.getRescheduleReason()));
+            }
+        }
+    }
+
+    /** Офферы пользователя за период по ordinal {@link OfferType} */
+    public int[] offerCounts(Long userId, LocalDate from, LocalDate to) {
+        return Arrays.copyOfRange(total(userId, from, to), 0, OFFERS);
+    }
+
+    /** Переносы пользователя за период по ordinal {@link RescheduleReason} */
+    public int[] rescheduleCounts(Long userId, LocalDate from, LocalDate to) {
+        return Arrays.copyOfRange(total(userId, from, to), OFFERS, MEETINGS);
+    }
+
+    /** Счётчики пользователя за период */
+    public record UserTotals(Long userId, int meetings, int[] offers, int[] reschedules) {}
+
+    /** Счётчики всех пользователей, у которых в периоде есть встречи или переносы, одним проходом */
+    public List<UserTotals> activeUsers(LocalDate from, LocalDate to) {
+        List<Long> userIds = new ArrayList<>(meetingStore.userIds());
+        int[][] perUser = totals(userIds, from, to);
+        List<UserTotals> active = new ArrayList<>();
+        for (int u = 0; u < perUser.length; u++) {
+            int[] t = perUser[u];
+            int reschedules = 0;
+            for (int i = OFFERS; i < MEETINGS; i++) reschedules += t[i];
+            if (t[MEETINGS] == 0 && reschedules == 0) continue;
+            active.add(new UserTotals(userIds.get(u), t[MEETINGS], Arrays.copyOfRange(t, 0, OFFERS), Arrays.copyOfRange(t, OFFERS, MEETINGS)));
+        }
+        return active;
+    }
+
+    /** Итоги всех пользователей за период; участники без встреч в периоде не включаются */
+    public TeamStats team(LocalDate from, LocalDate to) {
+        List<Long> userIds = new ArrayList<>(meetingStore.userIds());
+        int[][] perUser = totals(userIds, from, to);
+
+        List<TeamStats.Member> members = new ArrayList<>();
+        int[] offers = new int[OFFERS];
+        int meetings = 0;
+        int reschedules = 0;
+        for (int u = 0; u < perUser.length; u++) {
+            int[] t = perUser[u];
+            int userOffers = 0;
+            for (int i = 0; i < OFFERS; i++) {
+                offers[i] += t[i];
+                userOffers += t[i];
+            }
+            int userReschedules = 0;
+            for (int i = OFFERS; i < MEETINGS; i++) {
+                userReschedules += t[i];
+            }
+            if (t[MEETINGS] == 0 && userReschedules == 0) continue;
+            members.add(new TeamStats.Member(userIds.get(u), userOffers, t[MEETINGS], userReschedules));
+            meetings += t[MEETINGS];
+            reschedules += userReschedules;
+        }
+        members.sort(Comparator.comparingInt(TeamStats.Member::offers).reversed()
+                .thenComparingDouble(TeamStats.Member::rescheduleRate));
+        return new TeamStats(members, offers, meetings, reschedules);
+    }
+
+    /** Сбрасывает корзины пользователя (после /reset): следующий запрос построит их заново */
+    public void clearUser(Long userId) {
+        UserRollup rollup = users.remove(userId);
+        if (rollup != null) {
+            synchronized (rollup) {
+                rollup.loaded = false;
+            }
+        }
+    }
+
+    // ---------- Внутреннее ----------
+
+    /** Суммы по пользователям; корзины ещё не запрошенных пользователей строятся параллельно */
+    private int[][] totals(List<Long> userIds, LocalDate from, LocalDate to) {
+        return userIds.parallelStream().map(userId -> total(userId, from, to)).toArray(int[][]::new);
+    }
+
+    private int[] total(Long userId, LocalDate from, LocalDate to) {
+        UserRollup rollup = users.computeIfAbsent(userId, k -> new UserRollup());
+        synchronized (rollup) {
+            if (!rollup.loaded) {
+                meetingStore.scanUser(userId, (epochDay, type, offersMask, reason) ->
+                        rollup.add(LocalDate.ofEpochDay(epochDay), type, offersMask, reason));
+                rollup.loaded = true;
+            }
+            return rollup.sum(from, to);
+        }
+    }
+
+    /** Корзины одного пользователя; ключи — день эпохи, понедельник недели, номер месяца и квартала */
+    private static final class UserRollup {
+        final Map<Long, int[]> days = new HashMap<>();
+        final Map<Long, int[]> weeks = new HashMap<>();
+        final Map<Integer, int[]> months = new HashMap<>();
+        final Map<Integer, int[]> quarters = new HashMap<>();
+        boolean loaded;
+
+        void add(LocalDate date, MeetingType type, long offersMask, int reason) {
+            if (type != MeetingType.COMPLETED && type != MeetingType.RESCHEDULED) return;
+            count(days.computeIfAbsent(date.toEpochDay(), k -> new int[WIDTH]), type, offersMask, reason);
+            count(weeks.computeIfAbsent(date.with(DayOfWeek.MONDAY).toEpochDay(), k -> new int[WIDTH]), type, offersMask, reason);
+            count(months.computeIfAbsent(monthKey(date), k -> new int[WIDTH]), type, offersMask, reason);
+            count(quarters.computeIfAbsent(quarterKey(date), k -> new int[WIDTH]), type, offersMask, reason);
+        }
+
+        /** Сумма за [from, to]: на каждом шаге берётся самая крупная корзина, целиком попадающая в диапазон */
+        int[] sum(LocalDate from, LocalDate to) {
+            int[] total = new int[WIDTH];
+            LocalDate d = from;
+            while (!d.isAfter(to)) {
+                LocalDate next;
+                if (d.getDayOfMonth() == 1 && (d.getMonthValue() - 1) % 3 == 0 && !d.plusMonths(3).minusDays(1).isAfter(to)) {
+                    merge(total, quarters.get(quarterKey(d)));
+                    next = d.plusMonths(3);
+                } else if (d.getDayOfMonth() == 1 && !d.plusMonths(1).minusDays(1).isAfter(to)) {
+                    merge(total, months.get(monthKey(d)));
+                    next = d.plusMonths(1);
+                } else if (d.getDayOfWeek() == DayOfWeek.MONDAY && !d.plusDays(6).isAfter(to)) {
+                    merge(total, weeks.get(d.toEpochDay()));
+                    next = d.plusWeeks(1);
+                } else {
+                    merge(total, days.get(d.toEpochDay()));
+                    next = d.plusDays(1);
+                }
+                d = next;
+            }
+            return total;
+        }
+
+        private static void count(int[] bucket, MeetingType type, long offersMask, int reason) {
+            if (type == MeetingType.RESCHEDULED) {
+                bucket[OFFERS + (reason >= 0 ? reason : OTHER_REASON)]++;
+            } else {
+                bucket[MEETINGS]++;
+                for (long m = offersMask; m != 0; m &= m - 1) {
+                    bucket[Long.numberOfTrailingZeros(m)]++;
+                }
+            }
+        }
+
+        private static void merge(int[] total, int[] bucket) {
+            if (bucket == null) return;
+            for (int i = 0; i < WIDTH; i++) {
+                total[i] += bucket[i];
+            }
+        }
+
+        private static int monthKey(LocalDate date) {
+            return date.getYear() * 12 + date.getMonthValue() - 1;
+        }
+
+        private static int quarterKey(LocalDate date) {
+            return date.getYear() * 4 + (date.getMonthValue() - 1) / 3;
+        }
+    }
+}
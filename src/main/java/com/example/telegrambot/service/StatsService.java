@@ -1,59 +1,58 @@
 package com.example.telegrambot.service;
 
 import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.MeetingMessageScanner;
 import com.example.telegrambot.model.MeetingType;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.example.telegrambot.model.OfferType;
+import com.example.telegrambot.model.RescheduleReason;
+import com.example.telegrambot.storage.MeetingStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
-import java.util.Locale;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 @Service
 public class StatsService {
 
-    private final ObjectMapper objectMapper;
-    private final String dataFilePath = "meetings.json";
-    private final GoogleSheetsService googleSheetsService;
-    private static final ZoneId ZONE = ZoneId.of("Europe/Moscow");
-    private static final Locale RU = Locale.forLanguageTag("ru");
-
-    private static LocalDate startOfWeek(LocalDate ref) {
-        return ref.with(DayOfWeek.MONDAY);
-    }
-    private static String formatWeekRange(LocalDate weekStart) {
-        LocalDate weekEnd = weekStart.plusDays(6);
+    private static final Logger log = LoggerFactory.getLogger(StatsService.class);
 
-        boolean sameMonth = weekStart.getMonth().equals(weekEnd.getMonth()) && weekStart.getYear() == weekEnd.getYear();
-        if (sameMonth) {
-            String month = weekStart.format(DateTimeFormatter.ofPattern("LLLL", RU)); // «сентября»
-            return weekStart.getDayOfMonth() + "–" + weekEnd.getDayOfMonth() + " " + month;
-        }
+    private final MeetingStore meetingStore;
+    private final GoogleSheetsService googleSheetsService;
+    private final WeeklyStatsAggregator weeklyStatsAggregator;
+    private final StatsRollup statsRollup;
+    private final UserDirectory userDirectory;
+    private final StatsResponseCache responseCache;
+    private final Clock clock;
 
-        boolean sameYear = weekStart.getYear() == weekEnd.getYear();
-        String left = weekStart.format(DateTimeFormatter.ofPattern("d LLLL" + (sameYear ? "" : " yyyy"), RU));
-        String right = weekEnd.format(DateTimeFormatter.ofPattern("d LLLL yyyy", RU));
-        return left + " – " + right;
-    }
+    private volatile StatsPeriod cachedWeek;
+    private static final DateTimeFormatter COMMENT_TIME = DateTimeFormatter.ofPattern("dd.MM HH:mm");
 
-    public StatsService(GoogleSheetsService googleSheetsService) {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
+    public StatsService(MeetingStore meetingStore, GoogleSheetsService googleSheetsService,
+                        WeeklyStatsAggregator weeklyStatsAggregator, StatsRollup statsRollup,
+                        UserDirectory userDirectory, StatsResponseCache responseCache, Clock clock) {
+        this.meetingStore = meetingStore;
         this.googleSheetsService = googleSheetsService;
+        this.weeklyStatsAggregator = weeklyStatsAggregator;
+        this.statsRollup = statsRollup;
+        this.userDirectory = userDirectory;
+        this.responseCache = responseCache;
+        this.clock = clock;
+        this.cachedWeek = StatsPeriod.currentWeek(LocalDate.now(clock));
     }
 
     public void saveMeeting(Meeting meeting) {
         try {
-            // backup в локальный файл
-            List<Meeting> meetings = loadAllMeetings();
-            meetings.add(meeting);
-            objectMapper.writeValue(new File(dataFilePath), meetings);
+            try {
+                // локальная копия: журнал (storage.format=json) или двоичный файл (binary); заодно — сводки по периодам
+                statsRollup.add(meeting, () -> meetingStore.add(meeting));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Ошибка сохранения встречи", e);
+            }
 
             // запись в Google Sheets (временно отключено для тестирования)
             try {
@@ -62,41 +61,59 @@ public class StatsService {
                 } else if (meeting.getMeetingType() == MeetingType.COMMENT) {
                     googleSheetsService.saveCommentToSheets(meeting.getUserId(), meeting.getComment());
                 } else {
-                    if (meeting.getOffers() != null && !meeting.getOffers().isEmpty()) {
+                    if (meeting.hasOffers()) {
                         googleSheetsService.saveMeetingToSheets(meeting.getUserId(), meeting.getOffers(), meeting.getId());
                     }
                 }
             } catch (Exception e) {
                 // Игнорируем ошибки Google Sheets для тестирования
-                System.out.println("Google Sheets недоступен: " + e.getMessage());
+                log.warn("Google Sheets недоступен: {}", e.getMessage());
             }
-        } catch (IOException e) {
-            throw new RuntimeException("Ошибка сохранения встречи", e);
+        } finally {
+            // после постановки строки в очередь Sheets: /meetings читает лист вместе с очередью
+            responseCache.invalidate(meeting.getUserId());
         }
     }
 
     public List<Meeting> loadAllMeetings() {
-        try {
-            File file = new File(dataFilePath);
-            if (!file.exists()) {
-                return new ArrayList<>();
-            }
-            return objectMapper.readValue(file, new TypeReference<List<Meeting>>() {});
-        } catch (IOException e) {
-            return new ArrayList<>();
-        }
+        return meetingStore.findAll();
     }
 
     // ---- Еженедельные статистики ----
 
-    /** Офферы: читаем только из Google Sheets (недельный лист пользователя) */
-    public Map<String, Integer> getWeeklyOfferStats(Long userId) {
-        return googleSheetsService.getWeeklyStatsFromSheets(userId);
+    /**
+     * Офферы по ordinal OfferType за текущую неделю — те же сводки, что и для /offers с периодом;
+     * перед первым чтением недели в хранилище переносятся строки, внесённые в лист вручную
+     */
+    public int[] getWeeklyOfferStats(Long userId) {
+        weeklyStatsAggregator.importCurrentWeek(userId);
+        return getOfferStats(userId, currentWeek());
+    }
+
+    /** Переносы по ordinal RescheduleReason за текущую неделю */
+    public int[] getWeeklyRescheduleStats(Long userId) {
+        weeklyStatsAggregator.importCurrentWeek(userId);
+        return getRescheduleStats(userId, currentWeek());
+    }
+
+    /** Офферы за произвольный период: из сводок по дням/неделям/месяцам/кварталам */
+    public int[] getOfferStats(Long userId, StatsPeriod period) {
+        return statsRollup.offerCounts(userId, period.from(), period.to());
+    }
+
+    /** Переносы за произвольный период */
+    public int[] getRescheduleStats(Long userId, StatsPeriod period) {
+        return statsRollup.rescheduleCounts(userId, period.from(), period.to());
+    }
+
+    /** Итоги команды за период: все пользователи локального хранилища, без чтения листов Sheets */
+    public TeamStats getTeamStats(StatsPeriod period) {
+        return statsRollup.team(period.from(), period.to());
     }
 
-    /** Переносы: теперь читаем из Google Sheets, а не из локального JSON */
-    public Map<String, Integer> getWeeklyRescheduleStats(Long userId) {
-        return googleSheetsService.getWeeklyRescheduleStatsFromSheets(userId);
+    /** Разбор аргумента команды (/offers 2025-09); IllegalArgumentException — с текстом для пользователя */
+    public StatsPeriod parsePeriod(String arg) {
+        return StatsPeriod.parse(arg, LocalDate.now(clock));
     }
 
     /** Комментарии: читаем из Google Sheets, а не из локального JSON */
@@ -106,58 +123,175 @@ public class StatsService {
 
     public void clearUserStats(Long userId) {
         try {
-            List<Meeting> allMeetings = loadAllMeetings();
-            // оставляем только чужие встречи
-            List<Meeting> filteredMeetings = allMeetings.stream()
-                    .filter(meeting -> !Objects.equals(meeting.getUserId(), userId))
-                    .collect(Collectors.toList());
-            objectMapper.writeValue(new File(dataFilePath), filteredMeetings);
-        } catch (IOException e) {
+            // сначала отметка сброса: строки листа не вернутся в хранилище и после перезапуска
+            weeklyStatsAggregator.clearUser(userId);
+            meetingStore.removeUser(userId);
+            statsRollup.clearUser(userId);
+        } catch (RuntimeException e) {
             throw new RuntimeException("Ошибка при очистке данных пользователя", e);
+        } finally {
+            responseCache.invalidate(userId);
+        }
+    }
+
+    // ---- Готовые ответы (кэш до следующего изменения данных пользователя) ----
+
+    /** Ответ на /offers за текущую неделю */
+    public String weeklyOfferReport(Long userId) {
+        return weeklyReport(userId, "/offers", week -> formatOfferStats(getOfferStats(userId, week), week));
+    }
+
+    /** Ответ на /rescheduling за текущую неделю */
+    public String weeklyRescheduleReport(Long userId) {
+        return weeklyReport(userId, "/rescheduling", week -> formatRescheduleStats(getRescheduleStats(userId, week), week));
+    }
+
+    /**
+     * Недельный ответ. Сверка с Sheets идёт до чтения версии: если она добавила строки и сбросила кэш,
+     * ответ сохранится уже с новой версией. Пока сверка не удалась, ответ не кэшируется —
+     * следующий запрос повторит её.
+     */
+    private String weeklyReport(Long userId, String command, Function<StatsPeriod, String> build) {
+        boolean reconciled = weeklyStatsAggregator.importCurrentWeek(userId);
+        StatsPeriod week = currentWeek();
+        long version = responseCache.version(userId);
+        String cached = responseCache.find(userId, command, week, version);
+        if (cached != null) return cached;
+        String text = build.apply(week);
+        if (reconciled) {
+            responseCache.put(userId, command, week, version, text);
+        }
+        return text;
+    }
+
+    /** Ответ на /offers с периодом */
+    public String offerReport(Long userId, StatsPeriod period) {
+        return responseCache.get(userId, "/offers", period, () -> formatOfferStats(getOfferStats(userId, period), period));
+    }
+
+    /** Ответ на /rescheduling с периодом */
+    public String rescheduleReport(Long userId, StatsPeriod period) {
+        return responseCache.get(userId, "/rescheduling", period, () -> formatRescheduleStats(getRescheduleStats(userId, period), period));
+    }
+
+    /** Ответ на /team; сбрасывается при изменении данных любого пользователя */
+    public String teamReport(StatsPeriod period) {
+        return responseCache.get(StatsResponseCache.TEAM, "/team", period, () -> formatTeamStats(getTeamStats(period), period));
+    }
+
+    /**
+     * Ответ на /meetings. Пустой список не кэшируется: при недоступности Sheets чтение тоже
+     * возвращает пустой список, и "комментариев нет" не должно остаться до следующей встречи.
+     */
+    public String weeklyMeetingsReport(Long userId) {
+        StatsPeriod week = currentWeek();
+        long version = responseCache.version(userId);
+        String cached = responseCache.find(userId, "/meetings", week, version);
+        if (cached != null) return cached;
+        List<Meeting> meetings = getWeeklyMeetingsWithComments(userId);
+        String text = formatMeetingsWithComments(meetings);
+        if (!meetings.isEmpty()) {
+            responseCache.put(userId, "/meetings", week, version, text);
+        }
+        return text;
+    }
+
+    /** Текущая неделя; подпись пересобирается только при смене недели */
+    private StatsPeriod currentWeek() {
+        LocalDate today = LocalDate.now(clock);
+        StatsPeriod week = cachedWeek;
+        if (today.isBefore(week.from()) || today.isAfter(week.to())) {
+            week = StatsPeriod.currentWeek(today);
+            cachedWeek = week;
         }
+        return week;
     }
 
     // ---- Форматирование вывода ----
 
-    public String formatOfferStats(Map<String, Integer> stats) {
-        LocalDate ws = startOfWeek(LocalDate.now(ZONE));
-        String range = formatWeekRange(ws);
+    /** counts — по ordinal OfferType; названия подставляются только здесь */
+    public String formatOfferStats(int[] counts) {
+        return formatOfferStats(counts, currentWeek());
+    }
 
-        if (stats == null || stats.isEmpty()) {
-            return "📊 Статистика продаж за неделю (" + range + ") пуста.\nДобавьте встречи с офферами!";
+    public String formatOfferStats(int[] counts, StatsPeriod period) {
+        if (isEmpty(counts)) {
+            return "📊 Статистика продаж за " + period.title() + " пуста.\nДобавьте встречи с офферами!";
         }
-        StringBuilder sb = new StringBuilder("📊 Статистика продаж за неделю (" + range + "):\n\n");
-        stats.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .forEach(entry -> sb.append("• ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n"));
+        StringBuilder sb = new StringBuilder("📊 Статистика продаж за " + period.title() + ":\n\n");
+        appendByCount(sb, counts, i -> OfferType.ofOrdinal(i).getDisplayName());
         return sb.toString();
     }
 
-    public String formatRescheduleStats(Map<String, Integer> stats) {
-        LocalDate ws = startOfWeek(LocalDate.now(ZONE));
-        String range = formatWeekRange(ws);
+    /** counts — по ordinal RescheduleReason */
+    public String formatRescheduleStats(int[] counts) {
+        return formatRescheduleStats(counts, currentWeek());
+    }
+
+    public String formatRescheduleStats(int[] counts, StatsPeriod period) {
+        if (isEmpty(counts)) {
+            return "📅 Переносы за " + period.title() + " отсутствуют.\nОтлично — встречи проходят по плану!";
+        }
+        StringBuilder sb = new StringBuilder("📅 Статистика переносов за " + period.title() + ":\n\n");
+        RescheduleReason[] reasons = RescheduleReason.values();
+        appendByCount(sb, counts, i -> reasons[i].getDisplayName());
+        return sb.toString();
+    }
 
-        if (stats == null || stats.isEmpty()) {
-            return "📅 Переносы за неделю (" + range + ") отсутствуют.\nОтлично — встречи проходят по плану!";
+    public String formatTeamStats(TeamStats stats, StatsPeriod period) {
+        if (stats.members().isEmpty()) {
+            return "👥 Встреч команды за " + period.title() + " нет.";
+        }
+        StringBuilder sb = new StringBuilder("👥 Команда за " + period.title() + ":\n\n");
+        int place = 1;
+        for (TeamStats.Member member : stats.members()) {
+            sb.append(place++).append(". ").append(userDirectory.name(member.userId()))
+                    .append(" — офферов: ").append(member.offers())
+                    .append(", переносов: ").append(member.reschedules())
+                    .append(" (").append(percent(member.rescheduleRate())).append(")\n");
         }
-        StringBuilder sb = new StringBuilder("📅 Статистика переносов за неделю (" + range + "):\n\n");
-        stats.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .forEach(entry -> sb.append("• ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n"));
+        sb.append("\nВсего встреч: ").append(stats.meetings())
+                .append(", переносов: ").append(stats.reschedules())
+                .append(" (").append(percent(stats.rescheduleRate())).append(")\n\n");
+        appendByCount(sb, stats.offers(), i -> OfferType.ofOrdinal(i).getDisplayName());
         return sb.toString();
     }
 
+    private static String percent(double rate) {
+        return Math.round(rate * 100) + "%";
+    }
+
+    private static boolean isEmpty(int[] counts) {
+        if (counts == null) return true;
+        for (int n : counts) {
+            if (n > 0) return false;
+        }
+        return true;
+    }
+
+    /** Строки "• название: количество" по убыванию количества (при равенстве — в порядке enum), без нулей */
+    private static void appendByCount(StringBuilder sb, int[] counts, IntFunction<String> name) {
+        boolean[] done = new boolean[counts.length];
+        while (true) {
+            int best = -1;
+            for (int i = 0; i < counts.length; i++) {
+                if (!done[i] && counts[i] > 0 && (best < 0 || counts[i] > counts[best])) best = i;
+            }
+            if (best < 0) return;
+            done[best] = true;
+            sb.append("• ").append(name.apply(best)).append(": ").append(counts[best]).append("\n");
+        }
+    }
+
     public String formatMeetingsWithComments(List<Meeting> meetings) {
-        LocalDate ws = startOfWeek(LocalDate.now(ZONE));
-        String range = formatWeekRange(ws);
+        String title = currentWeek().title();
 
         if (meetings == null || meetings.isEmpty()) {
-            return "📝 Комментариев за неделю (" + range + ") нет.";
+            return "📝 Комментариев за " + title + " нет.";
         }
-        StringBuilder sb = new StringBuilder("📝 Встречи с комментариями за неделю (" + range + "):\n\n");
-        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("dd.MM HH:mm");
+        StringBuilder sb = new StringBuilder("📝 Встречи с комментариями за " + title + ":\n\n");
         meetings.forEach(meeting -> {
-            String dateTime = meeting.getTimestamp().format(dtf);
+            String dateTime = meeting.getTimestamp().format(COMMENT_TIME);
             String type = (meeting.getMeetingType() == MeetingType.RESCHEDULED) ? "Перенос" : "Встреча";
             sb.append("🕐 ").append(dateTime).append(" (").append(type).append(")\n");
             sb.append("💬 ").append(meeting.getComment()).append("\n\n");
@@ -169,15 +303,8 @@ public class StatsService {
      * Модифицирует исходный текст встречи, добавляя расшифровку офферов и дату встречи
      */
     public String getModifiedMeetingText(Long userId, String originalText) {
-        List<Meeting> allMeetings = loadAllMeetings();
-        
         // Ищем последнюю встречу пользователя с таким текстом
-        Meeting targetMeeting = allMeetings.stream()
-                .filter(meeting -> Objects.equals(meeting.getUserId(), userId))
-                .filter(meeting -> meeting.getOriginalText() != null && 
-                         meeting.getOriginalText().trim().equals(originalText.trim()))
-                .max((m1, m2) -> m1.getTimestamp().compareTo(m2.getTimestamp()))
-                .orElse(null);
+        Meeting targetMeeting = meetingStore.findLatestByText(userId, originalText);
         
         if (targetMeeting == null) {
             return "❌ Встреча с таким текстом не найдена";
@@ -190,16 +317,12 @@ public class StatsService {
      * Получает модифицированный текст встречи по ID активности
      */
     public String getModifiedMeetingTextById(String activityId) {
-        // Сначала ищем в Google Sheets
-        Meeting targetMeeting = googleSheetsService.findMeetingById(activityId);
+        // Сначала ищем в локальном индексе: там исходный текст и реальное время встречи
+        Meeting targetMeeting = meetingStore.findByActivityId(activityId);
         
         if (targetMeeting == null) {
-            // Если не найдено в Google Sheets, ищем в локальном файле
-            List<Meeting> allMeetings = loadAllMeetings();
-            targetMeeting = allMeetings.stream()
-                    .filter(meeting -> activityId.equals(meeting.getId()))
-                    .findFirst()
-                    .orElse(null);
+            // Если локально нет (например, запись сделана не через бота), ищем в Google Sheets
+            targetMeeting = googleSheetsService.findMeetingById(activityId);
         }
         
         if (targetMeeting == null) {
@@ -217,16 +340,15 @@ public class StatsService {
         DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd.MM.yyyy");
         DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
         
-        // Находим позицию "Мой вопрос:" (игнорируя регистр)
-        String lowerText = originalText.toLowerCase();
-        int questionIndex = lowerText.indexOf("мой вопрос:");
+        // Находим позицию "Мой вопрос:" (игнорируя регистр, без копии текста)
+        int questionIndex = MeetingMessageScanner.indexOfMarker(originalText);
         
         if (questionIndex == -1) {
             return originalText; // Если не найдено, возвращаем исходный текст
         }
         
         // Извлекаем часть до "Мой вопрос:"
-        String beforeQuestion = originalText.substring(0, questionIndex + "мой вопрос:".length());
+        String beforeQuestion = originalText.substring(0, questionIndex + MeetingMessageScanner.MARKER.length());
         
         // Создаем модифицированную часть после "Мой вопрос:"
         StringBuilder modifiedPart = new StringBuilder();
@@ -250,23 +372,18 @@ public class StatsService {
             
         } else {
             // Для обычных встреч с офферами
-            if (meeting.getOffers() != null && !meeting.getOffers().isEmpty()) {
+            if (meeting.hasOffers()) {
                 modifiedPart.append(" ");
                 
-                // Группируем офферы по количеству
-                Map<String, Long> offerCounts = meeting.getOffers().stream()
-                        .collect(Collectors.groupingBy(offer -> offer, Collectors.counting()));
-                
+                // Офферы уже сгруппированы: количество по ordinal, затем нераспознанные слова
                 List<String> offerDescriptions = new ArrayList<>();
-                for (Map.Entry<String, Long> entry : offerCounts.entrySet()) {
-                    String offerName = entry.getKey();
-                    Long count = entry.getValue();
-                    if (count > 1) {
-                        offerDescriptions.add(offerName + " (" + count + ")");
-                    } else {
-                        offerDescriptions.add(offerName);
-                    }
+                int[] offerCounts = meeting.getOfferCounts();
+                for (int i = 0; i < offerCounts.length; i++) {
+                    if (offerCounts[i] == 0) continue;
+                    String offerName = OfferType.ofOrdinal(i).getDisplayName();
+                    offerDescriptions.add(offerCounts[i] > 1 ? offerName + " (" + offerCounts[i] + ")" : offerName);
                 }
+                offerDescriptions.addAll(meeting.getUnknownOffers());
                 
                 modifiedPart.append(String.join(", ", offerDescriptions));
                 modifiedPart.append(" [").append(meeting.getTimestamp().format(dateFormatter))
@@ -0,0 +1,28 @@
+package com.example.telegrambot.service;
+
+import java.util.List;
+
+/**
+ * Итоги команды за период: участники по убыванию офферов и суммы по офферам.
+ *
+ * offers — по ordinal OfferType; meetings — проведённые встречи, reschedules — переносы.
+ */
+public record TeamStats(List<Member> members, int[] offers, int meetings, int reschedules) {
+
+    public record Member(Long userId, int offers, int meetings, int reschedules) {
+
+        /** Доля переносов среди проведённых и перенесённых встреч, 0..1 */
+        public double rescheduleRate() {
+            return TeamStats.rate(meetings, reschedules);
+        }
+    }
+
+    public double rescheduleRate() {
+        return rate(meetings, reschedules);
+    }
+
+    private static double rate(int meetings, int reschedules) {
+        int total = meetings + reschedules;
+        return total == 0 ? 0 : (double) reschedules / total;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.telegrambot.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Имена пользователей для командных отчётов (/team): userId -> имя из Telegram.
+ *
+ * Запоминается при каждом сообщении; файл (bot.users.path) перезаписывается только
+ * при появлении нового пользователя или смене имени.
+ */
+@Component
+public class UserDirectory {
+
+    private static final Logger log = LoggerFactory.getLogger(UserDirectory.class);
+
+    private final Path path;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Long, String> names = new ConcurrentHashMap<>();
+
+    public UserDirectory(@Value("${bot.users.path:users.json}") String path) {
+        this.path = Paths.get(path);
+        if (Files.exists(this.path)) {
+            try {
+                names.putAll(objectMapper.readValue(this.path.toFile(), new TypeReference<Map<Long, String>>() {}));
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка чтения справочника пользователей " + path, e);
+            }
+        }
+    }
+
+    /** Запоминает имя пользователя; пустое имя не сохраняется */
+    public void remember(Long userId, String name) {
+        if (userId == null || name == null || name.isBlank()) return;
+        String trimmed = name.trim();
+        if (trimmed.equals(names.put(userId, trimmed))) return;
+        save();
+    }
+
+    /** Имя пользователя или "ID {userId}", если он ещё не писал боту */
+    public String name(Long userId) {
+        String name = names.get(userId);
+        return name != null ? name : "ID " + userId;
+    }
+
+    private synchronized void save() {
+        try {
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            objectMapper.writeValue(tmp.toFile(), new TreeMap<>(names));
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить справочник пользователей: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.MeetingType;
+import com.example.telegrambot.storage.MeetingCodec;
+import com.example.telegrambot.storage.MeetingStore;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сверка текущей недели с Google Sheets для /offers и /rescheduling.
+ *
+ * Счётчиков здесь нет: статистика недели, как и любого периода, считается {@link StatsRollup}
+ * по локальному хранилищу встреч. Строки недельных листов Sheets, которых нет локально (внесены в лист не через бота),
+ * один раз на (пользователь, неделя) переносятся в хранилище при первом чтении статистики:
+ * строки офферов сопоставляются по ID активности, переносы и строки без ID — по дате, минуте
+ * и офферам (причине). Повторный перенос после перезапуска ничего не добавляет.
+ * Если Sheets недоступен, считаются локальные данные, перенос повторится при следующем чтении.
+ *
+ * /reset запоминает время сброса в файле (bot.stats.reset-path): строки листа не позже него
+ * не переносятся и после перезапуска.
+ */
+@Component
+public class WeeklyStatsAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(WeeklyStatsAggregator.class);
+
+    private final GoogleSheetsService googleSheetsService;
+    private final MeetingStore meetingStore;
+    private final StatsRollup statsRollup;
+    private final StatsResponseCache responseCache;
+    private final Clock clock;
+    private final Path resetPath;
+    private final ObjectMapper objectMapper;
+    private final Map<Long, LocalDateTime> resets = new ConcurrentHashMap<>();
+
+    // недели, уже сверенные с листами; ключи прошлых недель удаляются при смене недели
+    private final Map<WeekKey, WeekState> weeks = new ConcurrentHashMap<>();
+    private volatile LocalDate currentMonday;
+
+    public WeeklyStatsAggregator(GoogleSheetsService googleSheetsService, MeetingStore meetingStore, StatsRollup statsRollup,
+                                 StatsResponseCache responseCache,
+                                 @Value("${bot.stats.reset-path:stats-resets.json}") String resetPath, Clock clock) {
+        this.googleSheetsService = googleSheetsService;
+        this.meetingStore = meetingStore;
+        this.statsRollup = statsRollup;
+        this.responseCache = responseCache;
+        this.clock = clock;
+        this.resetPath = Paths.get(resetPath);
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        loadResets();
+    }
+
+    /**
+     * Переносит в хранилище строки текущей недели, которых нет локально (один раз на пользователя и неделю;
+     * после ошибки Sheets — при следующем вызове). Добавленные строки сбрасывают готовые ответы пользователя.
+     * true — неделя сверена с Sheets (сейчас или раньше), false — Sheets недоступен.
+     */
+    public boolean importCurrentWeek(Long userId) {
+        LocalDate monday = LocalDate.now(clock).with(DayOfWeek.MONDAY);
+        if (!monday.equals(currentMonday)) {
+            weeks.keySet().removeIf(key -> key.weekStart().isBefore(monday));
+            currentMonday = monday;
+        }
+        WeekState state = weeks.computeIfAbsent(new WeekKey(userId, monday), k -> new WeekState());
+        synchronized (state) {
+            if (state.imported) return true;
+            List<Meeting> sheetRows;
+            try {
+                // сначала лист, потом хранилище: строка листа, записанная ботом, к этому моменту уже локальная
+                sheetRows = googleSheetsService.getWeeklyMeetingsFromSheets(userId);
+            } catch (RuntimeException e) {
+                log.warn("Статистика недели посчитана по локальным данным: {}", e.getMessage());
+                return false;
+            }
+            int imported = importMissing(userId, monday, sheetRows);
+            if (imported > 0) {
+                log.info("Из Google Sheets перенесено строк пользователя {}: {}", userId, imported);
+                responseCache.invalidate(userId);
+            }
+            state.imported = true;
+            return true;
+        }
+    }
+
+    /**
+     * Запоминает сброс пользователя (до удаления его встреч): строки листа до этого момента
+     * больше не переносятся в хранилище, в том числе после перезапуска.
+     */
+    public void clearUser(Long userId) {
+        synchronized (resets) {
+            resets.put(userId, LocalDateTime.now(clock));
+            saveResets();
+        }
+        weeks.keySet().removeIf(key -> Objects.equals(key.userId(), userId));
+    }
+
+    // ---------- Внутреннее ----------
+
+    private int importMissing(Long userId, LocalDate monday, List<Meeting> sheetRows) {
+        LocalDate sunday = monday.plusDays(6);
+        Map<String, Integer> local = new HashMap<>();
+        for (Meeting m : meetingStore.findByUser(userId)) {
+            LocalDate day = m.getTimestamp().toLocalDate();
+            if (!day.isBefore(monday) && !day.isAfter(sunday)) local.merge(key(m), 1, Integer::sum);
+        }
+        LocalDateTime resetAt = resets.get(userId);
+        int imported = 0;
+        for (Meeting row : sheetRows) {
+            LocalDate day = row.getTimestamp().toLocalDate();
+            if (day.isBefore(monday) || day.isAfter(sunday)) continue;
+            // в листе время с точностью до минуты: строка той же минуты, что и сброс, считается сброшенной
+            if (resetAt != null && !row.getTimestamp().isAfter(resetAt.truncatedTo(ChronoUnit.MINUTES))) continue;
+            if (row.getId() != null && meetingStore.findByActivityId(row.getId()) != null) continue;
+            String key = key(row);
+            Integer n = local.get(key);
+            if (n != null) {
+                // такая же строка уже есть локально — одна строка листа на одну локальную
+                if (n == 1) local.remove(key); else local.put(key, n - 1);
+                continue;
+            }
+            statsRollup.add(row, () -> meetingStore.add(row));
+            imported++;
+        }
+        return imported;
+    }
+
+    /** Ключ сопоставления строки листа с локальной встречей */
+    private static String key(Meeting m) {
+        if (m.getMeetingType() == MeetingType.COMPLETED && m.getId() != null && !m.getId().isEmpty()) {
+            return "id:" + m.getId();
+        }
+        long detail = m.getMeetingType() == MeetingType.RESCHEDULED
+                ? MeetingCodec.reasonOrdinal(m.getRescheduleReason()) : m.getOffersMask();
+        return m.getMeetingType() + "|" + m.getTimestamp().truncatedTo(ChronoUnit.MINUTES) + "|" + detail;
+    }
+
+    private void loadResets() {
+        if (!Files.exists(resetPath)) return;
+        try {
+            resets.putAll(objectMapper.readValue(resetPath.toFile(), new TypeReference<Map<Long, LocalDateTime>>() {}));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения файла сбросов статистики " + resetPath, e);
+        }
+    }
+
+    /** Временный файл с fsync + атомарная замена: сброс не теряется при падении */
+    private void saveResets() {
+        Path tmp = resetPath.resolveSibling(resetPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.wrap(objectMapper.writeValueAsBytes(resets)));
+            out.force(true);
+            Files.move(tmp, resetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка записи файла сбросов статистики " + resetPath, e);
+        }
+    }
+
+    private record WeekKey(Long userId, LocalDate weekStart) {}
+
+    private static final class WeekState {
+        boolean imported;
+    }
+}
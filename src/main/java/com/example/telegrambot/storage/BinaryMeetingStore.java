@@ -0,0 +1,483 @@
+package com.example.telegrambot.storage;
+
+import com.example.telegrambot.BotMetrics;
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.MeetingType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Хранилище встреч в двоичном формате (storage.format=binary).
+ *
+ * meetings.bin — заголовок и записи фиксированной длины (RECORD_SIZE байт):
+ *   время (секунды эпохи + наносекунды), userId, тип, ordinal причины, флаги, маска офферов
+ *   и смещения строк в куче meetings.heap (ID активности, текст, комментарий; -1 — нет).
+ * Офферы и причина попадают в кучу, только если маской и ordinal'ом их не восстановить
+ * (повторы, нераспознанные слова, значения не из справочника).
+ *
+ * Оба файла отображаются в память; поля читаются прямо из отображения, поэтому
+ * {@link #scanUser} не создаёт ни Meeting, ни строк. В памяти — только индексы с номерами записей.
+ * Удаление пользователя помечает его записи флагом. Запись: строки в кучу и запись в отображении;
+ * fsync — по таймеру storage.journal.sync-interval-ms. Счётчики записей и длины кучи в заголовке
+ * обновляются только в {@link #sync()} после fsync обоих файлов: ОС может сбросить страницы записей
+ * раньше страниц кучи, и запись со ссылкой на ещё нулевую строку не должна попасть в счётчик.
+ * При старте записи, ссылающиеся за пределы кучи, всё равно отбрасываются.
+ *
+ * Если файла ещё нет, встречи импортируются из JSON-снапшота и журнала ({@link MeetingJournal};
+ * storage.binary.import-json=false — отключить). MAGIC пишется последним, после fsync импорта:
+ * прерванный импорт при следующем старте начинается заново. Офлайн-перенос — {@link MeetingStoreConverter}.
+ * Отображение одним буфером ограничивает каждый файл 2 ГБ (около 29 млн записей).
+ */
+@Component
+@ConditionalOnProperty(name = "storage.format", havingValue = "binary")
+public class BinaryMeetingStore implements MeetingStore {
+
+    private static final Logger log = LoggerFactory.getLogger(BinaryMeetingStore.class);
+
+    private static final int MAGIC = 0x4D544753; // "MTGS"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 72;
+
+    // заголовок
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_COUNT = 8;
+    private static final int H_HEAP_LENGTH = 16;
+
+    // поля записи
+    private static final int R_EPOCH_SECOND = 0;
+    private static final int R_NANOS = 8;
+    private static final int R_TYPE = 12;
+    private static final int R_REASON = 13;
+    private static final int R_FLAGS = 14;
+    private static final int R_USER_ID = 16;
+    private static final int R_OFFERS_MASK = 24;
+    private static final int R_ID = 32;
+    private static final int R_TEXT = 40;
+    private static final int R_COMMENT = 48;
+    private static final int R_OFFERS = 56;
+    private static final int R_REASON_TEXT = 64;
+
+    private static final byte FLAG_DELETED = 1;
+    private static final byte FLAG_NO_OFFERS = 2;
+    private static final String OFFER_SEPARATOR = "\u001F";
+    private static final MeetingType[] TYPES = MeetingType.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BotMetrics metrics;
+    private final FileChannel recordChannel;
+    private final FileChannel heapChannel;
+    private MappedByteBuffer records;
+    private MappedByteBuffer heap;
+    private int count;
+    private int heapLength;
+    private boolean dirty;
+
+    // индексы: номера записей
+    private final Map<String, Integer> byActivityId = new HashMap<>();
+    private final Map<Long, IntList> byUser = new HashMap<>();
+    private final Map<TextKey, IntList> byUserText = new HashMap<>();
+
+    public BinaryMeetingStore(@Value("${storage.binary.path:meetings.bin}") String recordsPath,
+                              @Value("${storage.binary.heap-path:meetings.heap}") String heapPath,
+                              @Value("${storage.binary.import-json:true}") boolean importJson,
+                              MeetingJournal meetingJournal,
+                              BotMetrics metrics) {
+        this.metrics = metrics;
+        Path recordFile = Paths.get(recordsPath);
+        try {
+            recordChannel = FileChannel.open(recordFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            heapChannel = FileChannel.open(Paths.get(heapPath), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            records = recordChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(recordChannel.size(), HEADER_SIZE + 16L * 1024 * RECORD_SIZE));
+            heap = heapChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(heapChannel.size(), 4L * 1024 * 1024));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка открытия хранилища встреч " + recordFile, e);
+        }
+        if (records.getInt(H_MAGIC) == 0) {
+            // новый файл или прерванный импорт: записи и куча перезаписываются с начала
+            records.putInt(H_VERSION, VERSION).putLong(H_COUNT, 0).putLong(H_HEAP_LENGTH, 0);
+            dirty = true;
+            List<Meeting> imported = importJson ? meetingJournal.recover() : List.of();
+            for (Meeting m : imported) {
+                add(m);
+            }
+            sync();
+            records.putInt(H_MAGIC, MAGIC);
+            records.force(0, HEADER_SIZE);
+            if (!imported.isEmpty()) {
+                log.info("Встречи импортированы из JSON в {}: {}", recordFile, imported.size());
+            }
+        } else {
+            open(recordFile);
+        }
+    }
+
+    @Override
+    public void add(Meeting meeting) {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            boolean exactOffers = MeetingCodec.isExactMask(meeting);
+            boolean exactReason = MeetingCodec.isExactReason(meeting.getRescheduleReason());
+            long idRef = putString(meeting.getId());
+            long textRef = putString(meeting.getOriginalText());
+            long commentRef = putString(meeting.getComment());
+            long offersRef = exactOffers || meeting.getOfferCounts() == null ? -1 : putString(String.join(OFFER_SEPARATOR, meeting.getOffers()));
+            long reasonRef = exactReason ? -1 : putString(meeting.getRescheduleReason());
+
+            ensureRecordCapacity(count + 1);
+            int pos = HEADER_SIZE + count * RECORD_SIZE;
+            records.putLong(pos + R_EPOCH_SECOND, MeetingCodec.epochSecond(meeting.getTimestamp()));
+            records.putInt(pos + R_NANOS, meeting.getTimestamp().getNano());
+            records.put(pos + R_TYPE, (byte) (meeting.getMeetingType() == null ? -1 : meeting.getMeetingType().ordinal()));
+            records.put(pos + R_REASON, (byte) MeetingCodec.reasonOrdinal(meeting.getRescheduleReason()));
+            records.put(pos + R_FLAGS, meeting.getOfferCounts() == null ? FLAG_NO_OFFERS : 0);
+            records.putLong(pos + R_USER_ID, meeting.getUserId());
+            records.putLong(pos + R_OFFERS_MASK, meeting.getOffersMask());
+            records.putLong(pos + R_ID, idRef);
+            records.putLong(pos + R_TEXT, textRef);
+            records.putLong(pos + R_COMMENT, commentRef);
+            records.putLong(pos + R_OFFERS, offersRef);
+            records.putLong(pos + R_REASON_TEXT, reasonRef);
+            index(count, meeting.getId(), meeting.getUserId(), meeting.getOriginalText());
+            count++;
+            dirty = true;
+        } catch (RuntimeException e) {
+            metrics.error("binary-store");
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        metrics.recordWrite("binary-append", start);
+    }
+
+    @Override
+    public void removeUser(Long userId) {
+        lock.writeLock().lock();
+        try {
+            IntList ids = byUser.remove(userId);
+            if (ids == null) return;
+            for (int i = 0; i < ids.size; i++) {
+                int id = ids.values[i];
+                int pos = pos(id);
+                records.put(pos + R_FLAGS, (byte) (records.get(pos + R_FLAGS) | FLAG_DELETED));
+                String activityId = readString(records.getLong(pos + R_ID));
+                if (activityId != null) {
+                    byActivityId.remove(activityId, id);
+                }
+            }
+            byUserText.keySet().removeIf(key -> key.userId() == userId);
+            // удаление подтверждаем сразу, как "надгробие" в журнале
+            records.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Meeting findByActivityId(String activityId) {
+        lock.readLock().lock();
+        try {
+            Integer id = byActivityId.get(activityId);
+            return id == null ? null : read(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Meeting findLatestByText(Long userId, String originalText) {
+        String normalized = normalize(originalText);
+        lock.readLock().lock();
+        try {
+            IntList bucket = byUserText.get(new TextKey(userId, normalized.hashCode()));
+            if (bucket == null) return null;
+            int latest = -1;
+            for (int i = 0; i < bucket.size; i++) {
+                int id = bucket.values[i];
+                if (normalized.equals(normalize(readString(records.getLong(pos(id) + R_TEXT))))
+                        && (latest < 0 || compareTime(id, latest) >= 0)) {
+                    latest = id;
+                }
+            }
+            return latest < 0 ? null : read(latest);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Meeting> findByUser(Long userId) {
+        lock.readLock().lock();
+        try {
+            IntList ids = byUser.get(userId);
+            if (ids == null) return new ArrayList<>();
+            List<Meeting> out = new ArrayList<>(ids.size);
+            for (int i = 0; i < ids.size; i++) {
+                out.add(read(ids.values[i]));
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Meeting> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Meeting> out = new ArrayList<>(count);
+            for (int id = 0; id < count; id++) {
+                if (!isDeleted(id)) out.add(read(id));
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<Long> userIds() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(byUser.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void scanUser(Long userId, MeetingScan scan) {
+        lock.readLock().lock();
+        try {
+            IntList ids = byUser.get(userId);
+            if (ids == null) return;
+            for (int i = 0; i < ids.size; i++) {
+                int pos = pos(ids.values[i]);
+                byte type = records.get(pos + R_TYPE);
+                scan.accept(Math.floorDiv(records.getLong(pos + R_EPOCH_SECOND), 86_400L),
+                        type < 0 ? null : TYPES[type],
+                        records.getLong(pos + R_OFFERS_MASK),
+                        records.get(pos + R_REASON));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Выгружает встречи в JSON-снапшот формата {@link MeetingJournal} */
+    public void exportJson(Path snapshot) {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        try {
+            objectMapper.writeValue(snapshot.toFile(), findAll());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка выгрузки встреч в " + snapshot, e);
+        }
+    }
+
+    /** Количество записей, включая удалённые */
+    public int recordCount() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Периодический fsync изменённых страниц */
+    @Scheduled(fixedDelayString = "${storage.journal.sync-interval-ms:200}")
+    public void sync() {
+        lock.writeLock().lock();
+        try {
+            if (!dirty) return;
+            long start = System.nanoTime();
+            heap.force();
+            records.force();
+            // счётчики — только после fsync данных, на которые они указывают
+            records.putLong(H_HEAP_LENGTH, heapLength).putLong(H_COUNT, count);
+            records.force(0, HEADER_SIZE);
+            dirty = false;
+            metrics.recordWrite("binary-fsync", start);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        sync();
+        try {
+            recordChannel.close();
+            heapChannel.close();
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия хранилища встреч: {}", e.getMessage());
+        }
+    }
+
+    // ---------- Внутреннее ----------
+
+    private void open(Path recordFile) {
+        if (records.getInt(H_MAGIC) != MAGIC || records.getInt(H_VERSION) != VERSION) {
+            throw new IllegalStateException("Неизвестный формат файла встреч " + recordFile);
+        }
+        long storedCount = records.getLong(H_COUNT);
+        heapLength = (int) Math.min(records.getLong(H_HEAP_LENGTH), heap.capacity());
+        long capacity = (records.capacity() - HEADER_SIZE) / RECORD_SIZE;
+        int valid = (int) Math.min(storedCount, capacity);
+        for (int id = 0; id < valid; id++) {
+            int pos = pos(id);
+            if (!refValid(records.getLong(pos + R_ID)) || !refValid(records.getLong(pos + R_TEXT))
+                    || !refValid(records.getLong(pos + R_COMMENT)) || !refValid(records.getLong(pos + R_OFFERS))
+                    || !refValid(records.getLong(pos + R_REASON_TEXT))) {
+                log.warn("Хранилище встреч обрезано до последней целой записи: {} из {}", id, storedCount);
+                valid = id;
+                records.putLong(H_COUNT, valid);
+                break;
+            }
+        }
+        count = valid;
+        for (int id = 0; id < count; id++) {
+            if (isDeleted(id)) continue;
+            int pos = pos(id);
+            index(id, readString(records.getLong(pos + R_ID)), records.getLong(pos + R_USER_ID),
+                    readString(records.getLong(pos + R_TEXT)));
+        }
+    }
+
+    private boolean refValid(long ref) {
+        return ref < 0 || (ref + 4 <= heapLength && ref + 4 + heap.getInt((int) ref) <= heapLength);
+    }
+
+    private void index(int id, String activityId, long userId, String text) {
+        if (activityId != null) {
+            byActivityId.put(activityId, id);
+        }
+        byUser.computeIfAbsent(userId, k -> new IntList()).add(id);
+        if (text != null) {
+            byUserText.computeIfAbsent(new TextKey(userId, normalize(text).hashCode()), k -> new IntList()).add(id);
+        }
+    }
+
+    private Meeting read(int id) {
+        int pos = pos(id);
+        Meeting m = new Meeting();
+        m.setTimestamp(MeetingCodec.timestamp(records.getLong(pos + R_EPOCH_SECOND), records.getInt(pos + R_NANOS)));
+        m.setUserId(records.getLong(pos + R_USER_ID));
+        byte type = records.get(pos + R_TYPE);
+        m.setMeetingType(type < 0 ? null : TYPES[type]);
+        m.setId(readString(records.getLong(pos + R_ID)));
+        m.setOriginalText(readString(records.getLong(pos + R_TEXT)));
+        m.setComment(readString(records.getLong(pos + R_COMMENT)));
+        long offersRef = records.getLong(pos + R_OFFERS);
+        if (offersRef >= 0) {
+            m.setOffers(new ArrayList<>(Arrays.asList(readString(offersRef).split(OFFER_SEPARATOR, -1))));
+        } else if ((records.get(pos + R_FLAGS) & FLAG_NO_OFFERS) == 0) {
+            m.setOfferCounts(MeetingCodec.counts(records.getLong(pos + R_OFFERS_MASK)), List.of());
+        }
+        long reasonRef = records.getLong(pos + R_REASON_TEXT);
+        m.setRescheduleReason(reasonRef >= 0 ? readString(reasonRef) : MeetingCodec.reasonName(records.get(pos + R_REASON)));
+        return m;
+    }
+
+    private int compareTime(int a, int b) {
+        int c = Long.compare(records.getLong(pos(a) + R_EPOCH_SECOND), records.getLong(pos(b) + R_EPOCH_SECOND));
+        return c != 0 ? c : Integer.compare(records.getInt(pos(a) + R_NANOS), records.getInt(pos(b) + R_NANOS));
+    }
+
+    private boolean isDeleted(int id) {
+        return (records.get(pos(id) + R_FLAGS) & FLAG_DELETED) != 0;
+    }
+
+    private static int pos(int id) {
+        return HEADER_SIZE + id * RECORD_SIZE;
+    }
+
+    /** Строка в куче: длина (int) и байты UTF-8; возвращает смещение или -1 для null */
+    private long putString(String value) {
+        if (value == null) return -1;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureHeapCapacity(heapLength + 4L + bytes.length);
+        int ref = heapLength;
+        heap.putInt(ref, bytes.length);
+        heap.put(ref + 4, bytes);
+        heapLength += 4 + bytes.length;
+        return ref;
+    }
+
+    private String readString(long ref) {
+        if (ref < 0) return null;
+        int length = heap.getInt((int) ref);
+        byte[] bytes = new byte[length];
+        heap.get((int) ref + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void ensureRecordCapacity(int records) {
+        long needed = HEADER_SIZE + (long) records * RECORD_SIZE;
+        if (needed <= this.records.capacity()) return;
+        this.records = remap(recordChannel, this.records, needed);
+    }
+
+    private void ensureHeapCapacity(long needed) {
+        if (needed <= heap.capacity()) return;
+        heap = remap(heapChannel, heap, needed);
+    }
+
+    /** Увеличивает файл и отображение вдвое (не больше 2 ГБ) */
+    private MappedByteBuffer remap(FileChannel channel, MappedByteBuffer current, long needed) {
+        long size = Math.min(Math.max(needed, current.capacity() * 2L), Integer.MAX_VALUE);
+        if (needed > size) {
+            throw new IllegalStateException("Хранилище встреч превысило 2 ГБ");
+        }
+        try {
+            current.force();
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка расширения хранилища встреч", e);
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim();
+    }
+
+    private record TextKey(long userId, int textHash) {}
+
+    /** Растущий массив номеров записей */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.telegrambot.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Чтение append-only файлов из JSON-строк (журнал встреч, очередь записи в Sheets).
+ *
+ * Целой считается только строка, завершённая '\n': последняя строка без перевода строки
+ * могла быть оборвана при падении, даже если она случайно разбирается как JSON.
+ * Такой хвост нужно обрезать до следующей записи, иначе новая запись допишется к нему
+ * и при следующем восстановлении пропадёт вместе со всем, что после неё.
+ */
+public final class JournalLines {
+
+    /** Обработчик строки; false — строка не разобрана, дальше файл не читается */
+    @FunctionalInterface
+    public interface LineHandler {
+        boolean accept(String line);
+    }
+
+    private JournalLines() {}
+
+    /** Передаёт handler целые непустые строки по порядку; возвращает длину принятой части файла в байтах */
+    public static long read(Path path, LineHandler handler) throws IOException {
+        long valid = 0;
+        long pos = 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                int start = 0;
+                for (int i = 0; i < n; i++) {
+                    if (buf[i] != '\n') continue;
+                    line.write(buf, start, i - start);
+                    start = i + 1;
+                    String text = line.toString(StandardCharsets.UTF_8);
+                    line.reset();
+                    if (!text.isBlank() && !handler.accept(text)) {
+                        return valid;
+                    }
+                    valid = pos + i + 1;
+                }
+                line.write(buf, start, n - start);
+                pos += n;
+            }
+        }
+        return valid;
+    }
+
+    /** Обрезает всё после validBytes и синхронизирует файл; true — хвост был */
+    public static boolean truncateTail(FileChannel channel, long validBytes) throws IOException {
+        if (channel.size() <= validBytes) return false;
+        channel.truncate(validBytes);
+        channel.force(true);
+        return true;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.telegrambot.storage;
+
+import com.example.telegrambot.model.Meeting;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Резидентное хранилище встреч с хеш-индексами поверх {@link MeetingJournal} (storage.format=json).
+ *
+ * Загружается из журнала один раз при старте и дальше поддерживается в актуальном состоянии
+ * через {@link #add(Meeting)} и {@link #removeUser(Long)}, которые сначала пишут журнал. Индексы:
+ *   ID активности -> последняя встреча с этим ID;
+ *   userId -> встречи пользователя в порядке добавления;
+ *   (userId, хеш нормализованного текста) -> встречи с таким текстом.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.format", havingValue = "json", matchIfMissing = true)
+public class JournalMeetingStore implements MeetingStore {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final MeetingJournal meetingJournal;
+
+    private final List<Meeting> all = new ArrayList<>();
+    private final Map<String, Meeting> byActivityId = new HashMap<>();
+    private final Map<Long, List<Meeting>> byUser = new HashMap<>();
+    private final Map<TextKey, List<Meeting>> byUserText = new HashMap<>();
+
+    public JournalMeetingStore(MeetingJournal meetingJournal) {
+        this.meetingJournal = meetingJournal;
+        // состояние восстанавливается из журнала один раз при старте
+        for (Meeting m : meetingJournal.recover()) {
+            index(m);
+        }
+    }
+
+    @Override
+    public void add(Meeting meeting) {
+        // в журнал — одна дописанная строка вместо перезаписи всего файла
+        meetingJournal.append(meeting);
+        lock.writeLock().lock();
+        try {
+            index(meeting);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeUser(Long userId) {
+        // "надгробие" в журнале: встречи пользователя отбросятся при восстановлении и сжатии
+        meetingJournal.appendTombstone(userId);
+        lock.writeLock().lock();
+        try {
+            List<Meeting> removed = byUser.remove(userId);
+            if (removed == null) return;
+            all.removeIf(m -> Objects.equals(m.getUserId(), userId));
+            byUserText.keySet().removeIf(key -> Objects.equals(key.userId(), userId));
+            for (Meeting m : removed) {
+                if (m.getId() != null) {
+                    byActivityId.remove(m.getId(), m);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Meeting findByActivityId(String activityId) {
+        lock.readLock().lock();
+        try {
+            return byActivityId.get(activityId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Meeting findLatestByText(Long userId, String originalText) {
+        String normalized = normalize(originalText);
+        lock.readLock().lock();
+        try {
+            List<Meeting> bucket = byUserText.get(new TextKey(userId, normalized.hashCode()));
+            if (bucket == null) return null;
+            Meeting latest = null;
+            for (Meeting m : bucket) {
+                if (normalized.equals(normalize(m.getOriginalText()))
+                        && (latest == null || !m.getTimestamp().isBefore(latest.getTimestamp()))) {
+                    latest = m;
+                }
+            }
+            return latest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Meeting> findByUser(Long userId) {
+        lock.readLock().lock();
+        try {
+            List<Meeting> meetings = byUser.get(userId);
+            return meetings == null ? Collections.emptyList() : new ArrayList<>(meetings);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Meeting> findAll() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(all);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<Long> userIds() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(byUser.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void scanUser(Long userId, MeetingScan scan) {
+        lock.readLock().lock();
+        try {
+            List<Meeting> meetings = byUser.get(userId);
+            if (meetings == null) return;
+            for (Meeting m : meetings) {
+                MeetingCodec.scan(m, scan);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- Внутреннее ----------
+
+    private void index(Meeting meeting) {
+        all.add(meeting);
+        if (meeting.getId() != null) {
+            byActivityId.put(meeting.getId(), meeting);
+        }
+        byUser.computeIfAbsent(meeting.getUserId(), k -> new ArrayList<>()).add(meeting);
+        if (meeting.getOriginalText() != null) {
+            TextKey key = new TextKey(meeting.getUserId(), normalize(meeting.getOriginalText()).hashCode());
+            byUserText.computeIfAbsent(key, k -> new ArrayList<>(1)).add(meeting);
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim();
+    }
+
+    private record TextKey(Long userId, int textHash) {}
+}
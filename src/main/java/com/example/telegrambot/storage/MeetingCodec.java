@@ -0,0 +1,82 @@
+package com.example.telegrambot.storage;
+
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.OfferType;
+import com.example.telegrambot.model.RescheduleReason;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Компактное представление полей встречи: время в секундах эпохи, офферы битовой маской,
+ * причина переноса ordinal'ом.
+ */
+public final class MeetingCodec {
+
+    private static final OfferType[] OFFERS = OfferType.values();
+    private static final RescheduleReason[] REASONS = RescheduleReason.values();
+
+    private MeetingCodec() {}
+
+    /** Время встречи как есть (без часового пояса) в секундах эпохи */
+    public static long epochSecond(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static LocalDateTime timestamp(long epochSecond, int nanos) {
+        return LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+    }
+
+    /** Биты по ordinal OfferType; неизвестные названия пропускаются */
+    public static long offersMask(List<String> offers) {
+        long mask = 0;
+        if (offers == null) return mask;
+        for (String name : offers) {
+            OfferType offer = OfferType.findByDisplayName(name);
+            if (offer != null) mask |= 1L << offer.ordinal();
+        }
+        return mask;
+    }
+
+    /** true, если офферы встречи восстанавливаются по маске: без повторов и нераспознанных слов */
+    public static boolean isExactMask(Meeting meeting) {
+        int[] counts = meeting.getOfferCounts();
+        if (counts == null || !meeting.getUnknownOffers().isEmpty()) return false;
+        for (int n : counts) {
+            if (n > 1) return false;
+        }
+        return true;
+    }
+
+    /** Счётчики офферов по маске (0 или 1 на оффер) */
+    public static int[] counts(long mask) {
+        int[] counts = new int[OFFERS.length];
+        for (long m = mask; m != 0; m &= m - 1) {
+            counts[Long.numberOfTrailingZeros(m)] = 1;
+        }
+        return counts;
+    }
+
+    /** ordinal причины переноса по названию; -1 — не указана или не из справочника */
+    public static int reasonOrdinal(String displayName) {
+        RescheduleReason reason = RescheduleReason.findByDisplayName(displayName);
+        return reason == null ? -1 : reason.ordinal();
+    }
+
+    /** true, если {@link #reasonName(int)} вернёт в точности это значение */
+    public static boolean isExactReason(String displayName) {
+        int ordinal = reasonOrdinal(displayName);
+        return displayName == null || (ordinal >= 0 && REASONS[ordinal].getDisplayName().equals(displayName));
+    }
+
+    public static String reasonName(int ordinal) {
+        return ordinal < 0 ? null : REASONS[ordinal].getDisplayName();
+    }
+
+    /** Передаёт встречу в обход хранилища */
+    static void scan(Meeting m, MeetingScan scan) {
+        scan.accept(m.getTimestamp().toLocalDate().toEpochDay(), m.getMeetingType(),
+                m.getOffersMask(), reasonOrdinal(m.getRescheduleReason()));
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.telegrambot.storage;
+
+import com.example.telegrambot.BotMetrics;
+import com.example.telegrambot.model.Meeting;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Журнал встреч: снапшот meetings.json + append-only журнал meetings.journal.
+ *
+ * Каждая запись журнала — одна JSON-строка (добавление встречи или "надгробие" пользователя).
+ * fsync выполняется пачками: по таймеру или при накоплении sync-batch-size записей.
+ * Когда журнал разрастается, состояние сворачивается в новый снапшот (через временный файл
+ * и атомарное переименование), а журнал обрезается. При старте хвост журнала
+ * проигрывается поверх снапшота; оборванная последняя строка отбрасывается (см. {@link JournalLines}).
+ *
+ * Снапшот и журнал связаны номером поколения: журнал начинается записью GEN с номером снапшота,
+ * поверх которого он пишется, а сжатие пишет снапшот следующего поколения. Если процесс упал
+ * между заменой снапшота и обрезкой журнала, журнал старого поколения при старте пропускается —
+ * его записи уже в снапшоте. Снапшот старого формата (массив встреч) — поколение 0.
+ */
+@Component
+public class MeetingJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(MeetingJournal.class);
+
+    private final ObjectMapper objectMapper;
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final int syncBatchSize;
+    private final int compactionThreshold;
+    private final BotMetrics metrics;
+
+    private FileChannel channel;
+    private int unsyncedRecords;
+    private int journalRecords;
+    // поколение текущего снапшота; -1 — снапшот ещё не читался
+    private long generation = -1;
+
+    public MeetingJournal(@Value("${storage.snapshot.path:meetings.json}") String snapshotPath,
+                          @Value("${storage.journal.path:meetings.journal}") String journalPath,
+                          @Value("${storage.journal.sync-batch-size:32}") int syncBatchSize,
+                          @Value("${storage.journal.compaction-threshold:1000}") int compactionThreshold,
+                          BotMetrics metrics) {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.snapshotPath = Paths.get(snapshotPath);
+        this.journalPath = Paths.get(journalPath);
+        this.syncBatchSize = syncBatchSize;
+        this.compactionThreshold = compactionThreshold;
+        this.metrics = metrics;
+    }
+
+    /** Добавляет встречу в журнал */
+    public synchronized void append(Meeting meeting) {
+        write(new JournalRecord(JournalRecord.ADD, meeting, null, null));
+    }
+
+    /** Записывает "надгробие": все встречи пользователя до этой записи считаются удалёнными */
+    public synchronized void appendTombstone(Long userId) {
+        write(new JournalRecord(JournalRecord.CLEAR, null, userId, null));
+        sync();
+    }
+
+    /** Восстанавливает состояние: снапшот + проигрывание журнала */
+    public synchronized List<Meeting> recover() {
+        List<Meeting> meetings = readSnapshot();
+        journalRecords = replayJournal(meetings);
+        return meetings;
+    }
+
+    /** Периодический fsync накопленных записей */
+    @Scheduled(fixedDelayString = "${storage.journal.sync-interval-ms:200}")
+    public synchronized void sync() {
+        if (channel == null || unsyncedRecords == 0) return;
+        try {
+            long start = System.nanoTime();
+            channel.force(false);
+            metrics.recordWrite("journal-fsync", start);
+            unsyncedRecords = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка синхронизации журнала", e);
+        }
+    }
+
+    /** Сворачивает журнал в снапшот, если он превысил порог */
+    @Scheduled(fixedDelayString = "${storage.journal.compaction-check-ms:60000}")
+    public synchronized void compactIfNeeded() {
+        if (journalRecords >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    /** Пишет новый снапшот текущего состояния и обрезает журнал */
+    public synchronized void compact() {
+        try {
+            long start = System.nanoTime();
+            List<Meeting> state = recover();
+            long next = generation + 1;
+            Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                out.write(ByteBuffer.wrap(objectMapper.writeValueAsBytes(new Snapshot(next, state))));
+                out.force(true);
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            generation = next;
+
+            // падение до этой точки не страшно: журнал старого поколения при старте пропускается
+            openChannel().truncate(0);
+            writeLine(channel, new JournalRecord(JournalRecord.GEN, null, null, next));
+            channel.force(true);
+            unsyncedRecords = 0;
+            journalRecords = 0;
+            metrics.recordWrite("snapshot", start);
+        } catch (IOException e) {
+            metrics.error("journal");
+            throw new UncheckedIOException("Ошибка сжатия журнала", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия журнала: {}", e.getMessage());
+        } finally {
+            channel = null;
+        }
+    }
+
+    // ---------- Внутреннее ----------
+
+    private void write(JournalRecord record) {
+        try {
+            long start = System.nanoTime();
+            FileChannel ch = openChannel();
+            if (ch.size() == 0) {
+                writeLine(ch, new JournalRecord(JournalRecord.GEN, null, null, generation()));
+            }
+            writeLine(ch, record);
+            journalRecords++;
+            metrics.recordWrite("journal-append", start);
+            if (++unsyncedRecords >= syncBatchSize) {
+                sync();
+            }
+        } catch (IOException e) {
+            metrics.error("journal");
+            throw new UncheckedIOException("Ошибка записи в журнал", e);
+        }
+    }
+
+    private void writeLine(FileChannel ch, JournalRecord record) throws IOException {
+        byte[] line = objectMapper.writeValueAsBytes(record);
+        ByteBuffer buf = ByteBuffer.allocate(line.length + 1).put(line).put((byte) '\n');
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+
+    private long generation() {
+        if (generation < 0) {
+            readSnapshot();
+        }
+        return generation;
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private List<Meeting> readSnapshot() {
+        if (!Files.exists(snapshotPath)) {
+            generation = 0;
+            return new ArrayList<>();
+        }
+        try {
+            JsonNode root = objectMapper.readTree(snapshotPath.toFile());
+            if (root.isArray()) {
+                generation = 0;
+                return objectMapper.convertValue(root, new TypeReference<List<Meeting>>() {});
+            }
+            Snapshot snapshot = objectMapper.treeToValue(root, Snapshot.class);
+            generation = snapshot.generation();
+            return snapshot.meetings() == null ? new ArrayList<>() : new ArrayList<>(snapshot.meetings());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Повреждён снапшот " + snapshotPath, e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Повреждён снапшот " + snapshotPath, e);
+        }
+    }
+
+    private int replayJournal(List<Meeting> meetings) {
+        if (!Files.exists(journalPath)) {
+            return 0;
+        }
+        int[] applied = {0};
+        int[] corrupt = {0};
+        long[] journalGeneration = {0};
+        long validBytes;
+        try {
+            validBytes = JournalLines.read(journalPath, line -> {
+                JournalRecord record;
+                try {
+                    record = objectMapper.readValue(line, JournalRecord.class);
+                } catch (IOException e) {
+                    // строка с переводом строки записана целиком: оборванным бывает только хвост без '\n',
+                    // его JournalLines не передаёт. Испорченную строку пропускаем, записи за ней сохраняем
+                    corrupt[0]++;
+                    metrics.error("journal-corrupt");
+                    log.error("Пропущена нечитаемая запись журнала {}: {}", journalPath, e.getMessage());
+                    return true;
+                }
+                if (JournalRecord.GEN.equals(record.op())) {
+                    journalGeneration[0] = record.generation() == null ? 0 : record.generation();
+                } else if (journalGeneration[0] >= generation) {
+                    apply(meetings, record);
+                    applied[0]++;
+                }
+                return true;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения журнала " + journalPath, e);
+        }
+        if (validBytes > 0 && journalGeneration[0] < generation) {
+            // сжатие упало между заменой снапшота и обрезкой журнала: записи уже в снапшоте
+            log.warn("Журнал поколения {} уже свёрнут в снапшот поколения {}, записи пропущены",
+                    journalGeneration[0], generation);
+            validBytes = 0;
+        }
+        if (corrupt[0] > 0) {
+            log.error("В журнале {} пропущено нечитаемых записей: {}", journalPath, corrupt[0]);
+        }
+        truncateTail(validBytes);
+        return applied[0];
+    }
+
+    private void truncateTail(long validBytes) {
+        try {
+            if (JournalLines.truncateTail(openChannel(), validBytes)) {
+                log.warn("Журнал обрезан до последней целой записи ({} байт)", validBytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка восстановления журнала", e);
+        }
+    }
+
+    private static void apply(List<Meeting> meetings, JournalRecord record) {
+        if (JournalRecord.ADD.equals(record.op()) && record.meeting() != null) {
+            meetings.add(record.meeting());
+        } else if (JournalRecord.CLEAR.equals(record.op())) {
+            meetings.removeIf(m -> Objects.equals(m.getUserId(), record.userId()));
+        }
+    }
+
+    /** Одна строка журнала; generation — только у GEN */
+    record JournalRecord(String op, Meeting meeting, Long userId, Long generation) {
+        static final String ADD = "ADD";
+        static final String CLEAR = "CLEAR";
+        static final String GEN = "GEN";
+    }
+
+    /** Снапшот: поколение и все встречи */
+    record Snapshot(long generation, List<Meeting> meetings) {}
+}
@@ -0,0 +1,14 @@
+package com.example.telegrambot.storage;
+
+import com.example.telegrambot.model.MeetingType;
+
+/**
+ * Получатель записей при обходе хранилища ({@link MeetingStore#scanUser}).
+ *
+ * epochDay — дата встречи (LocalDate.toEpochDay()), offersMask — биты по ordinal OfferType
+ * (оффер отмечается один раз на встречу), reason — ordinal RescheduleReason или -1.
+ */
+@FunctionalInterface
+public interface MeetingScan {
+    void accept(long epochDay, MeetingType type, long offersMask, int reason);
+}
@@ -0,0 +1,40 @@
+package com.example.telegrambot.storage;
+
+import com.example.telegrambot.model.Meeting;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Хранилище встреч: сохранение на диск и поиск по индексам.
+ *
+ * Реализация выбирается настройкой storage.format:
+ *   json   — {@link JournalMeetingStore}: снапшот meetings.json + журнал, встречи в памяти;
+ *   binary — {@link BinaryMeetingStore}: записи фиксированной длины в memory-mapped файле.
+ */
+public interface MeetingStore {
+
+    /** Сохраняет встречу и добавляет её во все индексы */
+    void add(Meeting meeting);
+
+    /** Удаляет все встречи пользователя */
+    void removeUser(Long userId);
+
+    /** Встреча по ID активности */
+    Meeting findByActivityId(String activityId);
+
+    /** Последняя встреча пользователя с таким же текстом (сравнение без крайних пробелов) */
+    Meeting findLatestByText(Long userId, String originalText);
+
+    /** Встречи пользователя */
+    List<Meeting> findByUser(Long userId);
+
+    /** Копия всех встреч */
+    List<Meeting> findAll();
+
+    /** Пользователи, у которых есть встречи (копия) */
+    Set<Long> userIds();
+
+    /** Обход встреч пользователя для агрегации — без создания объектов Meeting там, где это возможно */
+    void scanUser(Long userId, MeetingScan scan);
+}
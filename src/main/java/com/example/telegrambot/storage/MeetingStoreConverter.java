@@ -0,0 +1,46 @@
+package com.example.telegrambot.storage;
+
+import com.example.telegrambot.BotMetrics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Офлайн-перенос встреч между форматами хранилища (бот должен быть остановлен):
+ *   import meetings.json meetings.journal meetings.bin meetings.heap — JSON-снапшот и журнал в двоичный файл;
+ *   export meetings.bin meetings.heap meetings.json — двоичный файл в JSON-снапшот (для отката на storage.format=json).
+ */
+public final class MeetingStoreConverter {
+
+    private MeetingStoreConverter() {}
+
+    public static void main(String[] args) {
+        if (args.length == 5 && args[0].equals("import")) {
+            if (Files.exists(Paths.get(args[3]))) {
+                throw new IllegalStateException("Файл уже существует: " + args[3]);
+            }
+            MeetingJournal journal = new MeetingJournal(args[1], args[2], 32, Integer.MAX_VALUE, BotMetrics.noop());
+            BinaryMeetingStore store = new BinaryMeetingStore(args[3], args[4], true, journal, BotMetrics.noop());
+            System.out.println("Импортировано встреч: " + store.recordCount());
+            store.close();
+        } else if (args.length == 4 && args[0].equals("export")) {
+            Path snapshot = Paths.get(args[3]);
+            if (!Files.exists(Paths.get(args[1]))) {
+                throw new IllegalStateException("Файл не найден: " + args[1]);
+            }
+            if (Files.exists(snapshot)) {
+                throw new IllegalStateException("Файл уже существует: " + snapshot);
+            }
+            BinaryMeetingStore store = new BinaryMeetingStore(args[1], args[2], false, null, BotMetrics.noop());
+            store.exportJson(snapshot);
+            System.out.println("Выгружено встреч: " + store.findAll().size());
+            store.close();
+        } else {
+            System.err.println("Использование:\n"
+                    + "  import <meetings.json> <meetings.journal> <meetings.bin> <meetings.heap>\n"
+                    + "  export <meetings.bin> <meetings.heap> <meetings.json>");
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.telegrambot;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OutboundMessageSenderTest {
+
+	@Test
+	void sendsInOrderAndForgetsIdleChats() throws Exception {
+		AbsSender sender = mock(AbsSender.class);
+		when(sender.executeAsync(any(SendMessage.class))).thenReturn(CompletableFuture.completedFuture(new Message()));
+		OutboundMessageSender outbound = new OutboundMessageSender(30, 20, 100, BotMetrics.noop());
+		outbound.start(sender);
+		try {
+			outbound.enqueue(new SendMessage("1", "a"));
+			outbound.enqueue(new SendMessage("2", "b"));
+			outbound.enqueue(new SendMessage("1", "c"));
+
+			assertTrue(waitFor(() -> outbound.getSentCount() == 3));
+			// после интервала чата (50 мс) пустые очереди удаляются
+			assertTrue(waitFor(() -> outbound.getChatCount() == 0));
+
+			// в удалённый чат снова можно писать
+			outbound.enqueue(new SendMessage("1", "d"));
+			assertTrue(waitFor(() -> outbound.getSentCount() == 4));
+			assertEquals(0, outbound.getQueueDepth());
+		} finally {
+			outbound.shutdown();
+		}
+	}
+
+	private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+			Thread.sleep(10);
+		}
+		return condition.getAsBoolean();
+	}
+}
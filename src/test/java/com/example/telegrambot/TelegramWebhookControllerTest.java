@@ -0,0 +1,74 @@
+package com.example.telegrambot;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = TelegramWebhookController.class,
+		properties = {"bot.mode=webhook", "bot.webhook.secret=s3cret"})
+class TelegramWebhookControllerTest {
+
+	private static final String UPDATE = """
+			{"update_id": 1001,
+			 "message": {"message_id": 7, "date": 1757500000,
+			             "chat": {"id": 42, "type": "private"},
+			             "from": {"id": 42, "is_bot": false, "first_name": "Test"},
+			             "text": "/offers"}}
+			""";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockitoBean
+	private TelegramBotService telegramBotService;
+
+	@Test
+	void acceptsUpdateAndHandsItToBot() throws Exception {
+		mockMvc.perform(post("/telegram/webhook")
+						.header("X-Telegram-Bot-Api-Secret-Token", "s3cret")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(UPDATE))
+				.andExpect(status().isOk());
+
+		verify(telegramBotService).onUpdateReceived(argThat((Update u) ->
+				u.getUpdateId() == 1001 && "/offers".equals(u.getMessage().getText())));
+	}
+
+	@Test
+	void rejectsUpdateWithWrongSecret() throws Exception {
+		mockMvc.perform(post("/telegram/webhook")
+						.header("X-Telegram-Bot-Api-Secret-Token", "wrong")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(UPDATE))
+				.andExpect(status().isUnauthorized());
+
+		verify(telegramBotService, never()).onUpdateReceived(any());
+	}
+
+	@Test
+	void rejectsUpdateWithoutSecret() throws Exception {
+		mockMvc.perform(post("/telegram/webhook")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(UPDATE))
+				.andExpect(status().isUnauthorized());
+
+		verify(telegramBotService, never()).onUpdateReceived(any());
+	}
+
+	@Test
+	void refusesToStartWithoutSecret() {
+		assertThrows(IllegalStateException.class, () -> new TelegramWebhookController(telegramBotService, " "));
+	}
+}
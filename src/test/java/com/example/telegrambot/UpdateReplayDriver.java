@@ -0,0 +1,116 @@
+package com.example.telegrambot;
+
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Нагрузочный прогон: N пользователей параллельно шлют синтетические апдейты
+ * (шаблоны встреч, переносы, комментарии, /offers, /rescheduling) в onUpdateReceived.
+ *
+ * Каждый пользователь ждёт ответ на своё сообщение, прежде чем отправить следующее
+ * (закрытый цикл), поэтому задержка — от передачи апдейта до ответа в очередь исходящих.
+ * Ответы сообщает {@link #onReply(long)}, например из подменённого OutboundMessageSender.
+ */
+public class UpdateReplayDriver {
+
+	private static final String[] TEMPLATES = {
+			"Клиент: Тестовый\nId активности - %s\nМой вопрос: кк нс инвест",
+			"Клиент: Тестовый\nId активности - %s\nМой вопрос: перенос недозвон, клиент не ответил",
+			"Клиент: Тестовый\nId активности - %s\nМой вопрос: комментарий перезвонить в пятницу",
+			"/offers",
+			"/rescheduling"
+	};
+
+	/** Итог прогона */
+	public record Report(int updates, int timeouts, double throughputPerSecond, long p50Micros, long p99Micros) {
+		@Override
+		public String toString() {
+			return String.format("апдейтов: %d, без ответа: %d, %.1f апд/с, p50 %d мкс, p99 %d мкс",
+					updates, timeouts, throughputPerSecond, p50Micros, p99Micros);
+		}
+	}
+
+	private final Map<Long, BlockingQueue<Long>> replies = new ConcurrentHashMap<>();
+	private final AtomicInteger updateIds = new AtomicInteger();
+
+	/** Ответ бота в чат (время — System.nanoTime()) */
+	public void onReply(long chatId) {
+		replies.computeIfAbsent(chatId, id -> new LinkedBlockingQueue<>()).add(System.nanoTime());
+	}
+
+	public Report run(int users, int messagesPerUser, Consumer<Update> sink) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(users);
+		long started = System.nanoTime();
+		try {
+			List<Future<long[]>> results = new ArrayList<>();
+			for (int u = 0; u < users; u++) {
+				long userId = 1_000_000L + u;
+				results.add(pool.submit(() -> replayUser(userId, messagesPerUser, sink)));
+			}
+			List<Long> latencies = new ArrayList<>();
+			int timeouts = 0;
+			for (Future<long[]> f : results) {
+				for (long latency : f.get()) {
+					if (latency < 0) timeouts++;
+					else latencies.add(latency);
+				}
+			}
+			double seconds = (System.nanoTime() - started) / 1e9;
+			long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+			return new Report(users * messagesPerUser, timeouts, latencies.size() / seconds,
+					percentile(sorted, 0.50), percentile(sorted, 0.99));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private long[] replayUser(long userId, int messages, Consumer<Update> sink) throws InterruptedException {
+		BlockingQueue<Long> inbox = replies.computeIfAbsent(userId, id -> new LinkedBlockingQueue<>());
+		long[] latencies = new long[messages];
+		for (int i = 0; i < messages; i++) {
+			String template = TEMPLATES[(int) ((userId + i) % TEMPLATES.length)];
+			String text = template.startsWith("/") ? template : String.format(template, "act" + userId + "x" + i);
+			long sentAt = System.nanoTime();
+			sink.accept(update(userId, text));
+			Long repliedAt = inbox.poll(30, TimeUnit.SECONDS);
+			latencies[i] = repliedAt == null ? -1 : repliedAt - sentAt;
+		}
+		return latencies;
+	}
+
+	private Update update(long userId, String text) {
+		User from = new User(userId, "user" + userId, false);
+		Chat chat = new Chat(userId, "private");
+		Message message = new Message();
+		message.setMessageId(updateIds.get());
+		message.setFrom(from);
+		message.setChat(chat);
+		message.setDate((int) (System.currentTimeMillis() / 1000));
+		message.setText(text);
+		Update update = new Update();
+		update.setUpdateId(updateIds.incrementAndGet());
+		update.setMessage(message);
+		return update;
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		if (sorted.length == 0) return 0;
+		int idx = (int) Math.ceil(p * sorted.length) - 1;
+		return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, Math.min(idx, sorted.length - 1))]);
+	}
+}
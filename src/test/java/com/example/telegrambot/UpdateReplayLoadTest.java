@@ -0,0 +1,94 @@
+package com.example.telegrambot;
+
+import com.example.telegrambot.service.FakeSheetsServer;
+import com.example.telegrambot.service.GoogleSheetsService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Прогон приложения целиком против заглушки Sheets: апдейты идут в onUpdateReceived,
+ * ответы перехватываются вместо отправки в Telegram. Пишет в лог пропускную способность и p50/p99.
+ * Идёт около 20 с, поэтому в обычный mvn test не входит: mvn -Pload test -Dtest=UpdateReplayLoadTest
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class UpdateReplayLoadTest {
+
+	private static final Logger log = LoggerFactory.getLogger(UpdateReplayLoadTest.class);
+
+	private static final FakeSheetsServer SHEETS;
+	private static final Path DATA_DIR;
+
+	static {
+		try {
+			SHEETS = new FakeSheetsServer();
+			SHEETS.setLatencyMillis(20);
+			DATA_DIR = Files.createTempDirectory("replay");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry registry) {
+		registry.add("google.sheets.root-url", SHEETS::getRootUrl);
+		registry.add("google.sheets.auth", () -> "none");
+		registry.add("google.sheets.flush-interval-ms", () -> "100");
+		registry.add("bot.mode", () -> "webhook");
+		registry.add("storage.snapshot.path", () -> DATA_DIR.resolve("meetings.json").toString());
+		registry.add("storage.journal.path", () -> DATA_DIR.resolve("meetings.journal").toString());
+		registry.add("google.sheets.activity-index.path", () -> DATA_DIR.resolve("activity-index.json").toString());
+		registry.add("google.sheets.archive.index-path", () -> DATA_DIR.resolve("sheet-archive.json").toString());
+		registry.add("google.sheets.outbox.path", () -> DATA_DIR.resolve("sheets-outbox.jsonl").toString());
+	}
+
+	@AfterAll
+	static void stopSheets() {
+		SHEETS.close();
+	}
+
+	@Autowired
+	private TelegramBotService bot;
+
+	@Autowired
+	private GoogleSheetsService googleSheetsService;
+
+	@MockitoBean
+	private OutboundMessageSender outboundMessageSender;
+
+	@Test
+	void replaysConcurrentUsers() throws Exception {
+		UpdateReplayDriver driver = new UpdateReplayDriver();
+		when(outboundMessageSender.enqueue(any())).thenAnswer(inv -> {
+			driver.onReply(Long.parseLong(inv.<SendMessage>getArgument(0).getChatId()));
+			return true;
+		});
+
+		UpdateReplayDriver.Report report = driver.run(20, 25, bot::onUpdateReceived);
+		googleSheetsService.flushPendingWrites();
+
+		log.info("Прогон: {}", report);
+		log.info("Вызовы Sheets: {}", SHEETS.getCallCounts());
+		assertEquals(0, report.timeouts());
+		assertEquals(0, googleSheetsService.getPendingWriteCount());
+		assertTrue(SHEETS.getCallCounts().getOrDefault("values.batchUpdate", 0L) > 0);
+	}
+}
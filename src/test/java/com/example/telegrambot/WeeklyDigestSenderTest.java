@@ -0,0 +1,132 @@
+package com.example.telegrambot;
+
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.service.StatsPeriod;
+import com.example.telegrambot.service.StatsResponseCache;
+import com.example.telegrambot.service.StatsRollup;
+import com.example.telegrambot.service.StatsService;
+import com.example.telegrambot.storage.JournalMeetingStore;
+import com.example.telegrambot.storage.MeetingJournal;
+import com.example.telegrambot.storage.MeetingStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WeeklyDigestSenderTest {
+
+	@TempDir
+	Path dir;
+
+	private static final StatsPeriod WEEK = StatsPeriod.currentWeek(LocalDate.of(2025, 10, 15));
+
+	private StatsRollup rollup;
+	private StatsService statsService;
+
+	private void activeUsers() {
+		MeetingJournal journal = new MeetingJournal(dir.resolve("meetings.json").toString(),
+				dir.resolve("meetings.journal").toString(), 32, 1000, BotMetrics.noop());
+		MeetingStore store = new JournalMeetingStore(journal);
+		rollup = new StatsRollup(store);
+		for (long userId = 1; userId <= 5; userId++) {
+			store.add(new Meeting("m" + userId, WEEK.from().atTime(10, 0), List.of("КК"), "оффер", userId));
+		}
+		// встреча прошлой недели — пользователь 6 в рассылку не попадает
+		store.add(new Meeting("old", WEEK.from().minusDays(3).atTime(10, 0), List.of("КК"), "оффер", 6L));
+		statsService = new StatsService(store, null, null, rollup, null,
+				new StatsResponseCache(100, BotMetrics.noop()), Clock.systemDefaultZone());
+	}
+
+	/** Отправитель, которому Telegram сразу отвечает успехом */
+	private static OutboundMessageSender startedOutbound() throws Exception {
+		AbsSender sender = mock(AbsSender.class);
+		when(sender.executeAsync(any(SendMessage.class))).thenReturn(CompletableFuture.completedFuture(new Message()));
+		OutboundMessageSender outbound = new OutboundMessageSender(1000, 1000, 100, BotMetrics.noop());
+		outbound.start(sender);
+		return outbound;
+	}
+
+	@Test
+	void sendsOnlyToActiveUsersAndResumesWithoutDuplicates() throws Exception {
+		activeUsers();
+		Path checkpoint = dir.resolve("digest-checkpoint.txt");
+
+		// прерванная рассылка: пользователи 1 и 2 отмечены, строка мусора и оборванная отметка "3" не считаются
+		Files.writeString(checkpoint, WEEK.from() + "\n1\nx1\n2\n3");
+		OutboundMessageSender outbound = startedOutbound();
+		WeeklyDigestSender digest = new WeeklyDigestSender(rollup, statsService, outbound, 1_000_000, 100,
+				checkpoint.toString(), BotMetrics.noop(), Clock.systemDefaultZone());
+		assertEquals(3, digest.send(WEEK));
+		// send возвращается, когда Telegram ответил на все сводки
+		assertEquals(3, outbound.getSentCount());
+		assertEquals(0, digest.getPending());
+		assertEquals(0, digest.getUnconfirmed());
+
+		// после завершения повторный запуск за ту же неделю ничего не отправляет
+		WeeklyDigestSender restarted = new WeeklyDigestSender(rollup, statsService, outbound, 1_000_000, 100,
+				checkpoint.toString(), BotMetrics.noop(), Clock.systemDefaultZone());
+		assertTrue(restarted.readCheckpoint().done());
+		assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), restarted.readCheckpoint().sent());
+		assertEquals(0, restarted.send(WEEK));
+		assertEquals(3, outbound.getSentCount());
+
+		// новая неделя начинает контрольный файл заново
+		StatsPeriod next = StatsPeriod.currentWeek(WEEK.from().plusWeeks(1));
+		assertEquals(0, restarted.send(next));
+		assertFalse(restarted.readCheckpoint().sent().contains(1L));
+		assertEquals(next.from(), restarted.readCheckpoint().week());
+		outbound.shutdown();
+	}
+
+	@Test
+	void digestLeftInMemoryQueueIsSentAgainAfterRestart() throws Exception {
+		activeUsers();
+		Path checkpoint = dir.resolve("digest-checkpoint.txt");
+
+		// поток отправки не запущен: сводки стоят в очереди, ответа нет — и отметок нет
+		OutboundMessageSender stuck = new OutboundMessageSender(30, 1, 100, BotMetrics.noop());
+		WeeklyDigestSender digest = new WeeklyDigestSender(rollup, statsService, stuck, 1_000_000, 100,
+				checkpoint.toString(), BotMetrics.noop(), Clock.systemDefaultZone());
+		Thread run = new Thread(() -> {
+			try {
+				digest.send(WEEK);
+			} catch (Exception ignored) {
+				// прерывание = остановка приложения
+			}
+		});
+		run.start();
+		for (int i = 0; i < 200 && digest.getUnconfirmed() < 5; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(5, digest.getUnconfirmed());
+		run.interrupt();
+		run.join();
+		assertEquals(Set.of(), digest.readCheckpoint().sent());
+		assertFalse(digest.readCheckpoint().done());
+
+		// после перезапуска уходят все пять
+		OutboundMessageSender outbound = startedOutbound();
+		WeeklyDigestSender restarted = new WeeklyDigestSender(rollup, statsService, outbound, 1_000_000, 100,
+				checkpoint.toString(), BotMetrics.noop(), Clock.systemDefaultZone());
+		assertEquals(5, restarted.send(WEEK));
+		assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), restarted.readCheckpoint().sent());
+		assertTrue(restarted.readCheckpoint().done());
+		outbound.shutdown();
+	}
+}
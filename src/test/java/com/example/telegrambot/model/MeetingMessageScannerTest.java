@@ -0,0 +1,52 @@
+package com.example.telegrambot.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeetingMessageScannerTest {
+
+	@Test
+	void findsMarkerOffersAndActivityIdInOnePass() {
+		String text = "Клиент: Иванов\nID АКТИВНОСТИ - aOBv7DDXE4AqEPC8jHAqcA\nМОЙ ВОПРОС:  кк нс \n";
+		ParsedMessage parsed = MeetingMessageScanner.scan(text);
+
+		assertTrue(parsed.hasMarker());
+		assertEquals(MeetingType.COMPLETED, parsed.type());
+		assertEquals("кк нс", parsed.body());
+		assertEquals("aOBv7DDXE4AqEPC8jHAqcA", parsed.activityId());
+	}
+
+	@Test
+	void classifiesRescheduleAndComment() {
+		ParsedMessage reschedule = MeetingMessageScanner.scan("Мой вопрос: Перенос  недозвон, клиент не ответил");
+		assertEquals(MeetingType.RESCHEDULED, reschedule.type());
+		assertEquals("недозвон, клиент не ответил", reschedule.body());
+
+		ParsedMessage comment = MeetingMessageScanner.scan("мой вопрос: комментарий перезвонить в пятницу");
+		assertEquals(MeetingType.COMMENT, comment.type());
+		assertEquals("перезвонить в пятницу", comment.body());
+	}
+
+	@Test
+	void activityIdMayFollowMarker() {
+		ParsedMessage parsed = MeetingMessageScanner.scan("Мой вопрос: инвест\nId активности - abc123-xyz");
+		assertEquals("abc123", parsed.activityId());
+		assertEquals("инвест\nId активности - abc123-xyz", parsed.body());
+	}
+
+	@Test
+	void reportsMissingMarkerAndEmptyBody() {
+		ParsedMessage none = MeetingMessageScanner.scan("Id активности -\nпросто текст");
+		assertFalse(none.hasMarker());
+		assertNull(none.activityId());
+
+		ParsedMessage empty = MeetingMessageScanner.scan("Мой вопрос:   ");
+		assertTrue(empty.hasMarker());
+		assertTrue(empty.isBodyEmpty());
+		assertEquals(7, MeetingMessageScanner.indexOfMarker("Текст. Мой вопрос: кк"));
+	}
+}
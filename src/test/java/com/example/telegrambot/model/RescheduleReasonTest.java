@@ -0,0 +1,16 @@
+package com.example.telegrambot.model;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RescheduleReasonTest {
+
+	@ParameterizedTest(name = "{0} -> {1}")
+	@CsvFileSource(resources = "/reschedule-golden.tsv", delimiterString = "\t", quoteCharacter = '\0',
+			emptyValue = "")
+	void classifiesGoldenCorpus(String text, RescheduleReason expected) {
+		assertEquals(expected, RescheduleReason.findByKeywords(text == null ? "" : text));
+	}
+}
@@ -0,0 +1,494 @@
+package com.example.telegrambot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Заглушка Google Sheets v4 REST в том объёме, в каком его использует {@link GoogleSheetsService}:
+ * spreadsheets.get/create, spreadsheets.batchUpdate (addSheet, deleteSheet, updateSheetProperties, appendCells),
+ * sheets.copyTo, values.get/batchGet/update/append/batchUpdate.
+ *
+ * Основная таблица отвечает на любой ID; таблицы, созданные spreadsheets.create или {@link #addSpreadsheet}
+ * (архивы), — отдельные.
+ * Данные в памяти. Можно задать задержку ответа, долю ответов 500
+ * и квоту запросов в минуту (сверх неё — 429 RESOURCE_EXHAUSTED, как у Google).
+ * Подключение: google.sheets.root-url=getRootUrl(), google.sheets.auth=none.
+ */
+public class FakeSheetsServer implements AutoCloseable {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final HttpServer server;
+
+	private final Book main = new Book();
+	private final Map<String, Book> created = new ConcurrentHashMap<>();
+	private final AtomicInteger nextSheetId = new AtomicInteger(1);
+	private final Map<String, AtomicInteger> failNext = new ConcurrentHashMap<>();
+	private final Set<String> rejectedValues = ConcurrentHashMap.newKeySet();
+
+	private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+	private final Deque<Long> recentRequests = new ArrayDeque<>();
+
+	private volatile long latencyMillis;
+	private volatile double errorRate;
+	private volatile int quotaPerMinute;
+
+	public FakeSheetsServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newFixedThreadPool(8));
+		server.createContext("/v4/spreadsheets", this::handle);
+		server.start();
+	}
+
+	public String getRootUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	/** Задержка каждого ответа */
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	/** Доля запросов, на которые отвечаем 500 (0..1) */
+	public void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+
+	/** Лимит запросов за скользящую минуту; 0 — без лимита */
+	public void setQuotaPerMinute(int quotaPerMinute) {
+		this.quotaPerMinute = quotaPerMinute;
+	}
+
+	/** Следующий вызов операции (sheets.copyTo, spreadsheets.batchUpdate, ...) получит 500 */
+	public void failNext(String operation) {
+		failNext(operation, 0);
+	}
+
+	/** Вызов операции после skip успешных получит 500 */
+	public void failNext(String operation, int skip) {
+		failNext.put(operation, new AtomicInteger(skip));
+	}
+
+	/** Запись значений, среди которых есть value, получит 400 целиком (как отклонённая строка) */
+	public void rejectValue(String value) {
+		rejectedValues.add(value);
+	}
+
+	/** Отдельная пустая таблица с заданным ID (как созданная человеком и открытая сервисному аккаунту) */
+	public void addSpreadsheet(String spreadsheetId) {
+		created.put(spreadsheetId, new Book());
+	}
+
+	/** ID таблиц, созданных spreadsheets.create */
+	public List<String> getCreatedSpreadsheetIds() {
+		return new ArrayList<>(created.keySet());
+	}
+
+	/** Число вызовов по операциям (values.batchGet, spreadsheets.get, ...) */
+	public Map<String, Long> getCallCounts() {
+		Map<String, Long> counts = new LinkedHashMap<>();
+		calls.forEach((op, n) -> counts.put(op, n.get()));
+		return counts;
+	}
+
+	public List<String> getSheetTitles() {
+		return getSheetTitles(null);
+	}
+
+	/** Листы таблицы; null — основная */
+	public List<String> getSheetTitles(String spreadsheetId) {
+		Book book = book(spreadsheetId);
+		synchronized (book.sheetIds) {
+			return new ArrayList<>(book.sheetIds.keySet());
+		}
+	}
+
+	/** Содержимое листа основной таблицы (копия) */
+	public List<List<Object>> getSheet(String title) {
+		return getSheet(null, title);
+	}
+
+	public List<List<Object>> getSheet(String spreadsheetId, String title) {
+		List<List<Object>> rows = book(spreadsheetId).sheets.get(title);
+		if (rows == null) return List.of();
+		synchronized (rows) {
+			List<List<Object>> copy = new ArrayList<>();
+			rows.forEach(r -> copy.add(new ArrayList<>(r)));
+			return copy;
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+	// ---------- Обработка запросов ----------
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getPath();
+			String rest = path.substring(path.indexOf('/', "/v4/spreadsheets/".length()) + 1);
+			String tail = path.length() > "/v4/spreadsheets/".length() ? path.substring("/v4/spreadsheets/".length()) : "";
+			Book book = book(tail.split("[/:]", 2)[0]);
+			Map<String, List<String>> query = parseQuery(exchange.getRequestURI().getRawQuery());
+			String method = exchange.getRequestMethod();
+			String override = exchange.getRequestHeaders().getFirst("X-HTTP-Method-Override");
+			JsonNode body = null;
+			if (override != null) {
+				// длинный GET клиент отправляет как POST с параметрами в теле формы
+				method = override;
+				parseQuery(new String(requestBody(exchange).readAllBytes(), StandardCharsets.UTF_8))
+						.forEach((k, v) -> query.computeIfAbsent(k, key -> new ArrayList<>()).addAll(v));
+			} else if (!"GET".equals(method)) {
+				body = objectMapper.readTree(requestBody(exchange));
+			}
+
+			String op = operation(method, path, rest);
+			calls.computeIfAbsent(op, k -> new AtomicLong()).incrementAndGet();
+
+			if (latencyMillis > 0) Thread.sleep(latencyMillis);
+			if (overQuota()) {
+				sendError(exchange, 429, "RESOURCE_EXHAUSTED", "Quota exceeded for quota metric 'Read requests'");
+				return;
+			}
+			AtomicInteger skip = failNext.get(op);
+			if (skip != null && skip.getAndDecrement() == 0) {
+				failNext.remove(op);
+				sendError(exchange, 500, "INTERNAL", "Internal error encountered.");
+				return;
+			}
+			if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+				sendError(exchange, 500, "INTERNAL", "Internal error encountered.");
+				return;
+			}
+
+			switch (op) {
+				case "spreadsheets.get" -> send(exchange, spreadsheet(book));
+				case "spreadsheets.create" -> {
+					String id = "archive-" + (created.size() + 1);
+					created.put(id, new Book());
+					send(exchange, Map.of("spreadsheetId", id, "properties", body.path("properties")));
+				}
+				case "spreadsheets.batchUpdate" -> addSheets(exchange, book, body);
+				case "sheets.copyTo" -> send(exchange, copyTo(book, rest, body));
+				case "values.get" -> send(exchange, read(book, rest.substring("values/".length())));
+				case "values.batchGet" -> {
+					List<Object> ranges = new ArrayList<>();
+					for (String range : query.getOrDefault("ranges", List.of())) ranges.add(read(book, range));
+					send(exchange, Map.of("valueRanges", ranges));
+				}
+				case "values.update" -> send(exchange, write(book, rest.substring("values/".length()), body.get("values"), false));
+				case "values.append" -> {
+					String range = rest.substring("values/".length(), rest.length() - ":append".length());
+					send(exchange, Map.of("updates", write(book, range, body.get("values"), true)));
+				}
+				case "values.batchUpdate" -> {
+					// запрос атомарен: сначала проверяем все строки, потом пишем
+					for (JsonNode data : body.get("data")) {
+						for (JsonNode row : data.get("values")) {
+							for (JsonNode cell : row) {
+								if (rejectedValues.contains(cell.asText())) throw new SheetError("Invalid value: " + cell.asText());
+							}
+						}
+					}
+					List<Object> responses = new ArrayList<>();
+					for (JsonNode data : body.get("data")) {
+						responses.add(write(book, data.get("range").asText(), data.get("values"), false));
+					}
+					send(exchange, Map.of("responses", responses));
+				}
+				default -> sendError(exchange, 404, "NOT_FOUND", "Unsupported: " + method + " " + path);
+			}
+		} catch (SheetError e) {
+			sendError(exchange, 400, "INVALID_ARGUMENT", e.getMessage());
+		} catch (RuntimeException e) {
+			// ошибка самой заглушки — видна в ответе, а не обрывом соединения
+			sendError(exchange, 500, "INTERNAL", "Заглушка Sheets: " + e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/** Клиент Google сжимает тела запросов gzip */
+	private static InputStream requestBody(HttpExchange exchange) throws IOException {
+		InputStream in = exchange.getRequestBody();
+		return "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding")) ? new GZIPInputStream(in) : in;
+	}
+
+	private static String operation(String method, String path, String rest) {
+		if (path.equals("/v4/spreadsheets")) return "spreadsheets.create";
+		if (rest.endsWith(":copyTo")) return "sheets.copyTo";
+		if (!path.contains("/values")) {
+			return rest.endsWith(":batchUpdate") ? "spreadsheets.batchUpdate" : "spreadsheets.get";
+		}
+		if (rest.equals("values:batchGet")) return "values.batchGet";
+		if (rest.equals("values:batchUpdate")) return "values.batchUpdate";
+		if (rest.endsWith(":append")) return "values.append";
+		return "PUT".equals(method) ? "values.update" : "values.get";
+	}
+
+	private synchronized boolean overQuota() {
+		if (quotaPerMinute <= 0) return false;
+		long now = System.nanoTime();
+		while (!recentRequests.isEmpty() && now - recentRequests.peekFirst() > 60_000_000_000L) {
+			recentRequests.pollFirst();
+		}
+		if (recentRequests.size() >= quotaPerMinute) return true;
+		recentRequests.addLast(now);
+		return false;
+	}
+
+	private Book book(String spreadsheetId) {
+		Book book = spreadsheetId == null ? null : created.get(spreadsheetId);
+		return book != null ? book : main;
+	}
+
+	private Map<String, Object> spreadsheet(Book book) {
+		List<Object> list = new ArrayList<>();
+		synchronized (book.sheetIds) {
+			book.sheetIds.forEach((title, id) -> list.add(Map.of("properties", Map.of("sheetId", id, "title", title))));
+		}
+		return Map.of("sheets", list);
+	}
+
+	private void addSheets(HttpExchange exchange, Book book, JsonNode body) throws IOException {
+		List<Object> replies = new ArrayList<>();
+		for (JsonNode request : body.get("requests")) {
+			if (request.has("deleteSheet")) {
+				int deleted = request.path("deleteSheet").path("sheetId").asInt();
+				synchronized (book.sheetIds) {
+					book.sheetIds.entrySet().removeIf(e -> {
+						if (e.getValue() != deleted) return false;
+						book.sheets.remove(e.getKey());
+						return true;
+					});
+				}
+				replies.add(Map.of());
+				continue;
+			}
+			if (request.has("updateSheetProperties")) {
+				JsonNode properties = request.path("updateSheetProperties").path("properties");
+				rename(book, properties.path("sheetId").asInt(), properties.path("title").asText());
+				replies.add(Map.of());
+				continue;
+			}
+			if (request.has("appendCells")) {
+				JsonNode append = request.path("appendCells");
+				List<List<Object>> rows = book.sheets.get(title(book, append.path("sheetId").asInt()));
+				synchronized (rows) {
+					for (JsonNode row : append.path("rows")) {
+						List<Object> cells = new ArrayList<>();
+						row.path("values").forEach(cell -> cells.add(cell.path("userEnteredValue").path("stringValue").asText()));
+						rows.add(cells);
+					}
+				}
+				replies.add(Map.of());
+				continue;
+			}
+			String title = request.path("addSheet").path("properties").path("title").asText();
+			int id = book.add(title, new ArrayList<>(), nextSheetId.getAndIncrement());
+			replies.add(Map.of("addSheet", Map.of("properties", Map.of("sheetId", id, "title", title))));
+		}
+		send(exchange, Map.of("replies", replies));
+	}
+
+	private static String title(Book book, int sheetId) {
+		synchronized (book.sheetIds) {
+			return book.sheetIds.entrySet().stream().filter(e -> e.getValue() == sheetId)
+					.map(Map.Entry::getKey).findFirst().orElseThrow(() -> new SheetError("No grid with id: " + sheetId));
+		}
+	}
+
+	private static void rename(Book book, int sheetId, String title) {
+		synchronized (book.sheetIds) {
+			String old = title(book, sheetId);
+			if (book.sheetIds.containsKey(title)) {
+				throw new SheetError("A sheet with the name \"" + title + "\" already exists. Please enter another name.");
+			}
+			book.sheetIds.remove(old);
+			book.sheetIds.put(title, sheetId);
+			book.sheets.put(title, book.sheets.remove(old));
+		}
+	}
+
+	/** Копия листа в другую таблицу называется "Копия {название}", как в русской локали Sheets */
+	private Map<String, Object> copyTo(Book source, String rest, JsonNode body) {
+		int sheetId = Integer.parseInt(rest.substring("sheets/".length(), rest.length() - ":copyTo".length()));
+		Book target = created.get(body.path("destinationSpreadsheetId").asText());
+		if (target == null) throw new SheetError("Requested entity was not found.");
+		String title;
+		List<List<Object>> copy = new ArrayList<>();
+		synchronized (source.sheetIds) {
+			title = title(source, sheetId);
+			source.sheets.get(title).forEach(r -> copy.add(new ArrayList<>(r)));
+		}
+		int id = target.add("Копия " + title, copy, nextSheetId.getAndIncrement());
+		return Map.of("sheetId", id, "title", "Копия " + title);
+	}
+
+	private Map<String, Object> read(Book book, String a1) {
+		Range r = Range.parse(a1);
+		List<List<Object>> rows = rows(book, r.sheet());
+		List<List<Object>> out = new ArrayList<>();
+		synchronized (rows) {
+			int last = Math.min(rows.size(), r.endRow());
+			for (int i = r.startRow() - 1; i < last; i++) {
+				List<Object> row = rows.get(i);
+				int to = Math.min(row.size(), r.endCol());
+				List<Object> cells = r.startCol() - 1 < to ? new ArrayList<>(row.subList(r.startCol() - 1, to)) : new ArrayList<>();
+				while (!cells.isEmpty() && "".equals(cells.get(cells.size() - 1))) cells.remove(cells.size() - 1);
+				out.add(cells);
+			}
+		}
+		// как в Sheets: пустые строки в конце диапазона не возвращаются
+		while (!out.isEmpty() && out.get(out.size() - 1).isEmpty()) out.remove(out.size() - 1);
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("range", a1);
+		result.put("majorDimension", "ROWS");
+		if (!out.isEmpty()) result.put("values", out);
+		return result;
+	}
+
+	private Map<String, Object> write(Book book, String a1, JsonNode values, boolean append) {
+		Range r = Range.parse(a1);
+		List<List<Object>> rows = rows(book, r.sheet());
+		int written = 0;
+		synchronized (rows) {
+			int rowIdx = append ? rows.size() : r.startRow() - 1;
+			for (JsonNode valueRow : values) {
+				while (rows.size() <= rowIdx) rows.add(new ArrayList<>());
+				List<Object> row = rows.get(rowIdx++);
+				int col = r.startCol() - 1;
+				for (JsonNode cell : valueRow) {
+					while (row.size() <= col) row.add("");
+					row.set(col++, cell.asText());
+				}
+				written++;
+			}
+		}
+		return Map.of("updatedRange", a1, "updatedRows", written);
+	}
+
+	private List<List<Object>> rows(Book book, String sheet) {
+		List<List<Object>> rows = book.sheets.get(sheet);
+		if (rows == null) throw new SheetError("Unable to parse range: " + sheet);
+		return rows;
+	}
+
+	private void send(HttpExchange exchange, Object body) throws IOException {
+		byte[] bytes = objectMapper.writeValueAsBytes(body);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private void sendError(HttpExchange exchange, int code, String status, String message) throws IOException {
+		Map<String, Object> error = Map.of("error", Map.of(
+				"code", code, "message", message, "status", status,
+				"errors", List.of(Map.of("message", message, "domain", "global", "reason", status.toLowerCase()))));
+		byte[] bytes = objectMapper.writeValueAsBytes(error);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(code, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static Map<String, List<String>> parseQuery(String rawQuery) {
+		Map<String, List<String>> params = new LinkedHashMap<>();
+		if (rawQuery == null) return params;
+		for (String pair : rawQuery.split("&")) {
+			int eq = pair.indexOf('=');
+			String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+			String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+			params.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+		}
+		return params;
+	}
+
+	/** Диапазон A1: лист и границы (строки и колонки с 1, конец включительно) */
+	private record Range(String sheet, int startRow, int endRow, int startCol, int endCol) {
+
+		static Range parse(String a1) {
+			int bang = a1.lastIndexOf('!');
+			String sheet = bang < 0 ? a1 : a1.substring(0, bang);
+			if (sheet.length() >= 2 && sheet.startsWith("'") && sheet.endsWith("'")) {
+				sheet = sheet.substring(1, sheet.length() - 1).replace("''", "'");
+			}
+			if (bang < 0) return new Range(sheet, 1, Integer.MAX_VALUE, 1, Integer.MAX_VALUE);
+			String[] parts = a1.substring(bang + 1).split(":");
+			int[] start = cell(parts[0], 1, 1);
+			int[] end = parts.length > 1
+					? cell(parts[1], Integer.MAX_VALUE, Integer.MAX_VALUE)
+					: cell(parts[0], Integer.MAX_VALUE, Integer.MAX_VALUE);
+			// "A5" без второй части — это начало области записи, а для чтения — одна ячейка
+			if (parts.length == 1 && hasRow(parts[0])) end = new int[]{start[0], start[1]};
+			return new Range(sheet, start[0], end[0], start[1], end[1]);
+		}
+
+		private static boolean hasRow(String ref) {
+			return !ref.isEmpty() && Character.isDigit(ref.charAt(ref.length() - 1));
+		}
+
+		/** {строка, колонка}; отсутствующая часть — значение по умолчанию */
+		private static int[] cell(String ref, int defaultRow, int defaultCol) {
+			int i = 0;
+			int col = 0;
+			while (i < ref.length() && Character.isLetter(ref.charAt(i))) {
+				col = col * 26 + (Character.toUpperCase(ref.charAt(i)) - 'A' + 1);
+				i++;
+			}
+			int row = i < ref.length() ? Integer.parseInt(ref.substring(i)) : defaultRow;
+			return new int[]{row, col == 0 ? defaultCol : col};
+		}
+	}
+
+	/** Таблица: ID листов по названию и строки листов */
+	private static final class Book {
+		final Map<String, Integer> sheetIds = new LinkedHashMap<>();
+		final Map<String, List<List<Object>>> sheets = new ConcurrentHashMap<>();
+
+		int add(String title, List<List<Object>> rows, int id) {
+			synchronized (sheetIds) {
+				if (sheetIds.containsKey(title)) {
+					throw new SheetError("A sheet with the name \"" + title + "\" already exists. Please enter another name.");
+				}
+				sheetIds.put(title, id);
+				sheets.put(title, rows);
+			}
+			return id;
+		}
+	}
+
+	private static final class SheetError extends RuntimeException {
+		SheetError(String message) {
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.model.OfferType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OfferAliasMatcherTest {
+
+	private final OfferAliasMatcher matcher = new OfferAliasMatcher();
+
+	private List<String> find(String text) {
+		return matcher.findOffers(text, 0, text.length());
+	}
+
+	@Test
+	void matchesSingleWordAliasesCaseInsensitively() {
+		assertEquals(List.of("КК", "СИМ", "ОБНОВЛЕНИЕ ДАННЫХ"), find("КК\nСим \nОд"));
+	}
+
+	@Test
+	void prefersLongestMultiWordAlias() {
+		assertEquals(List.of("КК", "ИНВЕСТИЦИИ"), find("кредитная  карта брокерский счет"));
+		assertEquals(List.of("ИНВЕСТИЦИИ УТИЛИЗАЦИЯ", "СИМ+MNP"), find("инвест утиль сим мнп"));
+		assertEquals(List.of("УТИЛИЗАЦИЯ НС", "НС"), find("утиль нс нс"));
+	}
+
+	@Test
+	void fallsBackToShorterAliasWhenPhraseIsIncomplete() {
+		assertEquals(List.of("ИНВЕСТИЦИИ", "ДК"), find("инвест дк"));
+		assertEquals(List.of("СИМ", "ОБНОВЛЕНИЕ ДАННЫХ"), find("сим од"));
+	}
+
+	@Test
+	void lineBreakDoesNotContinueAlias() {
+		assertEquals(List.of("СИМ", "СИМ+MNP"), find("сим\nмнп"));
+	}
+
+	@Test
+	void keepsUnknownWordsUppercased() {
+		assertEquals(List.of("КК", "ЧТО-ТО", "КК,"), find("кк что-то кк,"));
+	}
+
+	@Test
+	void countsOffersByOrdinal() {
+		int[] counts = new int[OfferType.count()];
+		List<String> unknown = new ArrayList<>();
+		matcher.countOffers("кк что-то кредитная карта нс", 0, 28, counts, unknown);
+		assertEquals(2, counts[OfferType.КК.ordinal()]);
+		assertEquals(1, counts[OfferType.НС.ordinal()]);
+		assertEquals(List.of("ЧТО-ТО"), unknown);
+	}
+
+	@Test
+	void respectsRange() {
+		String text = "Мой вопрос: нс дк";
+		assertEquals(List.of("НС"), matcher.findOffers(text, 12, 14));
+	}
+}
@@ -0,0 +1,100 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.BotMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SheetArchiverTest {
+
+	@TempDir
+	Path dir;
+
+	private SheetActivityIndex index;
+	private SheetOutbox outbox;
+
+	private GoogleSheetsService sheetsService(FakeSheetsServer sheets) {
+		BotMetrics metrics = BotMetrics.noop();
+		index = new SheetActivityIndex(dir.resolve("index.json").toString(), 100, metrics);
+		outbox = new SheetOutbox(dir.resolve("outbox.jsonl").toString(), 100, 1000);
+		return new GoogleSheetsService("test", 0, 500, 3, 30000,
+				sheets.getRootUrl(), "none", "per-user", false, 5000, 60000, outbox, index, metrics, Clock.systemDefaultZone());
+	}
+
+	private SheetArchiver archiver(GoogleSheetsService service, String archiveId) {
+		return new SheetArchiver(service, index, outbox, 8, archiveId,
+				dir.resolve("sheet-archive.json").toString(), Clock.systemDefaultZone());
+	}
+
+	@Test
+	void renamesCopyLeftByFailedRunInsteadOfCopyingAgain() throws Exception {
+		try (FakeSheetsServer sheets = new FakeSheetsServer()) {
+			GoogleSheetsService service = sheetsService(sheets);
+			service.saveMeetingToSheets(1L, List.of("КК"), "a1");
+			service.saveRescheduleToSheets(1L, "недозвон", "");
+			service.flushPendingWrites();
+			List<String> weekSheets = sheets.getSheetTitles();
+			assertEquals(2, weekSheets.size());
+
+			sheets.addSpreadsheet("archive");
+			SheetArchiver archiver = archiver(service, "archive");
+			LocalDate later = LocalDate.now().plusWeeks(10);
+			// сбой после первого copyTo: переименование копии не прошло
+			sheets.failNext("spreadsheets.batchUpdate");
+			assertThrows(IOException.class, () -> archiver.archiveClosedWeeks(later));
+			assertEquals(1, sheets.getSheetTitles("archive").size());
+			assertTrue(sheets.getSheetTitles("archive").get(0).startsWith("Копия "));
+
+			assertEquals(2, archiver.archiveClosedWeeks(later));
+			assertEquals(List.of(), sheets.getSheetTitles());
+			assertEquals(weekSheets.stream().sorted().toList(), sheets.getSheetTitles("archive").stream().sorted().toList());
+			assertEquals(2, sheets.getCallCounts().get("sheets.copyTo"));
+			assertEquals("archive", index.find("a1").spreadsheetId());
+			assertEquals(List.of(), sheets.getCreatedSpreadsheetIds().stream().filter(id -> !id.equals("archive")).toList());
+		}
+	}
+
+	@Test
+	void keepsSheetWhoseCopyHasFewerRows() throws Exception {
+		try (FakeSheetsServer sheets = new FakeSheetsServer()) {
+			GoogleSheetsService service = sheetsService(sheets);
+			service.saveMeetingToSheets(1L, List.of("КК"), "a1");
+			service.saveRescheduleToSheets(1L, "недозвон", "");
+			service.flushPendingWrites();
+			LocalDate later = LocalDate.now().plusWeeks(10);
+
+			// без архивной таблицы ничего не копируется и не удаляется
+			assertEquals(0, archiver(service, "").archiveClosedWeeks(later));
+			assertEquals(2, sheets.getSheetTitles().size());
+
+			sheets.addSpreadsheet("archive");
+			SheetArchiver archiver = archiver(service, "archive");
+			sheets.failNext("spreadsheets.batchUpdate");
+			assertThrows(IOException.class, () -> archiver.archiveClosedWeeks(later));
+			String orphan = sheets.getSheetTitles("archive").get(0).substring("Копия ".length());
+			// после сбоя в оба листа дописаны строки: оставшаяся копия короче оригинала
+			service.saveMeetingToSheets(1L, List.of("МП"), "a2");
+			service.saveRescheduleToSheets(1L, "недозвон", "");
+			service.flushPendingWrites();
+
+			assertEquals(1, archiver.archiveClosedWeeks(later));
+			assertEquals(List.of(orphan), sheets.getSheetTitles());
+			assertEquals(3, sheets.getSheet(orphan).size());
+			assertEquals(1, sheets.getSheetTitles("archive").size());
+
+			// неполная копия удалена из архива: следующий запуск переносит лист заново
+			assertEquals(1, archiver.archiveClosedWeeks(later));
+			assertEquals(List.of(), sheets.getSheetTitles());
+			assertEquals(3, sheets.getSheet("archive", orphan).size());
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.BotMetrics;
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.OfferType;
+import com.example.telegrambot.model.RescheduleReason;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SheetLayoutTest {
+
+	@TempDir
+	Path dir;
+
+	private GoogleSheetsService service(FakeSheetsServer sheets, String layout, String name) {
+		BotMetrics metrics = BotMetrics.noop();
+		SheetActivityIndex index = new SheetActivityIndex(dir.resolve(name + "-index.json").toString(), 100, metrics);
+		SheetOutbox outbox = new SheetOutbox(dir.resolve(name + "-outbox.jsonl").toString(), 100, 1000);
+		return new GoogleSheetsService("test", 0, 500, 3, 30000,
+				sheets.getRootUrl(), "none", layout, false, 5000, 60000, outbox, index, metrics, Clock.systemDefaultZone());
+	}
+
+	/** Счётчики по ordinal -> название оффера, без нулей */
+	private static Map<String, Integer> offers(int[] counts) {
+		Map<String, Integer> named = new HashMap<>();
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0) named.put(OfferType.ofOrdinal(i).getDisplayName(), counts[i]);
+		}
+		return named;
+	}
+
+	@Test
+	void namesSheetsPerLayout() {
+		LocalDate date = LocalDate.of(2025, 9, 10);
+		String week = SheetLayout.week(date);
+		assertEquals("user7_" + week + "_Переносы", SheetLayout.PER_USER.sheetName(PendingSheetRow.Kind.RESCHEDULE, 7L, date));
+		assertEquals("Переносы_" + week, SheetLayout.WEEKLY.sheetName(PendingSheetRow.Kind.RESCHEDULE, 7L, date));
+		assertEquals(new SheetLayout.LegacySheet(7L, week, PendingSheetRow.Kind.COMMENT),
+				SheetLayout.parseLegacy("user7_" + week + "_Комментарии"));
+		assertEquals("AA", GoogleSheetsService.columnName(26));
+	}
+
+	@Test
+	void resolvesWeekStartWithoutYearInSheetName() {
+		LocalDate today = LocalDate.of(2026, 1, 14);
+		LocalDate lastYear = LocalDate.of(2025, 12, 29);
+		assertEquals(lastYear, SheetLayout.weekStart(SheetLayout.PER_USER.sheetName(PendingSheetRow.Kind.OFFERS, 1L, lastYear), today));
+		assertEquals(LocalDate.of(2026, 1, 12), SheetLayout.weekStart(SheetLayout.WEEKLY.sheetName(PendingSheetRow.Kind.COMMENT, 1L, today), today));
+		assertEquals(null, SheetLayout.weekStart("Лист1", today));
+		// 2 сентября — понедельник в 2024-м, а не в 2025-м: лист старше года не попадает в текущий год
+		LocalDate olderThanYear = LocalDate.of(2024, 9, 2);
+		assertEquals(olderThanYear, SheetLayout.weekStart(SheetLayout.PER_USER.sheetName(PendingSheetRow.Kind.OFFERS, 1L, olderThanYear), LocalDate.of(2025, 10, 15)));
+		assertEquals("2025-Q4", SheetArchiver.quarter(lastYear));
+	}
+
+	@Test
+	void rerunAfterFailedMigrationDoesNotDuplicateRows() throws Exception {
+		try (FakeSheetsServer sheets = new FakeSheetsServer()) {
+			GoogleSheetsService legacy = service(sheets, "per-user", "legacy");
+			legacy.saveMeetingToSheets(1L, List.of("КК"), "a1");
+			legacy.saveMeetingToSheets(2L, List.of("МП"), "a2");
+			legacy.flushPendingWrites();
+
+			GoogleSheetsService weekly = service(sheets, "weekly", "weekly");
+			// лист "Офферы_..." создан, перенос строк с удалением исходных листов не прошёл
+			sheets.failNext("spreadsheets.batchUpdate", 1);
+			assertThrows(IOException.class, weekly::migrateLegacySheets);
+			assertEquals(2, weekly.migrateLegacySheets());
+			String target = SheetLayout.WEEKLY.sheetName(PendingSheetRow.Kind.OFFERS, 1L, LocalDate.now());
+			assertEquals(List.of(target), sheets.getSheetTitles());
+			assertEquals(3, sheets.getSheet(target).size()); // заголовок и две строки
+		}
+	}
+
+	@Test
+	void migratesLegacySheetsAndReadsUserRowsFromSharedSheet() throws Exception {
+		try (FakeSheetsServer sheets = new FakeSheetsServer()) {
+			GoogleSheetsService legacy = service(sheets, "per-user", "legacy");
+			legacy.saveMeetingToSheets(1L, List.of("КК", "МП"), "a1");
+			legacy.saveMeetingToSheets(2L, List.of("КК"), "a2");
+			legacy.saveRescheduleToSheets(1L, "недозвон", "");
+			legacy.saveCommentToSheets(2L, "перезвонить");
+			legacy.flushPendingWrites();
+			assertEquals(4, sheets.getSheetTitles().size());
+
+			GoogleSheetsService weekly = service(sheets, "weekly", "weekly");
+			assertEquals(4, weekly.migrateLegacySheets());
+			assertEquals(3, sheets.getSheetTitles().size());
+			assertTrue(sheets.getSheetTitles().stream().noneMatch(t -> t.startsWith("user")));
+
+			assertEquals(Map.of("КК", 1, "МП", 1), offers(weekly.getWeeklyStatsFromSheets(1L)));
+			assertEquals(Map.of("КК", 1), offers(weekly.getWeeklyStatsFromSheets(2L)));
+			assertEquals(1, weekly.getWeeklyRescheduleStatsFromSheets(1L)[RescheduleReason.НЕДОЗВОН.ordinal()]);
+			assertEquals(1, weekly.getWeeklyCommentsFromSheets(2L).size());
+			assertEquals(0, weekly.getWeeklyCommentsFromSheets(1L).size());
+
+			// новые строки попадают в общий лист и в кеш строк пользователя
+			weekly.saveMeetingToSheets(2L, List.of("МП"), "a3");
+			weekly.flushPendingWrites();
+			assertEquals(Map.of("КК", 1, "МП", 1), offers(weekly.getWeeklyStatsFromSheets(2L)));
+			assertEquals("a3", weekly.findMeetingById("a3").getId());
+		}
+	}
+
+	@Test
+	void offerRowReadBackKeepsItsDateAcrossNewYear() throws IOException {
+		try (FakeSheetsServer sheets = new FakeSheetsServer()) {
+			BotMetrics metrics = BotMetrics.noop();
+			SheetActivityIndex index = new SheetActivityIndex(dir.resolve("index.json").toString(), 100, metrics);
+			SheetOutbox outbox = new SheetOutbox(dir.resolve("outbox.jsonl").toString(), 100, 1000);
+			GoogleSheetsService service = new GoogleSheetsService("test", 0, 500, 3, 30000,
+					sheets.getRootUrl(), "none", "per-user", false, 5000, 60000, outbox, index, metrics, Clock.systemDefaultZone());
+
+			// неделя 29.12.2025-04.01.2026: в ячейке только "31.12", год даёт лист
+			LocalDateTime timestamp = LocalDateTime.of(2025, 12, 31, 18, 45);
+			String sheetName = SheetLayout.PER_USER.sheetName(PendingSheetRow.Kind.OFFERS, 1L, timestamp.toLocalDate());
+			outbox.add(PendingSheetRow.offers(sheetName, 1L, timestamp, List.of("КК"), "old"));
+			service.flushPendingWrites();
+
+			Meeting meeting = service.findMeetingById("old");
+			assertEquals(timestamp, meeting.getTimestamp());
+			assertEquals(List.of("КК"), meeting.getOffers());
+		}
+	}
+
+	@Test
+	void shortDateTakesYearNearestToReference() {
+		assertEquals(LocalDate.of(2025, 12, 31), GoogleSheetsService.parseDate("31.12", LocalDate.of(2026, 1, 2)));
+		assertEquals(LocalDate.of(2026, 1, 2), GoogleSheetsService.parseDate("02.01", LocalDate.of(2025, 12, 29)));
+		assertEquals(LocalDate.of(2026, 9, 10), GoogleSheetsService.parseDate("10.09", LocalDate.of(2026, 9, 14)));
+		assertEquals(LocalDate.of(2024, 3, 5), GoogleSheetsService.parseDate("05.03.2024", LocalDate.of(2026, 9, 14)));
+	}
+}
@@ -0,0 +1,169 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.BotMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SheetOutboxTest {
+
+	@TempDir
+	Path dir;
+
+	private SheetOutbox outbox() {
+		return new SheetOutbox(dir.resolve("sheets-outbox.jsonl").toString(), 100, 1000);
+	}
+
+	private static PendingSheetRow row(String comment) {
+		return PendingSheetRow.comment("user1_сент. 8-сент. 14_Комментарии", 1L, LocalDateTime.of(2025, 9, 10, 12, 0), comment);
+	}
+
+	@Test
+	void keepsUnackedRowsAndAssignedSheetRowsAfterRestart() {
+		SheetOutbox outbox = outbox();
+		outbox.add(row("первый"));
+		outbox.add(row("второй"));
+		outbox.add(row("третий"));
+		List<SheetOutbox.Entry> batch = outbox.peek(2);
+		outbox.assign(Map.of(batch.get(0).seq(), 2, batch.get(1).seq(), 3));
+		outbox.ack(List.of(batch.get(0).seq()));
+		outbox.close();
+
+		SheetOutbox recovered = outbox();
+		List<SheetOutbox.Entry> pending = recovered.peek(10);
+		assertEquals(2, pending.size());
+		assertEquals("второй", pending.get(0).row().comment());
+		assertEquals(3, pending.get(0).sheetRow());
+		assertNull(pending.get(1).sheetRow());
+		assertEquals(3, recovered.maxAssignedRow(batch.get(0).row().sheetName()));
+
+		// порядковые номера продолжаются после перезапуска
+		recovered.add(row("четвёртый"));
+		assertEquals("четвёртый", recovered.peek(10).get(2).row().comment());
+	}
+
+	@Test
+	void dropsTornTailRecord() throws Exception {
+		SheetOutbox outbox = outbox();
+		outbox.add(row("первый"));
+		outbox.close();
+		Files.writeString(dir.resolve("sheets-outbox.jsonl"), "{\"op\":\"ADD\",\"seqs\":[2],\"ro",
+				StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+		SheetOutbox recovered = outbox();
+		assertEquals(1, recovered.size());
+		recovered.add(row("второй"));
+		recovered.close();
+		assertEquals(2, outbox().size());
+	}
+
+	@Test
+	void dropsLastRecordWithoutNewline() throws Exception {
+		SheetOutbox outbox = outbox();
+		outbox.add(row("первый"));
+		outbox.assign(Map.of(outbox.peek(1).get(0).seq(), 2));
+		outbox.close();
+		Path file = dir.resolve("sheets-outbox.jsonl");
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+		// ASSIGN без перевода строки не подтверждён; новая запись не должна к нему приклеиться
+		SheetOutbox recovered = outbox();
+		assertNull(recovered.peek(1).get(0).sheetRow());
+		recovered.add(row("второй"));
+		recovered.close();
+		assertEquals(2, outbox().size());
+	}
+
+	@Test
+	void skipsCorruptMiddleRecord() throws Exception {
+		SheetOutbox outbox = outbox();
+		outbox.add(row("первый"));
+		outbox.close();
+		Files.writeString(dir.resolve("sheets-outbox.jsonl"), "не JSON\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+		outbox = outbox();
+		outbox.add(row("второй"));
+		outbox.close();
+
+		assertEquals(2, outbox().size());
+	}
+
+	@Test
+	void rejectedRowGoesToDeadLetterAndDoesNotBlockQueue() throws Exception {
+		try (FakeSheetsServer sheets = new FakeSheetsServer()) {
+			BotMetrics metrics = BotMetrics.noop();
+			SheetActivityIndex index = new SheetActivityIndex(dir.resolve("activity-index.json").toString(), 100, metrics);
+			SheetOutbox outbox = outbox();
+			GoogleSheetsService service = new GoogleSheetsService("test", 0, 500, 3, 30000,
+					sheets.getRootUrl(), "none", "per-user", false, 5000, 60000, outbox, index, metrics, Clock.systemDefaultZone());
+
+			sheets.rejectValue("плохой");
+			service.saveCommentToSheets(1L, "первый");
+			service.saveCommentToSheets(1L, "плохой");
+			service.saveCommentToSheets(1L, "третий");
+			String sheetName = outbox.peek(1).get(0).row().sheetName();
+			service.flushPendingWrites();
+
+			assertEquals(0, service.getPendingWriteCount());
+			List<List<Object>> rows = sheets.getSheet(sheetName);
+			assertEquals(4, rows.size());
+			assertEquals("первый", rows.get(1).get(2));
+			assertTrue(rows.get(2).isEmpty());
+			assertEquals("третий", rows.get(3).get(2));
+			List<String> dead = Files.readAllLines(outbox.getDeadLetterPath());
+			assertEquals(1, dead.size());
+			assertTrue(dead.get(0).contains("плохой"));
+		}
+	}
+
+	@Test
+	void outageSpoolsWritesAndReplaysThemOnceWhenSheetsRecovers() throws Exception {
+		try (FakeSheetsServer sheets = new FakeSheetsServer()) {
+			BotMetrics metrics = BotMetrics.noop();
+			SheetActivityIndex index = new SheetActivityIndex(dir.resolve("activity-index.json").toString(), 100, metrics);
+			SheetOutbox outbox = outbox();
+			GoogleSheetsService service = new GoogleSheetsService("test", 30000, 500, 1, 200,
+					sheets.getRootUrl(), "none", "per-user", false, 5000, 60000, outbox, index, metrics, Clock.systemDefaultZone());
+
+			sheets.setErrorRate(1.0);
+			service.saveCommentToSheets(1L, "первый");
+			service.saveCommentToSheets(1L, "второй");
+			String sheetName = outbox.peek(1).get(0).row().sheetName();
+			service.flushPendingWrites();
+			assertEquals(2, service.getPendingWriteCount());
+
+			// автомат разомкнут: чтение сразу получает ошибку, Sheets не вызывается
+			long callsBefore = sheets.getCallCounts().values().stream().mapToLong(Long::longValue).sum();
+			assertThrows(RuntimeException.class, () -> service.getWeeklyRescheduleStatsFromSheets(1L));
+			assertEquals(callsBefore, sheets.getCallCounts().values().stream().mapToLong(Long::longValue).sum());
+
+			sheets.setErrorRate(0);
+			Thread.sleep(250);
+			// неотправленные комментарии видны в /meetings
+			assertEquals(2, service.getWeeklyCommentsFromSheets(1L).size());
+			service.flushPendingWrites();
+			service.flushPendingWrites();
+			assertEquals(0, service.getPendingWriteCount());
+
+			List<List<Object>> rows = sheets.getSheet(sheetName);
+			assertEquals(3, rows.size());
+			assertEquals("первый", rows.get(1).get(2));
+			assertEquals("второй", rows.get(2).get(2));
+			assertEquals(2, service.getWeeklyCommentsFromSheets(1L).size());
+		}
+	}
+}
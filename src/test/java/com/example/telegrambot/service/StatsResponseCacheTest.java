@@ -0,0 +1,49 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.BotMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatsResponseCacheTest {
+
+	private static final StatsPeriod WEEK = StatsPeriod.currentWeek(LocalDate.of(2025, 10, 15));
+	private static final StatsPeriod NEXT_WEEK = StatsPeriod.currentWeek(LocalDate.of(2025, 10, 22));
+
+	@Test
+	void rebuildsOnlyAfterInvalidationOrNewWeek() {
+		StatsResponseCache cache = new StatsResponseCache(100, BotMetrics.noop());
+		AtomicInteger builds = new AtomicInteger();
+
+		assertEquals("1", cache.get(1L, "/offers", WEEK, () -> String.valueOf(builds.incrementAndGet())));
+		assertEquals("1", cache.get(1L, "/offers", WEEK, () -> String.valueOf(builds.incrementAndGet())));
+		assertEquals("2", cache.get(1L, "/rescheduling", WEEK, () -> String.valueOf(builds.incrementAndGet())));
+		assertEquals("3", cache.get(StatsResponseCache.TEAM, "/team", WEEK, () -> String.valueOf(builds.incrementAndGet())));
+
+		// встреча другого пользователя сбрасывает только /team
+		cache.invalidate(2L);
+		assertEquals("1", cache.get(1L, "/offers", WEEK, () -> String.valueOf(builds.incrementAndGet())));
+		assertEquals("4", cache.get(StatsResponseCache.TEAM, "/team", WEEK, () -> String.valueOf(builds.incrementAndGet())));
+
+		cache.invalidate(1L);
+		assertEquals("5", cache.get(1L, "/offers", WEEK, () -> String.valueOf(builds.incrementAndGet())));
+		assertEquals("6", cache.get(1L, "/offers", NEXT_WEEK, () -> String.valueOf(builds.incrementAndGet())));
+		assertEquals(2, cache.getHitCount());
+	}
+
+	@Test
+	void evictsLeastRecentlyUsed() {
+		StatsResponseCache cache = new StatsResponseCache(2, BotMetrics.noop());
+		cache.get(1L, "/offers", WEEK, () -> "a");
+		cache.get(2L, "/offers", WEEK, () -> "b");
+		cache.get(1L, "/offers", WEEK, () -> "x");
+		cache.get(3L, "/offers", WEEK, () -> "c");
+
+		assertEquals(2, cache.size());
+		assertEquals("a", cache.get(1L, "/offers", WEEK, () -> "y"));
+		assertEquals("z", cache.get(2L, "/offers", WEEK, () -> "z"));
+	}
+}
@@ -0,0 +1,100 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.BotMetrics;
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.OfferType;
+import com.example.telegrambot.model.RescheduleReason;
+import com.example.telegrambot.storage.JournalMeetingStore;
+import com.example.telegrambot.storage.MeetingJournal;
+import com.example.telegrambot.storage.MeetingStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StatsRollupTest {
+
+	@TempDir
+	Path dir;
+
+	private static final LocalDate TODAY = LocalDate.of(2025, 10, 15);
+
+	@Test
+	void parsesPeriods() {
+		assertEquals(new StatsPeriod(LocalDate.of(2025, 9, 1), LocalDate.of(2025, 9, 30), "сентябрь 2025"),
+				StatsPeriod.parse("2025-09", TODAY));
+		assertEquals(LocalDate.of(2025, 7, 1), StatsPeriod.parse("2025-Q3", TODAY).from());
+		StatsPeriod last4w = StatsPeriod.parse("last4w", TODAY);
+		assertEquals(LocalDate.of(2025, 9, 22), last4w.from());
+		assertEquals(LocalDate.of(2025, 10, 19), last4w.to());
+		assertEquals(LocalDate.of(2025, 9, 1), StatsPeriod.parse("01.09-30.09", TODAY).from());
+		// год без указания — не позже сегодняшнего дня, конец может перейти через Новый год
+		StatsPeriod winter = StatsPeriod.parse("15.12-15.01", LocalDate.of(2026, 1, 10));
+		assertEquals(LocalDate.of(2025, 12, 15), winter.from());
+		assertEquals(LocalDate.of(2026, 1, 15), winter.to());
+		assertEquals(StatsPeriod.currentWeek(TODAY), StatsPeriod.parse("", TODAY));
+		assertThrows(IllegalArgumentException.class, () -> StatsPeriod.parse("вчера", TODAY));
+		assertThrows(IllegalArgumentException.class, () -> StatsPeriod.parse("31.02-01.03", TODAY));
+	}
+
+	@Test
+	void sumsBucketsLikeScanningEveryMeeting() {
+		MeetingJournal journal = new MeetingJournal(dir.resolve("meetings.json").toString(),
+				dir.resolve("meetings.journal").toString(), 32, 1000, BotMetrics.noop());
+		MeetingStore store = new JournalMeetingStore(journal);
+		StatsRollup rollup = new StatsRollup(store);
+		LocalDate start = LocalDate.of(2025, 6, 1);
+		// часть встреч — до первого запроса (из хранилища), часть — после (обновление корзин)
+		for (int i = 0; i < 200; i++) {
+			if (i == 100) rollup.offerCounts(1L, start, start);
+			Meeting meeting = i % 5 == 0
+					? new Meeting("r" + i, start.plusDays(i).atTime(10, 0), "перенос", 1L, i % 10 == 0 ? "своя причина" : "недозвон", "")
+					: new Meeting("o" + i, start.plusDays(i).atTime(10, 0), List.of("КК", "КК", i % 2 == 0 ? "НС" : "ДК"), "оффер", 1L);
+			rollup.add(meeting, () -> store.add(meeting));
+		}
+
+		LocalDate from = LocalDate.of(2025, 6, 17);
+		LocalDate to = LocalDate.of(2025, 11, 3);
+		int[] offers = new int[OfferType.count()];
+		int[] reasons = new int[RescheduleReason.values().length];
+		for (Meeting m : store.findByUser(1L)) {
+			LocalDate day = m.getTimestamp().toLocalDate();
+			if (day.isBefore(from) || day.isAfter(to)) continue;
+			if (m.getRescheduleReason() != null) {
+				RescheduleReason reason = RescheduleReason.findByDisplayName(m.getRescheduleReason());
+				reasons[(reason != null ? reason : RescheduleReason.ДРУГОЕ).ordinal()]++;
+			} else {
+				for (long mask = m.getOffersMask(); mask != 0; mask &= mask - 1) offers[Long.numberOfTrailingZeros(mask)]++;
+			}
+		}
+		assertArrayEquals(offers, rollup.offerCounts(1L, from, to));
+		assertArrayEquals(reasons, rollup.rescheduleCounts(1L, from, to));
+		journal.close();
+	}
+
+	@Test
+	void ranksTeamByOffersAcrossUsers() {
+		MeetingJournal journal = new MeetingJournal(dir.resolve("meetings.json").toString(),
+				dir.resolve("meetings.journal").toString(), 32, 1000, BotMetrics.noop());
+		MeetingStore store = new JournalMeetingStore(journal);
+		StatsRollup rollup = new StatsRollup(store);
+		LocalDate day = LocalDate.of(2025, 9, 10);
+		store.add(new Meeting("a1", day.atTime(10, 0), List.of("КК"), "оффер", 1L));
+		store.add(new Meeting("a2", day.atTime(11, 0), "перенос", 1L, "недозвон", ""));
+		store.add(new Meeting("b1", day.atTime(10, 0), List.of("КК", "НС"), "оффер", 2L));
+		store.add(new Meeting("c1", day.minusMonths(3).atTime(10, 0), List.of("КК"), "оффер", 3L));
+
+		TeamStats team = rollup.team(LocalDate.of(2025, 9, 1), LocalDate.of(2025, 9, 30));
+		assertEquals(List.of(2L, 1L), team.members().stream().map(TeamStats.Member::userId).toList());
+		assertEquals(0.5, team.members().get(1).rescheduleRate());
+		assertEquals(2, team.offers()[OfferType.КК.ordinal()]);
+		assertEquals(2, team.meetings());
+		journal.close();
+	}
+}
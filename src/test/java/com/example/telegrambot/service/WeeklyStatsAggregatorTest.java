@@ -0,0 +1,126 @@
+package com.example.telegrambot.service;
+
+import com.example.telegrambot.BotMetrics;
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.OfferType;
+import com.example.telegrambot.model.RescheduleReason;
+import com.example.telegrambot.storage.JournalMeetingStore;
+import com.example.telegrambot.storage.MeetingJournal;
+import com.example.telegrambot.storage.MeetingStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeeklyStatsAggregatorTest {
+
+	@TempDir
+	Path dir;
+
+	private final BotMetrics metrics = BotMetrics.noop();
+
+	private GoogleSheetsService sheetsService(FakeSheetsServer sheets) {
+		return new GoogleSheetsService("test", 0, 500, 3, 30000,
+				sheets.getRootUrl(), "none", "per-user", false, 5000, 60000,
+				new SheetOutbox(dir.resolve("outbox.jsonl").toString(), 100, 1000),
+				new SheetActivityIndex(dir.resolve("index.json").toString(), 100, metrics), metrics, Clock.systemDefaultZone());
+	}
+
+	private MeetingJournal journal() {
+		return new MeetingJournal(dir.resolve("meetings.json").toString(),
+				dir.resolve("meetings.journal").toString(), 32, 1000, metrics);
+	}
+
+	private StatsService statsService(GoogleSheetsService service, MeetingStore store) {
+		StatsRollup rollup = new StatsRollup(store);
+		StatsResponseCache cache = new StatsResponseCache(100, metrics);
+		WeeklyStatsAggregator aggregator = new WeeklyStatsAggregator(service, store, rollup, cache,
+				dir.resolve("stats-resets.json").toString(), Clock.systemDefaultZone());
+		return new StatsService(store, service, aggregator, rollup, null, cache, Clock.systemDefaultZone());
+	}
+
+	@Test
+	void countsLocalRowsPlusSheetOnlyRows() throws Exception {
+		try (FakeSheetsServer sheets = new FakeSheetsServer()) {
+			GoogleSheetsService service = sheetsService(sheets);
+			MeetingJournal journal = journal();
+			MeetingStore store = new JournalMeetingStore(journal);
+			StatsService stats = statsService(service, store);
+
+			// "общая" есть и в листе, и локально; две локальные не дошли до листа; одна строка только в листе
+			stats.saveMeeting(new Meeting("shared", LocalDateTime.now(), List.of("КК"), "shared", 1L));
+			service.saveMeetingToSheets(1L, List.of("КК"), "sheet-only");
+			service.saveRescheduleToSheets(1L, RescheduleReason.НЕДОЗВОН.getDisplayName(), "");
+			service.flushPendingWrites();
+			store.add(new Meeting("local-1", LocalDateTime.now(), List.of("КК"), "local-1", 1L));
+			store.add(new Meeting("local-2", LocalDateTime.now(), List.of("КК", "МП"), "local-2", 1L));
+
+			assertEquals(4, stats.getWeeklyOfferStats(1L)[OfferType.КК.ordinal()]);
+			assertEquals(1, stats.getWeeklyOfferStats(1L)[OfferType.МП.ordinal()]);
+			assertEquals(1, stats.getWeeklyRescheduleStats(1L)[RescheduleReason.НЕДОЗВОН.ordinal()]);
+			// строки листа перенесены в хранилище: отчёт за период совпадает с недельным
+			assertEquals(4, stats.getOfferStats(1L, StatsPeriod.currentWeek(LocalDateTime.now().toLocalDate()))[OfferType.КК.ordinal()]);
+			journal.close();
+
+			// после перезапуска строки листа не переносятся второй раз
+			journal = journal();
+			StatsService restarted = statsService(service, new JournalMeetingStore(journal));
+			assertEquals(4, restarted.getWeeklyOfferStats(1L)[OfferType.КК.ordinal()]);
+			assertEquals(1, restarted.getWeeklyRescheduleStats(1L)[RescheduleReason.НЕДОЗВОН.ordinal()]);
+			journal.close();
+		}
+	}
+
+	@Test
+	void resetSurvivesRestart() throws Exception {
+		try (FakeSheetsServer sheets = new FakeSheetsServer()) {
+			GoogleSheetsService service = sheetsService(sheets);
+			MeetingJournal journal = journal();
+			StatsService stats = statsService(service, new JournalMeetingStore(journal));
+			stats.saveMeeting(new Meeting("a1", LocalDateTime.now(), List.of("КК"), "a1", 1L));
+			service.saveMeetingToSheets(1L, List.of("МП"), "sheet-only");
+			service.flushPendingWrites();
+			assertEquals(1, stats.getWeeklyOfferStats(1L)[OfferType.МП.ordinal()]);
+
+			stats.clearUserStats(1L);
+			assertEquals(0, stats.getWeeklyOfferStats(1L)[OfferType.КК.ordinal()]);
+			assertEquals(0, stats.getWeeklyOfferStats(1L)[OfferType.МП.ordinal()]);
+			journal.close();
+
+			// строки остались в листе, но после перезапуска сброс действует
+			journal = journal();
+			StatsService restarted = statsService(service, new JournalMeetingStore(journal));
+			assertEquals(0, restarted.getWeeklyOfferStats(1L)[OfferType.КК.ordinal()]);
+			assertEquals(0, restarted.getWeeklyOfferStats(1L)[OfferType.МП.ordinal()]);
+			journal.close();
+		}
+	}
+
+	@Test
+	void weeklyAnswerIsNotCachedUntilSheetsAreReconciled() throws Exception {
+		try (FakeSheetsServer sheets = new FakeSheetsServer()) {
+			GoogleSheetsService service = sheetsService(sheets);
+			MeetingJournal journal = journal();
+			StatsService stats = statsService(service, new JournalMeetingStore(journal));
+			stats.saveMeeting(new Meeting("local", LocalDateTime.now(), List.of("КК"), "local", 1L));
+			service.saveMeetingToSheets(1L, List.of("КК"), "sheet-only");
+			service.flushPendingWrites();
+
+			// Sheets недоступен: ответ по локальным данным и без кэша
+			sheets.setErrorRate(1.0);
+			assertTrue(stats.weeklyOfferReport(1L).contains(": 1"));
+
+			// сверка удалась позже — ответ уже с перенесённой строкой
+			sheets.setErrorRate(0);
+			assertTrue(stats.weeklyOfferReport(1L).contains(": 2"));
+			assertTrue(stats.weeklyOfferReport(1L).contains(": 2"));
+			journal.close();
+		}
+	}
+}
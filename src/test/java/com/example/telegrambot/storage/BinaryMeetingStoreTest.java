@@ -0,0 +1,120 @@
+package com.example.telegrambot.storage;
+
+import com.example.telegrambot.BotMetrics;
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.MeetingType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BinaryMeetingStoreTest {
+
+	@TempDir
+	Path dir;
+
+	private MeetingJournal journal() {
+		return new MeetingJournal(dir.resolve("meetings.json").toString(),
+				dir.resolve("meetings.journal").toString(), 32, 1000, BotMetrics.noop());
+	}
+
+	private BinaryMeetingStore store() {
+		return new BinaryMeetingStore(dir.resolve("meetings.bin").toString(),
+				dir.resolve("meetings.heap").toString(), true, journal(), BotMetrics.noop());
+	}
+
+	private static final LocalDateTime TIME = LocalDateTime.of(2025, 9, 10, 12, 0, 5, 123_000_000);
+
+	@Test
+	void keepsMeetingsAfterReopenAndRemoveUser() {
+		BinaryMeetingStore store = store();
+		store.add(new Meeting("act1", TIME, List.of("КК", "НС"), "Id активности - act1\nкк нс", 1L));
+		// повтор и нераспознанное слово не восстанавливаются по маске — хранятся строкой
+		store.add(new Meeting("act2", TIME.plusDays(1), List.of("НС", "КК", "НС", "ЧТО-ТО"), "act2", 2L));
+		store.add(new Meeting("act3", TIME, "перенос", 1L, "своя причина", "позже"));
+		store.close();
+
+		BinaryMeetingStore reopened = store();
+		Meeting first = reopened.findByActivityId("act1");
+		assertEquals(TIME, first.getTimestamp());
+		assertEquals(List.of("КК", "НС"), first.getOffers());
+		assertEquals(MeetingType.COMPLETED, first.getMeetingType());
+		Meeting second = reopened.findByActivityId("act2");
+		assertEquals(List.of("КК", "НС", "НС", "ЧТО-ТО"), second.getOffers());
+		assertEquals(List.of("ЧТО-ТО"), second.getUnknownOffers());
+		Meeting reschedule = reopened.findLatestByText(1L, " перенос ");
+		assertEquals("своя причина", reschedule.getRescheduleReason());
+		assertEquals("позже", reschedule.getComment());
+
+		reopened.removeUser(1L);
+		reopened.close();
+		BinaryMeetingStore afterRemove = store();
+		assertNull(afterRemove.findByActivityId("act1"));
+		assertEquals(1, afterRemove.findAll().size());
+		assertEquals(3, afterRemove.recordCount());
+		afterRemove.close();
+	}
+
+	@Test
+	void importsJsonOnFirstStartAndScansWithoutMeetings() {
+		MeetingJournal journal = journal();
+		journal.append(new Meeting("act1", TIME, List.of("КК"), "act1", 1L));
+		journal.append(new Meeting("act2", TIME.plusWeeks(1), List.of("КК", "НС"), "act2", 1L));
+		journal.close();
+
+		BinaryMeetingStore store = store();
+		assertEquals(2, store.findByUser(1L).size());
+		List<Long> masks = new ArrayList<>();
+		long day = TIME.toLocalDate().toEpochDay();
+		store.scanUser(1L, (epochDay, type, offersMask, reason) -> {
+			if (epochDay == day) masks.add(offersMask);
+		});
+		assertEquals(List.of(MeetingCodec.offersMask(List.of("КК"))), masks);
+		store.close();
+	}
+
+	@Test
+	void restartsInterruptedImportFromScratch() throws Exception {
+		MeetingJournal journal = journal();
+		journal.append(new Meeting("act1", TIME, List.of("КК"), "act1", 1L));
+		journal.append(new Meeting("act2", TIME.plusDays(1), List.of("НС"), "act2", 2L));
+		journal.close();
+		store().close();
+
+		// падение до записи MAGIC: заголовок без сигнатуры, записи уже в файле
+		try (FileChannel channel = FileChannel.open(dir.resolve("meetings.bin"), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(4), 0);
+		}
+		BinaryMeetingStore store = store();
+		assertEquals(2, store.recordCount());
+		assertEquals(2, store.findAll().size());
+		store.close();
+	}
+
+	@Test
+	void countsRecordsOnlyAfterSync() {
+		BinaryMeetingStore store = store();
+		store.add(new Meeting("act1", TIME, List.of("КК"), "act1", 1L));
+
+		// до fsync другой экземпляр (как после падения) записи не видит
+		BinaryMeetingStore beforeSync = store();
+		assertEquals(0, beforeSync.recordCount());
+		beforeSync.close();
+
+		store.sync();
+		BinaryMeetingStore afterSync = store();
+		assertEquals(1, afterSync.recordCount());
+		assertEquals("act1", afterSync.findByActivityId("act1").getId());
+		afterSync.close();
+		store.close();
+	}
+}
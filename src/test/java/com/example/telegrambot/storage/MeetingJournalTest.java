@@ -0,0 +1,153 @@
+package com.example.telegrambot.storage;
+
+import com.example.telegrambot.BotMetrics;
+import com.example.telegrambot.model.Meeting;
+import com.example.telegrambot.model.OfferType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeetingJournalTest {
+
+	@TempDir
+	Path dir;
+
+	private MeetingJournal journal() {
+		return new MeetingJournal(dir.resolve("meetings.json").toString(),
+				dir.resolve("meetings.journal").toString(), 32, 1000, BotMetrics.noop());
+	}
+
+	private static Meeting meeting(long userId, String offer) {
+		return new Meeting(LocalDateTime.of(2025, 9, 10, 12, 0), List.of(offer),
+				"Id активности - id" + userId + offer + "\nМой вопрос: " + offer, userId);
+	}
+
+	@Test
+	void replaysJournalAndTombstonesAfterRestart() {
+		MeetingJournal journal = journal();
+		journal.append(meeting(1L, "КК"));
+		journal.append(meeting(2L, "НС"));
+		journal.appendTombstone(1L);
+		journal.append(meeting(1L, "ДК"));
+		journal.close();
+
+		List<Meeting> recovered = journal().recover();
+		assertEquals(2, recovered.size());
+		assertEquals(List.of("НС"), recovered.get(0).getOffers());
+		assertEquals(List.of("ДК"), recovered.get(1).getOffers());
+	}
+
+	@Test
+	void dropsTornTailRecord() throws Exception {
+		MeetingJournal journal = journal();
+		journal.append(meeting(1L, "КК"));
+		journal.close();
+		Files.write(dir.resolve("meetings.journal"), "{\"op\":\"ADD\",\"meet".getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+
+		MeetingJournal reopened = journal();
+		assertEquals(1, reopened.recover().size());
+		reopened.append(meeting(2L, "НС"));
+		reopened.close();
+
+		assertEquals(2, journal().recover().size());
+	}
+
+	@Test
+	void skipsCorruptMiddleLineAndKeepsRecordsAfterIt() throws Exception {
+		MeetingJournal journal = journal();
+		journal.append(meeting(1L, "КК"));
+		journal.close();
+		Files.write(dir.resolve("meetings.journal"), "не JSON\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		MeetingJournal more = journal();
+		more.append(meeting(2L, "НС"));
+		more.append(meeting(3L, "ДК"));
+		more.close();
+
+		MeetingJournal reopened = journal();
+		assertEquals(3, reopened.recover().size());
+		reopened.close();
+		assertTrue(Files.readString(dir.resolve("meetings.journal")).contains("\"userId\":3"));
+	}
+
+	@Test
+	void compactionMovesStateIntoSnapshot() throws Exception {
+		MeetingJournal journal = journal();
+		journal.append(meeting(1L, "КК"));
+		journal.append(meeting(2L, "НС"));
+		journal.appendTombstone(2L);
+		journal.compact();
+		journal.close();
+
+		assertFalse(Files.readString(dir.resolve("meetings.journal")).contains("ADD"));
+		List<Meeting> recovered = journal().recover();
+		assertEquals(1, recovered.size());
+		assertEquals(1L, recovered.get(0).getUserId());
+	}
+
+	@Test
+	void dropsLastLineWithoutNewlineEvenIfItParses() throws Exception {
+		MeetingJournal journal = journal();
+		journal.append(meeting(1L, "КК"));
+		journal.append(meeting(2L, "НС"));
+		journal.close();
+		// перевод строки последней записи не дошёл до диска
+		Path file = dir.resolve("meetings.journal");
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+		MeetingJournal reopened = journal();
+		assertEquals(1, reopened.recover().size());
+		reopened.append(meeting(3L, "ДК"));
+		reopened.append(meeting(4L, "КК"));
+		reopened.close();
+
+		assertEquals(3, journal().recover().size());
+	}
+
+	@Test
+	void skipsJournalAlreadyFoldedIntoSnapshot() throws Exception {
+		MeetingJournal journal = journal();
+		journal.append(meeting(1L, "КК"));
+		journal.append(meeting(2L, "НС"));
+		journal.close();
+		Path file = dir.resolve("meetings.journal");
+		byte[] beforeCompaction = Files.readAllBytes(file);
+
+		journal = journal();
+		journal.compact();
+		journal.close();
+		// падение между заменой снапшота и обрезкой журнала
+		Files.write(file, beforeCompaction);
+
+		MeetingJournal reopened = journal();
+		assertEquals(2, reopened.recover().size());
+		reopened.append(meeting(3L, "ДК"));
+		reopened.close();
+		assertEquals(3, journal().recover().size());
+	}
+
+	@Test
+	void keepsOffersAsNamesInJson() throws Exception {
+		MeetingJournal journal = journal();
+		journal.append(new Meeting(LocalDateTime.of(2025, 9, 10, 12, 0), List.of("НС", "КК", "НС", "ЧТО-ТО"), "текст", 1L));
+		journal.close();
+
+		String line = Files.readString(dir.resolve("meetings.journal"));
+		assertTrue(line.contains("\"offers\":[\"КК\",\"НС\",\"НС\",\"ЧТО-ТО\"]"), line);
+		Meeting recovered = journal().recover().get(0);
+		assertEquals(2, recovered.getOfferCounts()[OfferType.НС.ordinal()]);
+		assertEquals(List.of("ЧТО-ТО"), recovered.getUnknownOffers());
+	}
+}